@@ -22,10 +22,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 import cn.wandersnail.ble.Connection;
 import cn.wandersnail.ble.ConnectionState;
@@ -34,8 +32,9 @@ import cn.wandersnail.ble.EasyBLE;
 import cn.wandersnail.ble.EventObserver;
 import cn.wandersnail.ble.Request;
 import cn.wandersnail.ble.RequestBuilderFactory;
+import cn.wandersnail.ble.RequestHandle;
 import cn.wandersnail.ble.RequestType;
-import cn.wandersnail.ble.WriteCharacteristicBuilder;
+import cn.wandersnail.ble.StreamWriteBuilder;
 import cn.wandersnail.ble.WriteOptions;
 import cn.wandersnail.commons.helper.PermissionsRequester2;
 import cn.wandersnail.commons.poster.RunOn;
@@ -58,7 +57,6 @@ public class SendFileActivity extends BaseActivity {
     private ParcelUuid writeService;
     private ParcelUuid writeCharacteristic;
     private Connection connection;
-    private final ConcurrentLinkedQueue<byte[]> queue = new ConcurrentLinkedQueue<>();
     private DocumentFile file;
     private File legacyFile;
     private long totalLength;
@@ -66,6 +64,7 @@ public class SendFileActivity extends BaseActivity {
     private long lastUpdateUiTime;
     private boolean sending;
     private boolean isOldWaySelectFile;
+    private volatile RequestHandle sendHandle;
     private final String requestId = UUID.randomUUID().toString();
     private ActivityResultLauncher<Intent> selectFileLauncher;
     
@@ -96,55 +95,8 @@ public class SendFileActivity extends BaseActivity {
             btnSelectFile.setEnabled(false);
             totalLength = file != null ? file.length() : legacyFile.length();
             sending = true;
-            new Thread(()-> {
-                InputStream input = null;
-                try {
-                    if (file != null) {
-                        input = getContentResolver().openInputStream(file.getUri());
-                    } else {
-                        input = new FileInputStream(legacyFile);
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-                if (input == null) {
-                    runOnUiThread(()-> {
-                        sending = false;
-                        btnSend.setEnabled(true);
-                        btnSelectFile.setEnabled(true);
-                        ToastUtils.showShort("文件打开失败");
-                    });
-                    return;
-                }
-                int packageSize = connection.getMtu() - 3;
-                byte[] buf = new byte[packageSize];
-                try {
-                    int len = input.read(buf);
-                    if (len != -1) {
-                        //先发第一包，成功回调后会从队列取出继续发送
-                        WriteCharacteristicBuilder builder = new RequestBuilderFactory().getWriteCharacteristicBuilder(
-                                writeService.getUuid(),
-                                writeCharacteristic.getUuid(),
-                                Arrays.copyOf(buf, len)
-                        ).setTag(requestId);
-                        builder.setWriteOptions(new WriteOptions.Builder()
-                                .setPackageSize(len)
-                                .build());
-                        connection.execute(builder.build());
-                    }
-                    while (sending && len != -1) {
-                        if (queue.size() > 500) {
-                            Thread.sleep(100);
-                        } else {
-                            queue.add(Arrays.copyOf(buf, len));
-                            len = input.read(buf);
-                        }
-                    }
-                    input.close();
-                } catch (IOException | InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }).start();
+            //打开文件可能耗时，不在主线程打开
+            new Thread(this::sendFile).start();
         });
         selectFileLauncher = registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), result -> {
             if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null && result.getData().getData() != null) {
@@ -184,6 +136,44 @@ public class SendFileActivity extends BaseActivity {
         permissionsRequester.checkAndRequest(list);
     }
 
+    private void sendFile() {
+        InputStream input = null;
+        try {
+            if (file != null) {
+                input = getContentResolver().openInputStream(file.getUri());
+            } else {
+                input = new FileInputStream(legacyFile);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (input == null) {
+            runOnUiThread(() -> {
+                sending = false;
+                btnSend.setEnabled(true);
+                btnSelectFile.setEnabled(true);
+                ToastUtils.showShort("文件打开失败");
+            });
+            return;
+        }
+        //按MTU分包，收到写入回调后才从文件读取下一包，发送完成后自动关闭输入流
+        StreamWriteBuilder builder = new RequestBuilderFactory().getStreamWriteBuilder(
+                writeService.getUuid(),
+                writeCharacteristic.getUuid(),
+                input
+        ).setTag(requestId);
+        builder.setTotalLength(totalLength);
+        builder.setWriteOptions(new WriteOptions.Builder()
+                .setMtuAsPackageSize()
+                .setWaitWriteResult(true)
+                .build());
+        sendHandle = connection.execute(builder.build());
+        if (isDestroyed()) {
+            //发送开始前页面已关闭
+            sendHandle.cancel();
+        }
+    }
+
     private void assignViews() {
         tvPath = findViewById(R.id.tvPath);
         btnSelectFile = findViewById(R.id.btnSelectFile);
@@ -222,33 +212,32 @@ public class SendFileActivity extends BaseActivity {
             }
         }
 
-        @RunOn(ThreadMode.BACKGROUND)
         @Override
-        public void onCharacteristicWrite(@NonNull Request request, @NonNull byte[] value) {
+        public void onStreamWriteProgress(@NonNull Request request, long sentBytes, long totalBytes, long bytesPerSecond) {
             if (sending && requestId.equals(request.getTag())) {
-                sentLength += value.length;
-                if (queue.isEmpty()) {
-                    runOnUiThread(()-> tvState.setText("发送完成"));
-                } else {
-                    byte[] bytes = queue.remove();
-                    WriteCharacteristicBuilder builder = new RequestBuilderFactory().getWriteCharacteristicBuilder(
-                            writeService.getUuid(),
-                            writeCharacteristic.getUuid(),
-                            bytes
-                    ).setTag(requestId);
-                    builder.setWriteOptions(new WriteOptions.Builder()
-                            .setPackageSize(bytes.length)
-                            .build());
-                    connection.execute(builder.build());
-                }
+                sentLength = sentBytes;
+                updateProgress();
+            }
+        }
+
+        @RunOn(ThreadMode.MAIN)
+        @Override
+        public void onStreamWriteComplete(@NonNull Request request, long totalBytes) {
+            if (sending && requestId.equals(request.getTag())) {
+                sentLength = totalBytes;
+                lastUpdateUiTime = 0;
                 updateProgress();
+                sending = false;
+                btnSend.setEnabled(true);
+                btnSelectFile.setEnabled(true);
+                tvState.setText("发送完成");
             }
         }
 
         @RunOn(ThreadMode.MAIN)
         @Override
         public void onRequestFailed(@NonNull Request request, int failType, int gattStatus, @Nullable Object value) {
-            if (sending && requestId.equals(request.getTag()) && request.getType() == RequestType.WRITE_CHARACTERISTIC) {
+            if (sending && requestId.equals(request.getTag()) && request.getType() == RequestType.WRITE_STREAM) {
                 sending = false;
                 btnSend.setEnabled(true);
                 btnSelectFile.setEnabled(true);
@@ -292,5 +281,10 @@ public class SendFileActivity extends BaseActivity {
     protected void onDestroy() {
         super.onDestroy();
         EasyBLE.getInstance().unregisterObserver(eventObserver);
+        RequestHandle handle = sendHandle;
+        if (handle != null) {
+            //页面关闭后不再发送，并关闭文件
+            handle.cancel();
+        }
     }
 }
@@ -0,0 +1,101 @@
+package cn.wandersnail.ble;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import cn.wandersnail.commons.poster.ThreadMode;
+
+/**
+ * 基准测试的公共方法
+ */
+final class BenchmarkSupport {
+    /**
+     * 在当前线程执行任务的线程池，基准测试只测量调用线程上的开销
+     */
+    static final ExecutorService DIRECT_EXECUTOR = new AbstractExecutorService() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    };
+
+    /**
+     * 新建连接使用的传输层，为null时使用系统的BluetoothGatt
+     */
+    static volatile GattTransport.Factory transportFactory;
+    private static final GattTransport.Factory TRANSPORT_FACTORY = (device, configuration, callback) -> {
+        GattTransport.Factory factory = transportFactory;
+        if (factory == null) {
+            factory = new AndroidGattTransport.Factory(EasyBLE.instance);
+        }
+        return factory.create(device, configuration, callback);
+    };
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * 获取EasyBLE实例，不存在时创建，任务和回调都在调用线程执行
+     */
+    static EasyBLE easyBle() {
+        synchronized (EasyBLE.class) {
+            if (EasyBLE.instance == null) {
+                ScanConfiguration scanConfiguration = new ScanConfiguration().setCallbackThreadMode(ThreadMode.POSTING);
+                EasyBLE.getBuilder()
+                        .setExecutorService(DIRECT_EXECUTOR)
+                        .setMethodDefaultThreadMode(ThreadMode.POSTING)
+                        .setScanConfiguration(scanConfiguration)
+                        .setGattTransportFactory(TRANSPORT_FACTORY)
+                        .build();
+            }
+            return EasyBLE.instance;
+        }
+    }
+
+    /**
+     * 创建第index个设备，地址各不相同
+     */
+    static BluetoothDevice device(int index) {
+        String address = String.format(Locale.US, "00:11:22:%02X:%02X:%02X", (index >> 16) & 0xFF, (index >> 8) & 0xFF, index & 0xFF);
+        return BluetoothAdapter.getDefaultAdapter().getRemoteDevice(address);
+    }
+
+    static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,74 @@
+package cn.wandersnail.ble;
+
+import android.os.SystemClock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GATT事件记录器记录一条事件的开销，记录在每个GATT回调里，需要保持在几十纳秒。多线程的为多个连接同时回调。
+ * 每条记录都取一次时间戳，记录本身的开销为结果减去{@link #clock()}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FlightRecorderBenchmark {
+    @Param({"20", "244"})
+    int length;
+    private byte[] value;
+    private final FlightRecorder recorder = new FlightRecorder(4096);
+    private int addressId;
+
+    @Setup
+    public void setup() {
+        value = BenchmarkSupport.bytes(length);
+        addressId = recorder.getAddressId("00:11:22:33:44:55");
+    }
+
+    /**
+     * 取时间戳，虚拟机上时钟源较慢时占记录开销的大部分
+     */
+    @Benchmark
+    public long clock() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    /**
+     * 没有数据的事件，如MTU变化
+     */
+    @Benchmark
+    public void recordValue() {
+        recorder.record(addressId, FlightRecorder.EVENT_MTU_CHANGED, 0, 247);
+    }
+
+    /**
+     * 带数据的事件，如通知
+     */
+    @Benchmark
+    public void recordData() {
+        recorder.record(addressId, FlightRecorder.EVENT_CHARACTERISTIC_CHANGED, 0, value);
+    }
+
+    /**
+     * 分包写入的一包，从完整数据中取
+     */
+    @Benchmark
+    public void recordSlice() {
+        recorder.record(addressId, FlightRecorder.EVENT_CHARACTERISTIC_WRITE, 0, value, 0, value.length);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordDataContended() {
+        recorder.record(addressId, FlightRecorder.EVENT_CHARACTERISTIC_CHANGED, 0, value);
+    }
+}
@@ -0,0 +1,81 @@
+package cn.wandersnail.ble;
+
+import android.util.Log;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import cn.wandersnail.ble.util.DefaultLogger;
+import cn.wandersnail.ble.util.Logger;
+import cn.wandersnail.commons.util.StringUtils;
+
+/**
+ * 通知数据的十六进制日志。对比日志开启、先判断再格式化、不判断直接格式化
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HexLoggingBenchmark {
+    private static final String FORMAT = "characteristic changed! [UUID: %s, addr: %s, value: %s]";
+    private static final String UUID = "0000ffe1";
+    private static final String ADDRESS = "00:11:22:33:44:55";
+    @Param({"20", "244"})
+    int length;
+    private byte[] value;
+    private final DefaultLogger enabledLogger = new DefaultLogger("EasyBLE");
+    private final DefaultLogger disabledLogger = new DefaultLogger("EasyBLE");
+
+    @Setup
+    public void setup() {
+        value = BenchmarkSupport.bytes(length);
+        enabledLogger.setEnabled(true);
+        disabledLogger.setEnabled(true);
+        disabledLogger.setTypeEnabled(Logger.TYPE_CHARACTERISTIC_CHANGED, false);
+    }
+
+    @Benchmark
+    public String toHex() {
+        return StringUtils.toHex(value);
+    }
+
+    /**
+     * 日志开启，格式化并输出
+     */
+    @Benchmark
+    public void enabled() {
+        log(enabledLogger);
+    }
+
+    /**
+     * 类型已关闭，先判断，不格式化
+     */
+    @Benchmark
+    public void disabledGuarded() {
+        log(disabledLogger);
+    }
+
+    /**
+     * 类型已关闭，但不判断直接格式化，由Logger丢弃
+     */
+    @Benchmark
+    public void disabledUnguarded() {
+        disabledLogger.log(Log.DEBUG, Logger.TYPE_CHARACTERISTIC_CHANGED,
+                String.format(Locale.US, FORMAT, UUID, ADDRESS, StringUtils.toHex(value)));
+    }
+
+    private void log(Logger logger) {
+        if (logger.isEnabled(Log.DEBUG, Logger.TYPE_CHARACTERISTIC_CHANGED)) {
+            logger.log(Log.DEBUG, Logger.TYPE_CHARACTERISTIC_CHANGED,
+                    String.format(Locale.US, FORMAT, UUID, ADDRESS, StringUtils.toHex(value)));
+        }
+    }
+}
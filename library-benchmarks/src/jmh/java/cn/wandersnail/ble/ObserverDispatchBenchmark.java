@@ -0,0 +1,74 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import cn.wandersnail.commons.observer.Observable;
+import cn.wandersnail.commons.poster.PosterDispatcher;
+import cn.wandersnail.commons.poster.ThreadMode;
+
+/**
+ * 通知事件分发给多个观察者，对比MethodInfo反射调用和{@link ObserverEvent}直接调用。都在调用线程执行，只测量分发本身
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ObserverDispatchBenchmark {
+    @Param({"1", "8", "32"})
+    int observers;
+    private Observable observable;
+    private EventDispatcher eventDispatcher;
+    private Device device;
+    private final UUID service = UUID.randomUUID();
+    private final UUID characteristic = UUID.randomUUID();
+    private final byte[] value = BenchmarkSupport.bytes(20);
+
+    @Setup
+    public void setup() {
+        PosterDispatcher posterDispatcher = new PosterDispatcher(BenchmarkSupport.DIRECT_EXECUTOR, ThreadMode.POSTING);
+        observable = new Observable(posterDispatcher, false);
+        eventDispatcher = new EventDispatcher(posterDispatcher, false);
+        for (int i = 0; i < observers; i++) {
+            observable.registerObserver(new CountingObserver());
+            eventDispatcher.register(new CountingObserver());
+        }
+        device = new Device(BenchmarkSupport.device(0));
+    }
+
+    /**
+     * 生成MethodInfo，按方法名和参数类型查找观察者的方法后反射调用
+     */
+    @Benchmark
+    public void methodInfo() {
+        observable.notifyObservers(MethodInfoGenerator.onCharacteristicChanged(device, service, characteristic, value));
+    }
+
+    /**
+     * 生成{@link ObserverEvent}，按事件编号直接调用接口方法
+     */
+    @Benchmark
+    public void typedEvent() {
+        eventDispatcher.notifyObservers(ObserverEvent.onCharacteristicChanged(device, service, characteristic, value));
+    }
+
+    static class CountingObserver implements EventObserver {
+        long count;
+
+        @Override
+        public void onCharacteristicChanged(@NonNull Device device, @NonNull UUID service, @NonNull UUID characteristic,
+                                            @NonNull byte[] value) {
+            count++;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package cn.wandersnail.ble;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import cn.wandersnail.ble.core.PackageSplitter;
+
+/**
+ * 分包写入时的分包
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PackageSplitBenchmark {
+    /**
+     * 包大小，20为默认MTU，244为MTU协商到247
+     */
+    @Param({"20", "244"})
+    int packageSize;
+    @Param({"20", "512", "4096"})
+    int dataLength;
+    private byte[] data;
+    private final PackageSplitter splitter = new PackageSplitter();
+
+    @Setup
+    public void setup() {
+        data = BenchmarkSupport.bytes(dataLength);
+    }
+
+    /**
+     * 将整个数据分包
+     */
+    @Benchmark
+    public void split(Blackhole bh) {
+        for (int offset = 0; offset < data.length; offset += packageSize) {
+            bh.consume(splitter.next(data, offset, packageSize));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package cn.wandersnail.ble;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import cn.wandersnail.ble.core.RequestQueue;
+
+/**
+ * 请求队列按优先级入队、出队
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestQueueBenchmark {
+    /**
+     * 排队的请求数
+     */
+    @Param({"16", "256"})
+    int size;
+    /**
+     * 不同优先级的数量，1表示都是同一优先级
+     */
+    @Param({"1", "4"})
+    int priorityLevels;
+    private GenericRequest[] requests;
+    private final RequestQueue<GenericRequest, RequestType> queue = new RequestQueue<>(RequestType.class);
+
+    @Setup
+    public void setup() {
+        RequestBuilderFactory factory = new RequestBuilderFactory();
+        UUID service = UUID.randomUUID();
+        UUID characteristic = UUID.randomUUID();
+        Random random = new Random(size);
+        requests = new GenericRequest[size];
+        for (int i = 0; i < size; i++) {
+            requests[i] = (GenericRequest) factory.getReadCharacteristicBuilder(service, characteristic)
+                    .setPriority(random.nextInt(priorityLevels) * 100)
+                    .build();
+        }
+    }
+
+    /**
+     * 全部入队后按优先级全部取出
+     */
+    @Benchmark
+    public void enqueueThenDrain(Blackhole bh) {
+        for (GenericRequest request : requests) {
+            queue.add(request);
+        }
+        GenericRequest request;
+        while ((request = queue.poll()) != null) {
+            bh.consume(request);
+        }
+    }
+
+    /**
+     * 队列中保持一半的请求，交替入队、出队，模拟执行过程中不断有新请求
+     */
+    @Benchmark
+    public void steadyState(Blackhole bh) {
+        int half = requests.length / 2;
+        for (int i = 0; i < half; i++) {
+            queue.add(requests[i]);
+        }
+        for (int i = half; i < requests.length; i++) {
+            queue.add(requests[i]);
+            bh.consume(queue.poll());
+        }
+        GenericRequest request;
+        while ((request = queue.poll()) != null) {
+            bh.consume(request);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package cn.wandersnail.ble;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+
+import androidx.annotation.NonNull;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import cn.wandersnail.ble.callback.ScanListener;
+
+/**
+ * 处理搜索结果：过滤、创建{@link Device}、回调搜索监听器
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ScanResultBenchmark {
+    private static final int DEVICE_COUNT = 64;//2的幂
+    private final BluetoothDevice[] devices = new BluetoothDevice[DEVICE_COUNT];
+    private final ScanResult[] results = new ScanResult[DEVICE_COUNT];
+    private LeScanner scanner;
+    private final CountingListener listener = new CountingListener();
+    private DeviceCreator deviceCreator;
+    private int index;
+
+    @Setup
+    public void setup() throws Exception {
+        EasyBLE easyBle = BenchmarkSupport.easyBle();
+        scanner = new LeScanner(easyBle, BluetoothAdapter.getDefaultAdapter());
+        scanner.addScanListener(listener);
+        deviceCreator = easyBle.getDeviceCreator();
+        //ScanRecord没有公开的构造方法
+        Method parse = ScanRecord.class.getMethod("parseFromBytes", byte[].class);
+        for (int i = 0; i < DEVICE_COUNT; i++) {
+            devices[i] = BenchmarkSupport.device(i);
+            ScanRecord record = (ScanRecord) parse.invoke(null, (Object) BenchmarkSupport.bytes(31));
+            results[i] = new ScanResult(devices[i], record, -60 - i % 30, i);
+        }
+    }
+
+    /**
+     * 完整的搜索结果处理
+     */
+    @Benchmark
+    public void parseScanResult() {
+        int i = index++ & (DEVICE_COUNT - 1);
+        scanner.parseScanResult(devices[i], results[i]);
+    }
+
+    /**
+     * 只创建设备实例
+     */
+    @Benchmark
+    public Device createDevice() {
+        int i = index++ & (DEVICE_COUNT - 1);
+        return deviceCreator.create(devices[i], results[i]);
+    }
+
+    static class CountingListener implements ScanListener {
+        long count;
+
+        @Override
+        public void onScanStart() {
+        }
+
+        @Override
+        public void onScanStop() {
+        }
+
+        @Override
+        public void onScanResult(@NonNull Device device, boolean isConnectedBySys) {
+            count++;
+        }
+
+        @Override
+        public void onScanError(int errorCode, @NonNull String errorMsg) {
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package cn.wandersnail.ble;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import cn.wandersnail.ble.simulator.GattOperation;
+import cn.wandersnail.ble.simulator.SimulatedBluetooth;
+import cn.wandersnail.ble.simulator.SimulatedCharacteristic;
+import cn.wandersnail.ble.simulator.SimulatedPeripheral;
+
+/**
+ * 连接模拟外设的端到端测试：分包写入的吞吐量、排队请求的执行、链路断开后重连的耗时。
+ * 回调经过模拟的协议栈线程和连接的消息循环，线程切换和真机一致。
+ * 可选择经过系统BluetoothGatt的假实现或直接使用内存中的传输层，两者的差值即系统接口适配的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SimulatedConnectionBenchmark {
+    private static final UUID SERVICE = UUID.fromString("0000ffe0-0000-1000-8000-00805f9b34fb");
+    private static final UUID CHARACTERISTIC = UUID.fromString("0000ffe1-0000-1000-8000-00805f9b34fb");
+    private static final String ADDRESS = "5A:00:00:00:00:01";
+    private static final int QUEUED_READS = 32;
+    /**
+     * 每个GATT操作的延时
+     */
+    @Param({"0", "1"})
+    int latencyMillis;
+    /**
+     * 传输层，gatt：经过android.bluetooth的假实现，memory：直接连接模拟外设
+     */
+    @Param({"gatt", "memory"})
+    String transport;
+    private SimulatedPeripheral peripheral;
+    private Connection connection;
+    private final Observer observer = new Observer();
+    private final RequestBuilderFactory factory = new RequestBuilderFactory();
+    private final byte[] data = BenchmarkSupport.bytes(4096);
+    private final WriteOptions writeOptions = new WriteOptions.Builder().setPackageSize(244).build();
+
+    @Setup
+    public void setup() throws InterruptedException {
+        peripheral = new SimulatedPeripheral.Builder(ADDRESS)
+                .addService(SERVICE, new SimulatedCharacteristic(CHARACTERISTIC, SimulatedCharacteristic.PROPERTY_READ |
+                        SimulatedCharacteristic.PROPERTY_WRITE | SimulatedCharacteristic.PROPERTY_NOTIFY, new byte[20]))
+                .setLatencyMillis(latencyMillis)
+                .setLatencyMillis(GattOperation.CONNECT, 5, 5)
+                .setSeed(1)
+                .build();
+        SimulatedBluetooth.register(peripheral);
+        BenchmarkSupport.transportFactory = "memory".equals(transport) ? SimulatedGattTransport.FACTORY : null;
+        ConnectionConfiguration configuration = new ConnectionConfiguration()
+                .setDiscoverServicesDelayMillis(0)
+                .setRequestTimeoutMillis(1000);
+        observer.expect(1);
+        connection = BenchmarkSupport.easyBle().connect(ADDRESS, configuration, observer);
+        observer.await();
+        observer.expect(1);
+        connection.execute(factory.getChangeMtuBuilder(247).build());
+        observer.await();
+    }
+
+    @TearDown
+    public void tearDown() {
+        connection.releaseNoEvent();
+        SimulatedBluetooth.unregister(ADDRESS);
+        BenchmarkSupport.transportFactory = null;
+    }
+
+    /**
+     * 4KB按244字节分包写入，等待每包的写入回调
+     */
+    @Benchmark
+    public void write4k() throws InterruptedException {
+        observer.expect(1);
+        connection.execute(factory.getWriteCharacteristicBuilder(SERVICE, CHARACTERISTIC, data).setWriteOptions(writeOptions).build());
+        observer.await();
+    }
+
+    /**
+     * 一次加入多个读请求，等待全部执行完
+     */
+    @Benchmark
+    public void queuedReads() throws InterruptedException {
+        observer.expect(QUEUED_READS);
+        for (int i = 0; i < QUEUED_READS; i++) {
+            connection.execute(factory.getReadCharacteristicBuilder(SERVICE, CHARACTERISTIC).build());
+        }
+        observer.await();
+    }
+
+    /**
+     * 链路断开到重连后发现服务完成
+     */
+    @Benchmark
+    public void reconnect() throws InterruptedException {
+        observer.expect(1);
+        peripheral.disconnect();
+        observer.await();
+    }
+
+    private static class Observer implements EventObserver {
+        private volatile CountDownLatch latch;
+        private volatile String failure;
+
+        void expect(int count) {
+            failure = null;
+            latch = new CountDownLatch(count);
+        }
+
+        void await() throws InterruptedException {
+            if (!latch.await(30, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Timed out, remaining: " + latch.getCount());
+            }
+            if (failure != null) {
+                throw new IllegalStateException(failure);
+            }
+        }
+
+        @Override
+        public void onConnectionStateChanged(@NonNull Device device) {
+            if (device.getConnectionState() == ConnectionState.SERVICE_DISCOVERED) {
+                latch.countDown();
+            }
+        }
+
+        @Override
+        public void onMtuChanged(@NonNull Request request, int mtu) {
+            latch.countDown();
+        }
+
+        @Override
+        public void onCharacteristicWrite(@NonNull Request request, @NonNull byte[] value) {
+            latch.countDown();
+        }
+
+        @Override
+        public void onCharacteristicRead(@NonNull Request request, @NonNull byte[] value) {
+            latch.countDown();
+        }
+
+        @Override
+        public void onRequestFailed(@NonNull Request request, int failType, int gattStatus, @Nullable Object value) {
+            failure = request.getType() + " failed, type: " + failType + ", status: " + gattStatus;
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import cn.wandersnail.ble.simulator.SimulatedBluetooth;
+import cn.wandersnail.ble.simulator.SimulatedCharacteristic;
+import cn.wandersnail.ble.simulator.SimulatedGattCallback;
+import cn.wandersnail.ble.simulator.SimulatedLink;
+import cn.wandersnail.ble.simulator.SimulatedPeripheral;
+
+/**
+ * 直接连接模拟外设的传输层，不经过android.bluetooth的假实现，用于测量连接本身的开销
+ */
+final class SimulatedGattTransport implements GattTransport {
+    static final GattTransport.Factory FACTORY = (device, configuration, callback) -> new SimulatedGattTransport(device.address, callback);
+    private final String address;
+    private final Callback callback;
+    private volatile SimulatedLink link;
+    private volatile List<UUID> services = Collections.emptyList();
+
+    private SimulatedGattTransport(String address, Callback callback) {
+        this.address = address;
+        this.callback = callback;
+    }
+
+    @Nullable
+    private SimulatedCharacteristic findCharacteristic(UUID service, UUID characteristic) {
+        SimulatedLink l = link;
+        if (l == null || !services.contains(service)) {
+            return null;
+        }
+        for (SimulatedCharacteristic c : l.getPeripheral().getCharacteristics(service)) {
+            if (c.getUuid().equals(characteristic)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean connect(boolean autoConnect) {
+        link = SimulatedBluetooth.connect(address, autoConnect, new LinkCallback());
+        return true;
+    }
+
+    @Override
+    public void disconnect() {
+        SimulatedLink l = link;
+        if (l != null) {
+            l.disconnect();
+        }
+    }
+
+    @Override
+    public void close() {
+        SimulatedLink l = link;
+        if (l != null) {
+            l.close();
+        }
+    }
+
+    @Override
+    public boolean refresh() {
+        return false;
+    }
+
+    @Override
+    public boolean discoverServices() {
+        SimulatedLink l = link;
+        return l != null && l.discoverServices();
+    }
+
+    @NonNull
+    @Override
+    public List<UUID> getServices() {
+        return services;
+    }
+
+    @Override
+    public boolean hasService(@NonNull UUID service) {
+        return services.contains(service);
+    }
+
+    @Override
+    public boolean hasCharacteristic(@NonNull UUID service, @NonNull UUID characteristic) {
+        return findCharacteristic(service, characteristic) != null;
+    }
+
+    @Override
+    public boolean hasDescriptor(@NonNull UUID service, @NonNull UUID characteristic, @NonNull UUID descriptor) {
+        SimulatedCharacteristic c = findCharacteristic(service, characteristic);
+        return c != null && c.hasClientConfig() && SimulatedPeripheral.CLIENT_CHARACTERISTIC_CONFIG.equals(descriptor);
+    }
+
+    @Override
+    public int getProperties(@NonNull UUID service, @NonNull UUID characteristic) {
+        SimulatedCharacteristic c = findCharacteristic(service, characteristic);
+        return c == null ? 0 : c.getProperties();
+    }
+
+    @Override
+    public boolean readCharacteristic(@NonNull UUID service, @NonNull UUID characteristic) {
+        SimulatedLink l = link;
+        return l != null && l.readCharacteristic(service, characteristic);
+    }
+
+    @Override
+    public int writeCharacteristic(@NonNull UUID service, @NonNull UUID characteristic, @NonNull byte[] value, int writeType) {
+        SimulatedLink l = link;
+        SimulatedCharacteristic c = findCharacteristic(service, characteristic);
+        if (l == null || c == null) {
+            return WRITE_FAILED;
+        }
+        if (writeType < 0) {
+            //和系统一样，有回复写入优先
+            writeType = (c.getProperties() & SimulatedCharacteristic.PROPERTY_WRITE) == 0 &&
+                    (c.getProperties() & SimulatedCharacteristic.PROPERTY_WRITE_NO_RESPONSE) != 0 ?
+                    SimulatedCharacteristic.WRITE_TYPE_NO_RESPONSE : SimulatedCharacteristic.WRITE_TYPE_DEFAULT;
+        }
+        if (l.writeCharacteristic(service, characteristic, value, writeType)) {
+            return WRITE_SUCCESS;
+        }
+        return l.isConnected() ? WRITE_BUSY : WRITE_FAILED;
+    }
+
+    @Override
+    public int writeReliableCharacteristic(@NonNull UUID service, @NonNull UUID characteristic, @NonNull byte[] value) {
+        //模拟特征没有可修改的写入类型
+        return writeCharacteristic(service, characteristic, value, SimulatedCharacteristic.WRITE_TYPE_DEFAULT);
+    }
+
+    @Override
+    public boolean isWriteValueCopied() {
+        return true;//模拟链路写入时复制
+    }
+
+    @Override
+    public boolean readDescriptor(@NonNull UUID service, @NonNull UUID characteristic, @NonNull UUID descriptor) {
+        SimulatedLink l = link;
+        return l != null && l.readDescriptor(service, characteristic, descriptor);
+    }
+
+    @Override
+    public boolean writeDescriptor(@NonNull UUID service, @NonNull UUID characteristic, @NonNull UUID descriptor, @NonNull byte[] value) {
+        SimulatedLink l = link;
+        return l != null && l.writeDescriptor(service, characteristic, descriptor, value);
+    }
+
+    @Override
+    public boolean setCharacteristicNotification(@NonNull UUID service, @NonNull UUID characteristic, boolean enable) {
+        SimulatedLink l = link;
+        return l != null && l.setCharacteristicNotification(service, characteristic, enable);
+    }
+
+    @Override
+    public boolean beginReliableWrite() {
+        SimulatedLink l = link;
+        return l != null && l.beginReliableWrite();
+    }
+
+    @Override
+    public boolean executeReliableWrite() {
+        SimulatedLink l = link;
+        return l != null && l.executeReliableWrite();
+    }
+
+    @Override
+    public void abortReliableWrite() {
+        SimulatedLink l = link;
+        if (l != null) {
+            l.abortReliableWrite();
+        }
+    }
+
+    @Override
+    public boolean requestMtu(int mtu) {
+        SimulatedLink l = link;
+        return l != null && l.requestMtu(mtu);
+    }
+
+    @Override
+    public boolean readRemoteRssi() {
+        SimulatedLink l = link;
+        return l != null && l.readRemoteRssi();
+    }
+
+    @Override
+    public void readPhy() {
+        SimulatedLink l = link;
+        if (l != null) {
+            l.readPhy();
+        }
+    }
+
+    @Override
+    public void setPreferredPhy(int txPhy, int rxPhy, int phyOptions) {
+        SimulatedLink l = link;
+        if (l != null) {
+            l.setPreferredPhy(txPhy, rxPhy, phyOptions);
+        }
+    }
+
+    private class LinkCallback implements SimulatedGattCallback {
+        @Override
+        public void onConnectionStateChange(int status, int newState) {
+            if (newState != SimulatedPeripheral.STATE_CONNECTED) {
+                services = Collections.emptyList();
+            }
+            callback.onConnectionStateChange(SimulatedGattTransport.this, status, newState);
+        }
+
+        @Override
+        public void onServicesDiscovered(int status) {
+            SimulatedLink l = link;
+            if (status == SimulatedPeripheral.GATT_SUCCESS && l != null) {
+                services = l.getPeripheral().getServiceUuids();
+            }
+            callback.onServicesDiscovered(SimulatedGattTransport.this, status);
+        }
+
+        @Override
+        public void onCharacteristicRead(UUID service, UUID characteristic, byte[] value, int status) {
+            callback.onCharacteristicRead(SimulatedGattTransport.this, service, characteristic, value, status);
+        }
+
+        @Override
+        public void onCharacteristicWrite(UUID service, UUID characteristic, byte[] value, int status) {
+            callback.onCharacteristicWrite(SimulatedGattTransport.this, service, characteristic, value, status);
+        }
+
+        @Override
+        public void onCharacteristicChanged(UUID service, UUID characteristic, byte[] value) {
+            callback.onCharacteristicChanged(SimulatedGattTransport.this, service, characteristic, value);
+        }
+
+        @Override
+        public void onDescriptorRead(UUID service, UUID characteristic, UUID descriptor, byte[] value, int status) {
+            callback.onDescriptorRead(SimulatedGattTransport.this, service, characteristic, descriptor, value, status);
+        }
+
+        @Override
+        public void onDescriptorWrite(UUID service, UUID characteristic, UUID descriptor, byte[] value, int status) {
+            callback.onDescriptorWrite(SimulatedGattTransport.this, service, characteristic, descriptor, status);
+        }
+
+        @Override
+        public void onReliableWriteCompleted(int status) {
+            callback.onReliableWriteCompleted(SimulatedGattTransport.this, status);
+        }
+
+        @Override
+        public void onReadRemoteRssi(int rssi, int status) {
+            callback.onReadRemoteRssi(SimulatedGattTransport.this, rssi, status);
+        }
+
+        @Override
+        public void onMtuChanged(int mtu, int status) {
+            callback.onMtuChanged(SimulatedGattTransport.this, mtu, status);
+        }
+
+        @Override
+        public void onPhyRead(int txPhy, int rxPhy, int status) {
+            callback.onPhyRead(SimulatedGattTransport.this, txPhy, rxPhy, status);
+        }
+
+        @Override
+        public void onPhyUpdate(int txPhy, int rxPhy, int status) {
+            callback.onPhyUpdate(SimulatedGattTransport.this, txPhy, rxPhy, status);
+        }
+    }
+}
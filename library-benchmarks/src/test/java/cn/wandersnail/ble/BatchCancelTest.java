@@ -0,0 +1,127 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.wandersnail.ble.simulator.SimulatedBluetooth;
+import cn.wandersnail.ble.simulator.SimulatedCharacteristic;
+import cn.wandersnail.ble.simulator.SimulatedPeripheral;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 执行中的批量请求被取消，在外设收到某一步的写入时取消
+ */
+public class BatchCancelTest {
+    private static final UUID SERVICE = UUID.fromString("0000ffe0-0000-1000-8000-00805f9b34fb");
+    private static final UUID CHARACTERISTIC = UUID.fromString("0000ffe1-0000-1000-8000-00805f9b34fb");
+    private static final String ADDRESS = "5A:00:00:00:00:03";
+    private final RequestBuilderFactory factory = new RequestBuilderFactory();
+    private SimulatedPeripheral peripheral;
+    private Connection connection;
+    private volatile CountDownLatch latch;
+    private volatile BatchResult completed;
+    private volatile BatchResult failed;
+    private volatile int failType;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        peripheral = new SimulatedPeripheral.Builder(ADDRESS)
+                .addService(SERVICE, new SimulatedCharacteristic(CHARACTERISTIC, SimulatedCharacteristic.PROPERTY_WRITE, new byte[20]))
+                .build();
+        SimulatedBluetooth.register(peripheral);
+        latch = new CountDownLatch(1);
+        EventObserver observer = new EventObserver() {
+            @Override
+            public void onConnectionStateChanged(@NonNull Device device) {
+                if (device.getConnectionState() == ConnectionState.SERVICE_DISCOVERED) {
+                    latch.countDown();
+                }
+            }
+
+            @Override
+            public void onBatchCompleted(@NonNull Request request, @NonNull BatchResult result) {
+                completed = result;
+                latch.countDown();
+            }
+
+            @Override
+            public void onRequestFailed(@NonNull Request request, int failType, int gattStatus, @Nullable Object value) {
+                BatchCancelTest.this.failType = failType;
+                failed = (BatchResult) value;
+                latch.countDown();
+            }
+        };
+        connection = BenchmarkSupport.easyBle().connect(ADDRESS, new ConnectionConfiguration().setDiscoverServicesDelayMillis(0), observer);
+        assertTrue("Connect timed out", latch.await(10, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void tearDown() {
+        connection.releaseNoEvent();
+        SimulatedBluetooth.unregister(ADDRESS);
+    }
+
+    /**
+     * 外设收到第cancelAt步的写入时取消，返回取消的结果
+     */
+    private boolean executeAndCancel(int steps, int cancelAt) throws InterruptedException {
+        BatchRequestBuilder builder = factory.getBatchRequestBuilder();
+        for (int i = 0; i < steps; i++) {
+            builder.addRequest(factory.getWriteCharacteristicBuilder(SERVICE, CHARACTERISTIC, new byte[]{(byte) i}).build());
+        }
+        Request batch = builder.build();
+        AtomicInteger writes = new AtomicInteger();
+        boolean[] cancelled = new boolean[1];
+        RequestHandle[] handle = new RequestHandle[1];
+        CountDownLatch executed = new CountDownLatch(1);
+        peripheral.setWriteListener((p, service, characteristic, value) -> {
+            if (writes.getAndIncrement() == cancelAt) {
+                try {
+                    executed.await();
+                } catch (InterruptedException ignore) {
+                }
+                cancelled[0] = handle[0].cancel();
+            }
+        });
+        latch = new CountDownLatch(1);
+        handle[0] = connection.execute(batch);
+        executed.countDown();
+        assertTrue("Batch timed out", latch.await(10, TimeUnit.SECONDS));
+        return cancelled[0];
+    }
+
+    @Test
+    public void cancelDuringLastStepCompletes() throws InterruptedException {
+        assertFalse(executeAndCancel(2, 1));
+        assertNull(failed);
+        assertNotNull(completed);
+        assertEquals(-1, completed.getFailedIndex());
+        assertArrayEquals(new byte[]{1}, (byte[]) completed.getValue(1));
+    }
+
+    @Test
+    public void cancelDuringStepStopsBeforeNext() throws InterruptedException {
+        assertTrue(executeAndCancel(3, 1));
+        assertNull(completed);
+        assertNotNull(failed);
+        assertEquals(Connection.REQUEST_FAIL_TYPE_REQUEST_CANCELLED, failType);
+        assertEquals(2, failed.getFailedIndex());
+        assertArrayEquals(new byte[]{1}, (byte[]) failed.getValue(1));
+        assertNull(failed.getValue(2));
+    }
+}
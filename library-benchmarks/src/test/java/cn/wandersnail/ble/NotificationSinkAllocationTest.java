@@ -0,0 +1,91 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import cn.wandersnail.ble.simulator.SimulatedBluetooth;
+import cn.wandersnail.ble.simulator.SimulatedCharacteristic;
+import cn.wandersnail.ble.simulator.SimulatedPeripheral;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 注册了接收器的通知，从GATT回调到接收器的整个路径不创建对象，包括前面的统计和事件记录
+ */
+public class NotificationSinkAllocationTest {
+    private static final UUID SERVICE = UUID.fromString("0000ffe0-0000-1000-8000-00805f9b34fb");
+    private static final UUID CHARACTERISTIC = UUID.fromString("0000ffe1-0000-1000-8000-00805f9b34fb");
+    private static final String ADDRESS = "5A:00:00:00:00:02";
+    private static final int WARMUP_EVENTS = 200000;
+    private static final int EVENTS = 100000;
+    private final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private volatile GattTransport transport;
+    private volatile GattTransport.Callback transportCallback;
+    private Connection connection;
+    private long received;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        SimulatedBluetooth.register(new SimulatedPeripheral.Builder(ADDRESS)
+                .addService(SERVICE, new SimulatedCharacteristic(CHARACTERISTIC, SimulatedCharacteristic.PROPERTY_NOTIFY, new byte[20]))
+                .build());
+        //记下连接的回调，在测试线程直接驱动通知
+        BenchmarkSupport.transportFactory = (device, configuration, callback) -> {
+            transportCallback = callback;
+            return transport = SimulatedGattTransport.FACTORY.create(device, configuration, callback);
+        };
+        CountDownLatch latch = new CountDownLatch(1);
+        EventObserver observer = new EventObserver() {
+            @Override
+            public void onConnectionStateChanged(@NonNull Device device) {
+                if (device.getConnectionState() == ConnectionState.SERVICE_DISCOVERED) {
+                    latch.countDown();
+                }
+            }
+        };
+        connection = BenchmarkSupport.easyBle().connect(ADDRESS, new ConnectionConfiguration().setDiscoverServicesDelayMillis(0), observer);
+        assertTrue("Connect timed out", latch.await(10, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void tearDown() {
+        connection.releaseNoEvent();
+        SimulatedBluetooth.unregister(ADDRESS);
+        BenchmarkSupport.transportFactory = null;
+    }
+
+    @Test
+    public void noAllocationPerNotification() {
+        assertNotNull("Flight recorder should be on by default", BenchmarkSupport.easyBle().getFlightRecorder());
+        assertTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        connection.addNotificationSink(SERVICE, CHARACTERISTIC, (device, service, characteristic, value, offset, length) -> received += length);
+        byte[] value = BenchmarkSupport.bytes(20);
+        GattTransport.Callback callback = transportCallback;
+        GattTransport t = transport;
+        //预热到编译完成，解释执行时的开销不计入
+        for (int i = 0; i < WARMUP_EVENTS; i++) {
+            callback.onCharacteristicChanged(t, SERVICE, CHARACTERISTIC, value);
+        }
+        long threadId = Thread.currentThread().getId();
+        received = 0;
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < EVENTS; i++) {
+            callback.onCharacteristicChanged(t, SERVICE, CHARACTERISTIC, value);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        assertEquals((long) EVENTS * value.length, received);
+        //允许读取分配字节数本身的少量开销，平均到每个事件为0
+        assertEquals("Allocated " + allocated + " bytes for " + EVENTS + " notifications", 0, allocated / EVENTS);
+    }
+}
@@ -0,0 +1,136 @@
+package cn.wandersnail.ble.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 耗时分布统计。按对数分桶，每个桶的上界是上一个的2^(1/4)倍，覆盖1毫秒到约1分钟，百分位的相对误差不超过19%。
+ * <br>样本数达到上限时所有桶减半，旧样本的权重逐渐降低，统计结果跟随链路状况变化。记录不加锁，可在任意线程调用
+ */
+public final class LatencyHistogram {
+    public static final int BUCKET_COUNT = 64;
+    private static final long[] UPPER_BOUNDS = new long[BUCKET_COUNT];
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong total = new AtomicLong();
+    private final int decayThreshold;
+
+    static {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            UPPER_BOUNDS[i] = (long) Math.ceil(Math.pow(2, i / 4.0));
+        }
+    }
+
+    /**
+     * @param decayThreshold 样本数达到此值时衰减
+     */
+    public LatencyHistogram(int decayThreshold) {
+        this.decayThreshold = decayThreshold;
+    }
+
+    /**
+     * 记录一次耗时
+     */
+    public void record(long millis) {
+        counts.incrementAndGet(bucketOf(millis));
+        if (total.incrementAndGet() >= decayThreshold) {
+            decay();
+        }
+    }
+
+    /**
+     * 当前样本数，衰减后减少
+     */
+    public long count() {
+        return total.get();
+    }
+
+    /**
+     * 获取百分位耗时，返回所在桶的上界
+     *
+     * @param percentile 0~1之间
+     */
+    public long percentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        addTo(snapshot);
+        return percentile(snapshot, percentile);
+    }
+
+    /**
+     * 根据耗时分布计算自适应的超时时长：99百分位乘以倍数，限制在上下限之间
+     *
+     * @param minSamples 最少样本数，不足时不计算
+     * @param multiplier 99百分位的倍数
+     * @return 超时时长，样本不足时返回-1
+     */
+    public long adaptiveTimeout(int minSamples, double multiplier, long minMillis, long maxMillis) {
+        if (count() < minSamples) {
+            return -1;
+        }
+        long timeout = (long) (percentile(0.99) * multiplier);
+        return Math.max(minMillis, Math.min(maxMillis, timeout));
+    }
+
+    /**
+     * 将各桶的样本数累加到数组中，用于合并多个统计
+     */
+    public void addTo(@NonNull long[] dest) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            dest[i] += counts.get(i);
+        }
+    }
+
+    /**
+     * 根据各桶的样本数计算百分位耗时
+     */
+    public static long percentile(@NonNull long[] snapshot, double percentile) {
+        long sum = 0;
+        for (long v : snapshot) {
+            sum += v;
+        }
+        if (sum == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(percentile * sum);
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= target) {
+                return UPPER_BOUNDS[i];
+            }
+        }
+        return UPPER_BOUNDS[BUCKET_COUNT - 1];
+    }
+
+    public void clear() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        total.set(0);
+    }
+
+    private synchronized void decay() {
+        if (total.get() < decayThreshold) {
+            return;//其他线程已衰减
+        }
+        long removed = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long v = counts.get(i);
+            long half = v - v / 2;
+            //用加法而不是直接赋值，不丢失并发记录的样本
+            counts.addAndGet(i, -half);
+            removed += half;
+        }
+        total.addAndGet(-removed);
+    }
+
+    static int bucketOf(long millis) {
+        int index = Arrays.binarySearch(UPPER_BOUNDS, millis);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+}
@@ -0,0 +1,136 @@
+package cn.wandersnail.ble.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 观察者注册表。弱引用持有观察者，记录每个观察者接收的事件及其执行方式，按事件id的位汇总所有观察者接收的事件，
+ * 没有观察者接收的事件可以不构建直接跳过。
+ * <br>注册和注销加锁，遍历不加锁，可在任意线程调用
+ *
+ * @param <O> 观察者
+ * @param <M> 事件的执行方式，如执行线程
+ */
+public final class ObserverRegistry<O, M> {
+    private final CopyOnWriteArrayList<Entry<O, M>> entries = new CopyOnWriteArrayList<>();
+    private volatile int observedEvents;//所有注册的观察者接收的事件，按事件id的位
+
+    /**
+     * 观察者及其每个事件的执行方式，为null的不通知
+     */
+    public static final class Entry<O, M> {
+        private final WeakReference<O> observer;
+        private final M[] modes;
+        private final int observedEvents;
+
+        /**
+         * @param modes 按事件id的执行方式，最多32个
+         */
+        public Entry(@NonNull O observer, @NonNull M[] modes) {
+            this.observer = new WeakReference<>(observer);
+            this.modes = modes;
+            int events = 0;
+            for (int i = 0; i < modes.length; i++) {
+                if (modes[i] != null) {
+                    events |= 1 << i;
+                }
+            }
+            observedEvents = events;
+        }
+
+        /**
+         * 观察者，已被回收时返回null
+         */
+        @Nullable
+        public O getObserver() {
+            return observer.get();
+        }
+
+        /**
+         * 事件的执行方式，不接收此事件时返回null
+         */
+        @Nullable
+        public M getMode(int eventId) {
+            return modes[eventId];
+        }
+
+        public boolean isObserved(int eventId) {
+            return (observedEvents & (1 << eventId)) != 0;
+        }
+    }
+
+    /**
+     * 注册，观察者已注册时不处理
+     *
+     * @return 是否注册成功
+     */
+    public boolean register(@NonNull Entry<O, M> entry) {
+        synchronized (entries) {
+            O observer = entry.getObserver();
+            if (observer == null || isRegistered(observer)) {
+                return false;
+            }
+            entries.add(entry);
+            updateObservedEvents();
+            return true;
+        }
+    }
+
+    public boolean isRegistered(@NonNull O observer) {
+        for (Entry<O, M> entry : entries) {
+            if (entry.getObserver() == observer) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 注销，同时移除已被回收的观察者
+     */
+    public void unregister(@NonNull O observer) {
+        synchronized (entries) {
+            for (Entry<O, M> entry : entries) {
+                O o = entry.getObserver();
+                if (o == null || o == observer) {
+                    entries.remove(entry);
+                }
+            }
+            updateObservedEvents();
+        }
+    }
+
+    public void unregisterAll() {
+        synchronized (entries) {
+            entries.clear();
+            observedEvents = 0;
+        }
+    }
+
+    /**
+     * 是否有注册的观察者接收此事件
+     */
+    public boolean isObserved(int eventId) {
+        return (observedEvents & (1 << eventId)) != 0;
+    }
+
+    /**
+     * 所有注册的观察者，遍历时不受注册和注销影响
+     */
+    @NonNull
+    public List<Entry<O, M>> getEntries() {
+        return entries;
+    }
+
+    private void updateObservedEvents() {
+        int events = 0;
+        for (Entry<O, M> entry : entries) {
+            events |= entry.observedEvents;
+        }
+        observedEvents = events;
+    }
+}
@@ -0,0 +1,56 @@
+package cn.wandersnail.ble.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * 分包写入时按包大小取数据。整包复用缓冲区，最后一包不满时按实际长度创建，不预先分包。
+ * 复用的缓冲区在下一次取包时被覆盖，只能在写入调用期间使用，协议栈不复制写入的数据时需关闭复用。
+ * <br>非线程安全，每个连接一个
+ */
+public final class PackageSplitter {
+    private byte[] buffer;
+    private boolean reuseBuffer = true;
+
+    /**
+     * 是否复用整包的缓冲区，关闭后每包新建
+     */
+    public void setReuseBuffer(boolean reuseBuffer) {
+        this.reuseBuffer = reuseBuffer;
+        if (!reuseBuffer) {
+            buffer = null;
+        }
+    }
+
+    /**
+     * 取出从offset开始的一包数据
+     */
+    @NonNull
+    public byte[] next(@NonNull byte[] data, int offset, int packageSize) {
+        int len = Math.min(packageSize, data.length - offset);
+        if (offset == 0 && len == data.length) {
+            return data;
+        }
+        if (len < packageSize) {
+            return Arrays.copyOfRange(data, offset, offset + len);
+        }
+        byte[] buffer = obtainBuffer(packageSize);
+        System.arraycopy(data, offset, buffer, 0, len);
+        return buffer;
+    }
+
+    /**
+     * 获取整包大小的缓冲区，不复用时每次新建
+     */
+    @NonNull
+    public byte[] obtainBuffer(int packageSize) {
+        if (!reuseBuffer) {
+            return new byte[packageSize];
+        }
+        if (buffer == null || buffer.length != packageSize) {
+            buffer = new byte[packageSize];
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,114 @@
+package cn.wandersnail.ble.core;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 自动重连的退避策略。先不搜索直接重连若干次，之后按已尝试次数逐步拉长两次搜索的间隔，搜索到设备再连接。
+ * <br>只记录次数和做决定，不计时，由调用方在链路断开或连接超时时询问。非线程安全，每个连接一个
+ */
+public final class ReconnectPolicy {
+    /**
+     * 不限制重连次数
+     */
+    public static final int ATTEMPTS_INFINITE = -1;
+    /**
+     * 不重连
+     */
+    public static final int ACTION_NONE = 0;
+    /**
+     * 直接重连
+     */
+    public static final int ACTION_CONNECT = 1;
+    /**
+     * 搜索到设备再重连
+     */
+    public static final int ACTION_SCAN = 2;
+    private int maxAttempts = ATTEMPTS_INFINITE;
+    private int immediateMaxAttempts;
+    private int[] scanAfterAttempts = new int[0];
+    private long[] scanIntervals = new long[0];
+    private int attempts;//已尝试次数
+    private int immediateAttempts;//不搜索直接重连的次数
+
+    /**
+     * 最大重连次数，{@link #ATTEMPTS_INFINITE}为不限制
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * 不搜索直接重连的最大次数
+     */
+    public void setImmediateMaxAttempts(int immediateMaxAttempts) {
+        this.immediateMaxAttempts = immediateMaxAttempts;
+    }
+
+    /**
+     * 已尝试次数与两次搜索最小间隔的对应关系，已尝试次数不小于afterAttempts[i]时，间隔intervals[i]后可以搜索
+     */
+    public void setScanIntervals(@NonNull int[] afterAttempts, @NonNull long[] intervalsMillis) {
+        if (afterAttempts.length != intervalsMillis.length) {
+            throw new IllegalArgumentException("afterAttempts and intervalsMillis must have the same length");
+        }
+        scanAfterAttempts = afterAttempts.clone();
+        scanIntervals = intervalsMillis.clone();
+    }
+
+    /**
+     * 已尝试的重连次数
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * 是否还可以继续重连
+     */
+    public boolean hasAttemptsLeft() {
+        return maxAttempts == ATTEMPTS_INFINITE || attempts < maxAttempts;
+    }
+
+    /**
+     * 链路断开后决定如何重连，需要重连时计为一次尝试
+     *
+     * @param sinceLastScanMillis 距离上次搜索停止的时长
+     * @return {@link #ACTION_CONNECT}、{@link #ACTION_SCAN}、{@link #ACTION_NONE}
+     */
+    public int next(long sinceLastScanMillis) {
+        if (immediateAttempts < immediateMaxAttempts) {
+            attempts++;
+            immediateAttempts++;
+            return ACTION_CONNECT;
+        }
+        if (isScanDue(sinceLastScanMillis)) {
+            attempts++;
+            return ACTION_SCAN;
+        }
+        return ACTION_NONE;
+    }
+
+    /**
+     * 距离上次搜索是否已超过当前尝试次数对应的间隔
+     */
+    public boolean isScanDue(long sinceLastScanMillis) {
+        for (int i = 0; i < scanAfterAttempts.length; i++) {
+            if (attempts >= scanAfterAttempts[i] && sinceLastScanMillis >= scanIntervals[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 连接成功或手动重连时重新计数
+     *
+     * @return 重置前是否在重连中
+     */
+    public boolean reset() {
+        boolean reconnecting = attempts > 0;
+        attempts = 0;
+        immediateAttempts = 0;
+        return reconnecting;
+    }
+}
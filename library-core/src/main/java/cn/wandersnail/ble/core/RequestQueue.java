@@ -0,0 +1,243 @@
+package cn.wandersnail.ble.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 请求队列。按优先级分桶，优先级高的先出队，同一优先级内先进先出。
+ * <br>入队、出队的复杂度与队列长度无关，只与不同优先级的数量有关。按类型或标识移除时只遍历匹配的请求，
+ * 被移除的请求不会立即从桶中删除，而是在出队时跳过。
+ * <br>非线程安全，由调用方加锁
+ *
+ * @param <E> 请求
+ * @param <T> 请求类型
+ */
+public final class RequestQueue<E extends RequestQueue.Entry<T>, T extends Enum<T>> {
+    //优先级从高到低排列的桶
+    private final TreeMap<Integer, ArrayDeque<E>> buckets = new TreeMap<>(Collections.reverseOrder());
+    //按请求类型索引的排队中的请求
+    private final Map<T, Set<E>> typeIndex;
+    //按标识索引的排队中的请求
+    private final Map<String, Set<E>> tagIndex = new HashMap<>();
+    private int size;
+
+    /**
+     * 队列中的请求，记录在队列中的状态
+     *
+     * @param <T> 请求类型
+     */
+    public abstract static class Entry<T extends Enum<T>> {
+        boolean queued;//是否在队列中
+        int queueEntries;//在队列桶中的位置数，重新入队时旧位置出队时跳过
+
+        /**
+         * 优先级，入队时读取，在队列中时不要修改
+         */
+        public abstract int getPriority();
+
+        @NonNull
+        public abstract T getType();
+
+        /**
+         * 标识，入队时读取，在队列中时不要修改
+         */
+        @Nullable
+        public abstract String getTag();
+
+        /**
+         * 是否在队列中
+         */
+        public final boolean isQueued() {
+            return queued;
+        }
+    }
+
+    /**
+     * @param typeClass 请求类型的类
+     */
+    public RequestQueue(@NonNull Class<T> typeClass) {
+        typeIndex = new EnumMap<>(typeClass);
+    }
+
+    /**
+     * 加入队列
+     */
+    public void add(@NonNull E request) {
+        ArrayDeque<E> bucket = buckets.get(request.getPriority());
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(request.getPriority(), bucket);
+        }
+        if (request.queued) {
+            //已在队列中，按重新入队处理，旧位置在出队时跳过
+            unindex(request);
+        }
+        bucket.addLast(request);
+        request.queueEntries++;
+        request.queued = true;
+        Set<E> set = typeIndex.get(request.getType());
+        if (set == null) {
+            set = new HashSet<>();
+            typeIndex.put(request.getType(), set);
+        }
+        set.add(request);
+        String tag = request.getTag();
+        if (tag != null) {
+            Set<E> tagSet = tagIndex.get(tag);
+            if (tagSet == null) {
+                tagSet = new HashSet<>();
+                tagIndex.put(tag, tagSet);
+            }
+            tagSet.add(request);
+        }
+        size++;
+    }
+
+    /**
+     * 取出优先级最高的请求，队列为空时返回null
+     */
+    @Nullable
+    public E poll() {
+        while (!buckets.isEmpty()) {
+            ArrayDeque<E> bucket = buckets.firstEntry().getValue();
+            E request;
+            while ((request = bucket.pollFirst()) != null) {
+                request.queueEntries--;
+                //已被移除的或者后面还有重新入队的位置，跳过
+                if (request.queued && request.queueEntries == 0) {
+                    unindex(request);
+                    return request;
+                }
+            }
+            buckets.pollFirstEntry();
+        }
+        return null;
+    }
+
+    /**
+     * 将请求从队列中移除
+     *
+     * @return 请求是否在队列中
+     */
+    public boolean remove(@NonNull E request) {
+        if (request.queued) {
+            unindex(request);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 移除指定类型的所有请求
+     *
+     * @return 被移除的请求
+     */
+    @NonNull
+    public List<E> removeByType(@NonNull T type) {
+        Set<E> set = typeIndex.remove(type);
+        if (set == null || set.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<E> list = new ArrayList<>(set);
+        for (E request : list) {
+            request.queued = false;
+            removeFromTagIndex(request);
+        }
+        size -= list.size();
+        return list;
+    }
+
+    /**
+     * 移除指定标识的所有请求
+     *
+     * @return 被移除的请求
+     */
+    @NonNull
+    public List<E> removeByTag(@NonNull String tag) {
+        Set<E> set = tagIndex.remove(tag);
+        if (set == null || set.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<E> list = new ArrayList<>(set);
+        for (E request : list) {
+            request.queued = false;
+            Set<E> typeSet = typeIndex.get(request.getType());
+            if (typeSet != null) {
+                typeSet.remove(request);
+            }
+        }
+        size -= list.size();
+        return list;
+    }
+
+    /**
+     * 按出队顺序取出所有请求，并清空队列
+     */
+    @NonNull
+    public List<E> drain() {
+        List<E> list = new ArrayList<>(size);
+        E request;
+        while ((request = poll()) != null) {
+            list.add(request);
+        }
+        return list;
+    }
+
+    /**
+     * 清空队列
+     */
+    public void clear() {
+        for (ArrayDeque<E> bucket : buckets.values()) {
+            for (E request : bucket) {
+                request.queued = false;
+                request.queueEntries = 0;
+            }
+        }
+        buckets.clear();
+        typeIndex.clear();
+        tagIndex.clear();
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void unindex(E request) {
+        request.queued = false;
+        Set<E> set = typeIndex.get(request.getType());
+        if (set != null) {
+            set.remove(request);
+        }
+        removeFromTagIndex(request);
+        size--;
+    }
+
+    private void removeFromTagIndex(E request) {
+        String tag = request.getTag();
+        if (tag != null) {
+            Set<E> set = tagIndex.get(tag);
+            if (set != null) {
+                set.remove(request);
+                if (set.isEmpty()) {
+                    tagIndex.remove(tag);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package cn.wandersnail.ble.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+    @Test
+    public void adaptiveTimeoutNeedsMinSamples() {
+        LatencyHistogram histogram = new LatencyHistogram(1000);
+        for (int i = 0; i < 19; i++) {
+            histogram.record(100);
+        }
+        assertEquals(-1, histogram.adaptiveTimeout(20, 3, 500, 10000));
+        histogram.record(100);
+        assertTrue(histogram.adaptiveTimeout(20, 3, 500, 10000) > 0);
+    }
+
+    @Test
+    public void adaptiveTimeoutIsBounded() {
+        LatencyHistogram fast = new LatencyHistogram(1000);
+        LatencyHistogram slow = new LatencyHistogram(1000);
+        for (int i = 0; i < 100; i++) {
+            fast.record(1);
+            slow.record(30000);
+        }
+        assertEquals(500, fast.adaptiveTimeout(20, 3, 500, 10000));
+        assertEquals(10000, slow.adaptiveTimeout(20, 3, 500, 10000));
+    }
+
+    @Test
+    public void adaptiveTimeoutFollowsP99() {
+        LatencyHistogram histogram = new LatencyHistogram(1000);
+        for (int i = 0; i < 100; i++) {
+            histogram.record(i < 98 ? 50 : 400);
+        }
+        long p99 = histogram.percentile(0.99);
+        assertTrue(p99 >= 400 && p99 <= 400 * 1.19);
+        assertEquals(p99 * 3, histogram.adaptiveTimeout(20, 3, 100, 10000));
+    }
+
+    @Test
+    public void percentileRelativeError() {
+        for (long millis = 1; millis < 60000; millis = millis * 3 / 2 + 1) {
+            LatencyHistogram histogram = new LatencyHistogram(1000);
+            histogram.record(millis);
+            long p = histogram.percentile(0.5);
+            assertTrue(millis + " -> " + p, p >= millis && p <= millis * 1.19 + 1);
+        }
+    }
+
+    @Test
+    public void decayKeepsDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram(100);
+        for (int i = 0; i < 1000; i++) {
+            histogram.record(20);
+        }
+        assertTrue(histogram.count() < 100);
+        assertEquals(histogram.percentile(0.5), histogram.percentile(0.99));
+    }
+}
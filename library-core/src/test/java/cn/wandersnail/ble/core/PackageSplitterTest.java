@@ -0,0 +1,81 @@
+package cn.wandersnail.ble.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class PackageSplitterTest {
+    private final PackageSplitter splitter = new PackageSplitter();
+
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    @Test
+    public void dataWithinOnePackageIsNotCopied() {
+        byte[] data = bytes(20);
+        assertSame(data, splitter.next(data, 0, 20));
+        assertSame(data, splitter.next(data, 0, 244));
+    }
+
+    @Test
+    public void emptyData() {
+        byte[] data = new byte[0];
+        assertEquals(0, splitter.next(data, 0, 20).length);
+    }
+
+    @Test
+    public void splitsAtPackageBoundaries() {
+        byte[] data = bytes(45);
+        byte[] first = splitter.next(data, 0, 20);
+        assertArrayEquals(Arrays.copyOfRange(data, 0, 20), first);
+        byte[] second = splitter.next(data, 20, 20);
+        //整包复用同一个缓冲区
+        assertSame(first, second);
+        assertArrayEquals(Arrays.copyOfRange(data, 20, 40), second);
+        byte[] last = splitter.next(data, 40, 20);
+        assertEquals(5, last.length);
+        assertArrayEquals(Arrays.copyOfRange(data, 40, 45), last);
+    }
+
+    @Test
+    public void exactMultipleEndsWithFullPackage() {
+        byte[] data = bytes(40);
+        splitter.next(data, 0, 20);
+        byte[] last = splitter.next(data, 20, 20);
+        assertEquals(20, last.length);
+        assertArrayEquals(Arrays.copyOfRange(data, 20, 40), last);
+    }
+
+    @Test
+    public void bufferFollowsPackageSize() {
+        byte[] data = bytes(100);
+        byte[] small = splitter.next(data, 0, 20);
+        byte[] large = splitter.next(data, 20, 40);
+        assertEquals(40, large.length);
+        assertNotSame(small, large);
+        assertArrayEquals(Arrays.copyOfRange(data, 20, 60), large);
+    }
+
+    @Test
+    public void noReuseAllocatesEachPackage() {
+        splitter.setReuseBuffer(false);
+        byte[] data = bytes(60);
+        byte[] first = splitter.next(data, 0, 20);
+        byte[] second = splitter.next(data, 20, 20);
+        assertNotSame(first, second);
+        //前一包不被后一包覆盖
+        assertArrayEquals(Arrays.copyOfRange(data, 0, 20), first);
+        assertArrayEquals(Arrays.copyOfRange(data, 20, 40), second);
+        assertNotSame(splitter.obtainBuffer(20), splitter.obtainBuffer(20));
+    }
+}
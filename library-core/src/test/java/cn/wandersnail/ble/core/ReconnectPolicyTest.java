@@ -0,0 +1,129 @@
+package cn.wandersnail.ble.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 与拆分前连接中重连计数逻辑的一致性
+ */
+public class ReconnectPolicyTest {
+    //默认配置的搜索间隔
+    private static final int[] AFTER_ATTEMPTS = {0, 1, 3, 5, 10};
+    private static final long[] INTERVALS = {2000, 5000, 10000, 30000, 60000};
+
+    /**
+     * 拆分前的逻辑：tryReconnectCount、reconnectImmediatelyCount和canScanReconnect
+     */
+    private static class Legacy {
+        final int tryReconnectMaxTimes;
+        final int reconnectImmediatelyMaxTimes;
+        int tryReconnectCount;
+        int reconnectImmediatelyCount;
+
+        Legacy(int tryReconnectMaxTimes, int reconnectImmediatelyMaxTimes) {
+            this.tryReconnectMaxTimes = tryReconnectMaxTimes;
+            this.reconnectImmediatelyMaxTimes = reconnectImmediatelyMaxTimes;
+        }
+
+        //连接超时时是否继续重连
+        boolean canReconnect() {
+            return tryReconnectMaxTimes == ReconnectPolicy.ATTEMPTS_INFINITE || tryReconnectCount < tryReconnectMaxTimes;
+        }
+
+        //doDisconnect(true)
+        int onDisconnect(long sinceLastScan) {
+            if (reconnectImmediatelyCount < reconnectImmediatelyMaxTimes) {
+                tryReconnectCount++;
+                reconnectImmediatelyCount++;
+                return ReconnectPolicy.ACTION_CONNECT;
+            } else if (canScanReconnect(sinceLastScan)) {
+                tryReconnectCount++;
+                return ReconnectPolicy.ACTION_SCAN;
+            }
+            return ReconnectPolicy.ACTION_NONE;
+        }
+
+        boolean canScanReconnect(long duration) {
+            for (int i = 0; i < AFTER_ATTEMPTS.length; i++) {
+                if (tryReconnectCount >= AFTER_ATTEMPTS[i] && duration >= INTERVALS[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        //发现服务成功
+        void reset() {
+            tryReconnectCount = 0;
+            reconnectImmediatelyCount = 0;
+        }
+    }
+
+    private static ReconnectPolicy policy(int maxAttempts, int immediateMaxAttempts) {
+        ReconnectPolicy policy = new ReconnectPolicy();
+        policy.setMaxAttempts(maxAttempts);
+        policy.setImmediateMaxAttempts(immediateMaxAttempts);
+        policy.setScanIntervals(AFTER_ATTEMPTS, INTERVALS);
+        return policy;
+    }
+
+    @Test
+    public void immediateAttemptsThenScanBackoff() {
+        ReconnectPolicy policy = policy(ReconnectPolicy.ATTEMPTS_INFINITE, 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(ReconnectPolicy.ACTION_CONNECT, policy.next(0));
+        }
+        assertEquals(3, policy.getAttempts());
+        //满足任一对应关系即可搜索，(0, 2000)一直满足
+        assertEquals(ReconnectPolicy.ACTION_NONE, policy.next(1999));
+        assertEquals(ReconnectPolicy.ACTION_SCAN, policy.next(2000));
+        assertEquals(4, policy.getAttempts());
+        assertTrue(policy.reset());
+        assertFalse(policy.reset());
+        assertEquals(ReconnectPolicy.ACTION_CONNECT, policy.next(0));
+    }
+
+    @Test
+    public void maxAttempts() {
+        ReconnectPolicy policy = policy(2, 3);
+        assertTrue(policy.hasAttemptsLeft());
+        policy.next(0);
+        policy.next(0);
+        assertFalse(policy.hasAttemptsLeft());
+    }
+
+    @Test
+    public void sameDecisionsAsLegacyLogic() {
+        Random random = new Random(1);
+        int[][] configs = {{ReconnectPolicy.ATTEMPTS_INFINITE, 3}, {ReconnectPolicy.ATTEMPTS_INFINITE, 0}, {5, 3}, {12, 1}, {0, 3}};
+        for (int[] config : configs) {
+            Legacy legacy = new Legacy(config[0], config[1]);
+            ReconnectPolicy policy = policy(config[0], config[1]);
+            for (int step = 0; step < 10000; step++) {
+                String msg = "config " + config[0] + "/" + config[1] + ", step " + step;
+                int event = random.nextInt(20);
+                if (event == 0) {
+                    legacy.reset();
+                    policy.reset();
+                } else if (event < 4) {
+                    assertEquals(msg, legacy.canReconnect(), policy.hasAttemptsLeft());
+                } else {
+                    long sinceLastScan = random.nextInt(70000);
+                    assertEquals(msg, legacy.canScanReconnect(sinceLastScan), policy.isScanDue(sinceLastScan));
+                    assertEquals(msg, legacy.onDisconnect(sinceLastScan), policy.next(sinceLastScan));
+                }
+                assertEquals(msg, legacy.tryReconnectCount, policy.getAttempts());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void scanIntervalsMustPair() {
+        new ReconnectPolicy().setScanIntervals(new int[]{0, 1}, new long[]{2000});
+    }
+}
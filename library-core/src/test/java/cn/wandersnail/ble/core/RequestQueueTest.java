@@ -0,0 +1,161 @@
+package cn.wandersnail.ble.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RequestQueueTest {
+    enum Type {
+        READ, WRITE
+    }
+
+    static class Item extends RequestQueue.Entry<Type> {
+        final String name;
+        final int priority;
+        final Type type;
+        final String tag;
+
+        Item(String name, int priority, Type type, String tag) {
+            this.name = name;
+            this.priority = priority;
+            this.type = type;
+            this.tag = tag;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @NonNull
+        @Override
+        public Type getType() {
+            return type;
+        }
+
+        @Nullable
+        @Override
+        public String getTag() {
+            return tag;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private final RequestQueue<Item, Type> queue = new RequestQueue<>(Type.class);
+
+    private static Item item(String name, int priority) {
+        return new Item(name, priority, Type.READ, null);
+    }
+
+    @Test
+    public void pollsByPriorityThenFifo() {
+        Item a = item("a", 0);
+        Item b = item("b", 5);
+        Item c = item("c", 0);
+        Item d = item("d", 5);
+        Item e = item("e", -1);
+        for (Item i : Arrays.asList(a, b, c, d, e)) {
+            queue.add(i);
+        }
+        assertEquals(5, queue.size());
+        assertEquals(Arrays.asList(b, d, a, c, e), queue.drain());
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void removedRequestIsSkipped() {
+        Item a = item("a", 0);
+        Item b = item("b", 0);
+        queue.add(a);
+        queue.add(b);
+        assertTrue(queue.remove(a));
+        assertFalse(a.isQueued());
+        assertFalse(queue.remove(a));
+        assertEquals(1, queue.size());
+        assertSame(b, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void readdedRequestTakesItsNewPlace() {
+        Item a = item("a", 0);
+        Item b = item("b", 0);
+        queue.add(a);
+        queue.add(b);
+        queue.remove(a);
+        queue.add(a);
+        assertEquals(2, queue.size());
+        assertEquals(Arrays.asList(b, a), queue.drain());
+    }
+
+    @Test
+    public void removeByTag() {
+        Item a = new Item("a", 0, Type.READ, "x");
+        Item b = new Item("b", 0, Type.WRITE, "y");
+        Item c = new Item("c", 1, Type.WRITE, "x");
+        queue.add(a);
+        queue.add(b);
+        queue.add(c);
+        List<Item> removed = queue.removeByTag("x");
+        assertEquals(2, removed.size());
+        assertTrue(removed.contains(a) && removed.contains(c));
+        assertFalse(a.isQueued());
+        assertFalse(c.isQueued());
+        assertEquals(1, queue.size());
+        assertTrue(queue.removeByTag("x").isEmpty());
+        //按标识移除的不再能按类型移除
+        assertEquals(Arrays.asList(b), queue.removeByType(Type.WRITE));
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void removeByType() {
+        Item a = new Item("a", 0, Type.READ, "x");
+        Item b = new Item("b", 0, Type.WRITE, "x");
+        Item c = new Item("c", 0, Type.READ, null);
+        queue.add(a);
+        queue.add(b);
+        queue.add(c);
+        List<Item> removed = queue.removeByType(Type.READ);
+        assertEquals(2, removed.size());
+        assertTrue(removed.contains(a) && removed.contains(c));
+        assertEquals(1, queue.size());
+        //按类型移除的不再能按标识移除
+        assertEquals(Arrays.asList(b), queue.removeByTag("x"));
+        assertTrue(queue.removeByType(Type.READ).isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void clear() {
+        Item a = new Item("a", 0, Type.READ, "x");
+        Item b = item("b", 3);
+        queue.add(a);
+        queue.add(b);
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertFalse(a.isQueued());
+        assertFalse(b.isQueued());
+        assertNull(queue.poll());
+        assertTrue(queue.removeByTag("x").isEmpty());
+        //清空后可以重新入队
+        queue.add(a);
+        assertSame(a, queue.poll());
+    }
+}
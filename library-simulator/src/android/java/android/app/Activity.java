@@ -0,0 +1,9 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * 在JVM上运行用的假实现，只用于类型检查
+ */
+public class Activity extends Context {
+}
@@ -0,0 +1,20 @@
+package android.app;
+
+/**
+ * 在JVM上运行用的假实现。EasyBLE通过反射从这里获取Application自动初始化
+ */
+public final class ActivityThread {
+    private static final ActivityThread CURRENT = new ActivityThread();
+    private final Application application = new Application();
+
+    private ActivityThread() {
+    }
+
+    public static ActivityThread currentActivityThread() {
+        return CURRENT;
+    }
+
+    public Application getApplication() {
+        return application;
+    }
+}
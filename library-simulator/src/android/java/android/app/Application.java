@@ -0,0 +1,9 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * 在JVM上运行用的假实现，实例由{@link ActivityThread}提供
+ */
+public class Application extends Context {
+}
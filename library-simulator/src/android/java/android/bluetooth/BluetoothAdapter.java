@@ -0,0 +1,40 @@
+package android.bluetooth;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * 在JVM上运行用的假实现，蓝牙始终开启，用于创建{@link BluetoothDevice}。不支持搜索
+ */
+public final class BluetoothAdapter {
+    public static final int STATE_OFF = 10;
+    public static final int STATE_ON = 12;
+    private static final BluetoothAdapter DEFAULT = new BluetoothAdapter();
+
+    public interface LeScanCallback {
+        void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord);
+    }
+
+    private BluetoothAdapter() {
+    }
+
+    public static BluetoothAdapter getDefaultAdapter() {
+        return DEFAULT;
+    }
+
+    public boolean isEnabled() {
+        return true;
+    }
+
+    public int getState() {
+        return STATE_ON;
+    }
+
+    public Set<BluetoothDevice> getBondedDevices() {
+        return Collections.emptySet();
+    }
+
+    public BluetoothDevice getRemoteDevice(String address) {
+        return new BluetoothDevice(address);
+    }
+}
@@ -0,0 +1,80 @@
+package android.bluetooth;
+
+import android.content.Context;
+
+import cn.wandersnail.ble.simulator.SimulatedBluetooth;
+import cn.wandersnail.ble.simulator.SimulatedPeripheral;
+
+/**
+ * 在JVM上运行用的假实现。都是低功耗设备，名称取注册的模拟外设的名称，没有注册时为地址后5位。
+ * 连接时连接到{@link SimulatedBluetooth}中注册的外设
+ */
+public final class BluetoothDevice {
+    public static final int DEVICE_TYPE_UNKNOWN = 0;
+    public static final int DEVICE_TYPE_CLASSIC = 1;
+    public static final int DEVICE_TYPE_LE = 2;
+    public static final int DEVICE_TYPE_DUAL = 3;
+    public static final int BOND_NONE = 10;
+    public static final int BOND_BONDING = 11;
+    public static final int BOND_BONDED = 12;
+    public static final int TRANSPORT_AUTO = 0;
+    public static final int TRANSPORT_BREDR = 1;
+    public static final int TRANSPORT_LE = 2;
+    public static final int PHY_LE_1M_MASK = 1;
+    public static final int PHY_LE_2M_MASK = 2;
+    public static final int PHY_LE_CODED_MASK = 4;
+    private final String address;
+
+    BluetoothDevice(String address) {
+        this.address = address;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getName() {
+        SimulatedPeripheral peripheral = SimulatedBluetooth.getPeripheral(address);
+        return peripheral == null ? "BLE-" + address.substring(address.length() - 5) : peripheral.getName();
+    }
+
+    public int getType() {
+        return DEVICE_TYPE_LE;
+    }
+
+    public int getBondState() {
+        return BOND_NONE;
+    }
+
+    public boolean createBond() {
+        return false;
+    }
+
+    public BluetoothGatt connectGatt(Context context, boolean autoConnect, BluetoothGattCallback callback) {
+        return new BluetoothGatt(this, autoConnect, callback);
+    }
+
+    public BluetoothGatt connectGatt(Context context, boolean autoConnect, BluetoothGattCallback callback, int transport) {
+        return new BluetoothGatt(this, autoConnect, callback);
+    }
+
+    public BluetoothGatt connectGatt(Context context, boolean autoConnect, BluetoothGattCallback callback, int transport,
+                                     int phy) {
+        return new BluetoothGatt(this, autoConnect, callback);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BluetoothDevice && address.equals(((BluetoothDevice) o).address);
+    }
+
+    @Override
+    public int hashCode() {
+        return address.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return address;
+    }
+}
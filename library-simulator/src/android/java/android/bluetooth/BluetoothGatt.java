@@ -0,0 +1,271 @@
+package android.bluetooth;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import cn.wandersnail.ble.simulator.SimulatedBluetooth;
+import cn.wandersnail.ble.simulator.SimulatedCharacteristic;
+import cn.wandersnail.ble.simulator.SimulatedGattCallback;
+import cn.wandersnail.ble.simulator.SimulatedLink;
+import cn.wandersnail.ble.simulator.SimulatedPeripheral;
+
+/**
+ * 在JVM上运行用的假实现，操作转给{@link SimulatedLink}，回调在模拟的协议栈线程上转为{@link BluetoothGattCallback}的回调。
+ * 和Android 11的协议栈一样，回调前先把值设置到特征或描述符，再回调不带值的方法
+ */
+public final class BluetoothGatt implements BluetoothProfile {
+    public static final int GATT_SUCCESS = 0;
+    public static final int GATT_READ_NOT_PERMITTED = 2;
+    public static final int GATT_WRITE_NOT_PERMITTED = 3;
+    public static final int GATT_INVALID_ATTRIBUTE_LENGTH = 13;
+    public static final int GATT_FAILURE = 257;
+    public static final int CONNECTION_PRIORITY_BALANCED = 0;
+    public static final int CONNECTION_PRIORITY_HIGH = 1;
+    public static final int CONNECTION_PRIORITY_LOW_POWER = 2;
+    private final BluetoothDevice device;
+    private final BluetoothGattCallback callback;
+    private final SimulatedLink link;
+    private volatile List<BluetoothGattService> services = Collections.emptyList();
+
+    BluetoothGatt(BluetoothDevice device, boolean autoConnect, BluetoothGattCallback callback) {
+        this.device = device;
+        this.callback = callback;
+        link = SimulatedBluetooth.connect(device.getAddress(), autoConnect, new CallbackAdapter());
+    }
+
+    public BluetoothDevice getDevice() {
+        return device;
+    }
+
+    public boolean connect() {
+        return link.connect();
+    }
+
+    public void disconnect() {
+        link.disconnect();
+    }
+
+    public void close() {
+        link.close();
+    }
+
+    /**
+     * 系统的隐藏方法，清除服务缓存
+     */
+    public boolean refresh() {
+        services = Collections.emptyList();
+        return true;
+    }
+
+    public boolean discoverServices() {
+        return link.discoverServices();
+    }
+
+    public List<BluetoothGattService> getServices() {
+        return services;
+    }
+
+    public BluetoothGattService getService(UUID uuid) {
+        for (BluetoothGattService service : services) {
+            if (service.getUuid().equals(uuid)) {
+                return service;
+            }
+        }
+        return null;
+    }
+
+    public boolean readCharacteristic(BluetoothGattCharacteristic characteristic) {
+        return link.readCharacteristic(characteristic.getService().getUuid(), characteristic.getUuid());
+    }
+
+    public boolean writeCharacteristic(BluetoothGattCharacteristic characteristic) {
+        byte[] value = characteristic.getValue();
+        return value != null && link.writeCharacteristic(characteristic.getService().getUuid(), characteristic.getUuid(),
+                value, characteristic.getWriteType());
+    }
+
+    public int writeCharacteristic(BluetoothGattCharacteristic characteristic, byte[] value, int writeType) {
+        if (!link.isConnected()) {
+            return BluetoothStatusCodes.ERROR_DEVICE_NOT_CONNECTED;
+        }
+        boolean success = link.writeCharacteristic(characteristic.getService().getUuid(), characteristic.getUuid(), value, writeType);
+        return success ? BluetoothStatusCodes.SUCCESS : BluetoothStatusCodes.ERROR_GATT_WRITE_REQUEST_BUSY;
+    }
+
+    public boolean readDescriptor(BluetoothGattDescriptor descriptor) {
+        BluetoothGattCharacteristic characteristic = descriptor.getCharacteristic();
+        return link.readDescriptor(characteristic.getService().getUuid(), characteristic.getUuid(), descriptor.getUuid());
+    }
+
+    public boolean writeDescriptor(BluetoothGattDescriptor descriptor) {
+        BluetoothGattCharacteristic characteristic = descriptor.getCharacteristic();
+        byte[] value = descriptor.getValue();
+        return value != null && link.writeDescriptor(characteristic.getService().getUuid(), characteristic.getUuid(),
+                descriptor.getUuid(), value);
+    }
+
+    public int writeDescriptor(BluetoothGattDescriptor descriptor, byte[] value) {
+        if (!link.isConnected()) {
+            return BluetoothStatusCodes.ERROR_DEVICE_NOT_CONNECTED;
+        }
+        BluetoothGattCharacteristic characteristic = descriptor.getCharacteristic();
+        boolean success = link.writeDescriptor(characteristic.getService().getUuid(), characteristic.getUuid(),
+                descriptor.getUuid(), value);
+        return success ? BluetoothStatusCodes.SUCCESS : BluetoothStatusCodes.ERROR_GATT_WRITE_REQUEST_BUSY;
+    }
+
+    public boolean setCharacteristicNotification(BluetoothGattCharacteristic characteristic, boolean enable) {
+        return link.setCharacteristicNotification(characteristic.getService().getUuid(), characteristic.getUuid(), enable);
+    }
+
+    public boolean beginReliableWrite() {
+        return link.beginReliableWrite();
+    }
+
+    public boolean executeReliableWrite() {
+        return link.executeReliableWrite();
+    }
+
+    public void abortReliableWrite() {
+        link.abortReliableWrite();
+    }
+
+    public boolean requestMtu(int mtu) {
+        return link.requestMtu(mtu);
+    }
+
+    public boolean readRemoteRssi() {
+        return link.readRemoteRssi();
+    }
+
+    public void readPhy() {
+        link.readPhy();
+    }
+
+    public void setPreferredPhy(int txPhy, int rxPhy, int phyOptions) {
+        link.setPreferredPhy(txPhy, rxPhy, phyOptions);
+    }
+
+    public boolean requestConnectionPriority(int connectionPriority) {
+        return link.isConnected();
+    }
+
+    private BluetoothGattCharacteristic findCharacteristic(UUID service, UUID characteristic) {
+        BluetoothGattService gattService = getService(service);
+        return gattService == null ? null : gattService.getCharacteristic(characteristic);
+    }
+
+    private BluetoothGattDescriptor findDescriptor(UUID service, UUID characteristic, UUID descriptor) {
+        BluetoothGattCharacteristic gattCharacteristic = findCharacteristic(service, characteristic);
+        return gattCharacteristic == null ? null : gattCharacteristic.getDescriptor(descriptor);
+    }
+
+    //按外设的定义创建服务
+    private List<BluetoothGattService> createServices() {
+        SimulatedPeripheral peripheral = link.getPeripheral();
+        List<BluetoothGattService> list = new ArrayList<>();
+        for (UUID uuid : peripheral.getServiceUuids()) {
+            BluetoothGattService service = new BluetoothGattService(uuid, BluetoothGattService.SERVICE_TYPE_PRIMARY);
+            for (SimulatedCharacteristic c : peripheral.getCharacteristics(uuid)) {
+                BluetoothGattCharacteristic characteristic = new BluetoothGattCharacteristic(c.getUuid(), c.getProperties(),
+                        BluetoothGattCharacteristic.PERMISSION_READ | BluetoothGattCharacteristic.PERMISSION_WRITE);
+                if (c.hasClientConfig()) {
+                    characteristic.addDescriptor(new BluetoothGattDescriptor(SimulatedPeripheral.CLIENT_CHARACTERISTIC_CONFIG,
+                            BluetoothGattDescriptor.PERMISSION_READ | BluetoothGattDescriptor.PERMISSION_WRITE));
+                }
+                service.addCharacteristic(characteristic);
+            }
+            list.add(service);
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    private class CallbackAdapter implements SimulatedGattCallback {
+        @Override
+        public void onConnectionStateChange(int status, int newState) {
+            callback.onConnectionStateChange(BluetoothGatt.this, status, newState);
+        }
+
+        @Override
+        public void onServicesDiscovered(int status) {
+            if (status == GATT_SUCCESS) {
+                services = createServices();
+            }
+            callback.onServicesDiscovered(BluetoothGatt.this, status);
+        }
+
+        @Override
+        public void onCharacteristicRead(UUID service, UUID characteristic, byte[] value, int status) {
+            BluetoothGattCharacteristic gattCharacteristic = findCharacteristic(service, characteristic);
+            if (gattCharacteristic != null) {
+                if (status == GATT_SUCCESS) {
+                    gattCharacteristic.setValue(value);
+                }
+                callback.onCharacteristicRead(BluetoothGatt.this, gattCharacteristic, status);
+            }
+        }
+
+        @Override
+        public void onCharacteristicWrite(UUID service, UUID characteristic, byte[] value, int status) {
+            BluetoothGattCharacteristic gattCharacteristic = findCharacteristic(service, characteristic);
+            if (gattCharacteristic != null) {
+                callback.onCharacteristicWrite(BluetoothGatt.this, gattCharacteristic, status);
+            }
+        }
+
+        @Override
+        public void onCharacteristicChanged(UUID service, UUID characteristic, byte[] value) {
+            BluetoothGattCharacteristic gattCharacteristic = findCharacteristic(service, characteristic);
+            if (gattCharacteristic != null) {
+                gattCharacteristic.setValue(value);
+                callback.onCharacteristicChanged(BluetoothGatt.this, gattCharacteristic);
+            }
+        }
+
+        @Override
+        public void onDescriptorRead(UUID service, UUID characteristic, UUID descriptor, byte[] value, int status) {
+            BluetoothGattDescriptor gattDescriptor = findDescriptor(service, characteristic, descriptor);
+            if (gattDescriptor != null) {
+                if (status == GATT_SUCCESS) {
+                    gattDescriptor.setValue(value);
+                }
+                callback.onDescriptorRead(BluetoothGatt.this, gattDescriptor, status);
+            }
+        }
+
+        @Override
+        public void onDescriptorWrite(UUID service, UUID characteristic, UUID descriptor, byte[] value, int status) {
+            BluetoothGattDescriptor gattDescriptor = findDescriptor(service, characteristic, descriptor);
+            if (gattDescriptor != null) {
+                callback.onDescriptorWrite(BluetoothGatt.this, gattDescriptor, status);
+            }
+        }
+
+        @Override
+        public void onReliableWriteCompleted(int status) {
+            callback.onReliableWriteCompleted(BluetoothGatt.this, status);
+        }
+
+        @Override
+        public void onReadRemoteRssi(int rssi, int status) {
+            callback.onReadRemoteRssi(BluetoothGatt.this, rssi, status);
+        }
+
+        @Override
+        public void onMtuChanged(int mtu, int status) {
+            callback.onMtuChanged(BluetoothGatt.this, mtu, status);
+        }
+
+        @Override
+        public void onPhyRead(int txPhy, int rxPhy, int status) {
+            callback.onPhyRead(BluetoothGatt.this, txPhy, rxPhy, status);
+        }
+
+        @Override
+        public void onPhyUpdate(int txPhy, int rxPhy, int status) {
+            callback.onPhyUpdate(BluetoothGatt.this, txPhy, rxPhy, status);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package android.bluetooth;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 在JVM上运行用的假实现
+ */
+public class BluetoothGattCharacteristic {
+    public static final int PROPERTY_BROADCAST = 0x01;
+    public static final int PROPERTY_READ = 0x02;
+    public static final int PROPERTY_WRITE_NO_RESPONSE = 0x04;
+    public static final int PROPERTY_WRITE = 0x08;
+    public static final int PROPERTY_NOTIFY = 0x10;
+    public static final int PROPERTY_INDICATE = 0x20;
+    public static final int PROPERTY_SIGNED_WRITE = 0x40;
+    public static final int PERMISSION_READ = 0x01;
+    public static final int PERMISSION_WRITE = 0x10;
+    public static final int WRITE_TYPE_NO_RESPONSE = 0x01;
+    public static final int WRITE_TYPE_DEFAULT = 0x02;
+    public static final int WRITE_TYPE_SIGNED = 0x04;
+    private final UUID uuid;
+    private final int properties;
+    private final int permissions;
+    private final List<BluetoothGattDescriptor> descriptors = new ArrayList<>();
+    BluetoothGattService service;
+    private int writeType;
+    private byte[] value;
+
+    public BluetoothGattCharacteristic(UUID uuid, int properties, int permissions) {
+        this.uuid = uuid;
+        this.properties = properties;
+        this.permissions = permissions;
+        if ((properties & PROPERTY_WRITE_NO_RESPONSE) != 0) {
+            writeType = WRITE_TYPE_NO_RESPONSE;
+        } else {
+            writeType = WRITE_TYPE_DEFAULT;
+        }
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public int getProperties() {
+        return properties;
+    }
+
+    public int getPermissions() {
+        return permissions;
+    }
+
+    public BluetoothGattService getService() {
+        return service;
+    }
+
+    public boolean addDescriptor(BluetoothGattDescriptor descriptor) {
+        descriptors.add(descriptor);
+        descriptor.characteristic = this;
+        return true;
+    }
+
+    public List<BluetoothGattDescriptor> getDescriptors() {
+        return descriptors;
+    }
+
+    public BluetoothGattDescriptor getDescriptor(UUID uuid) {
+        for (BluetoothGattDescriptor descriptor : descriptors) {
+            if (descriptor.getUuid().equals(uuid)) {
+                return descriptor;
+            }
+        }
+        return null;
+    }
+
+    public int getWriteType() {
+        return writeType;
+    }
+
+    public void setWriteType(int writeType) {
+        this.writeType = writeType;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+
+    public boolean setValue(byte[] value) {
+        this.value = value;
+        return true;
+    }
+}
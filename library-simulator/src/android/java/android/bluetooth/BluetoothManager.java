@@ -0,0 +1,16 @@
+package android.bluetooth;
+
+/**
+ * 在JVM上运行用的假实现，返回默认的{@link BluetoothAdapter}
+ */
+public final class BluetoothManager {
+    private final BluetoothAdapter adapter;
+
+    public BluetoothManager(BluetoothAdapter adapter) {
+        this.adapter = adapter;
+    }
+
+    public BluetoothAdapter getAdapter() {
+        return adapter;
+    }
+}
@@ -0,0 +1,18 @@
+package android.bluetooth;
+
+/**
+ * 在JVM上运行用的假实现
+ */
+public interface BluetoothProfile {
+    int GATT = 7;
+    int STATE_DISCONNECTED = 0;
+    int STATE_CONNECTING = 1;
+    int STATE_CONNECTED = 2;
+    int STATE_DISCONNECTING = 3;
+
+    interface ServiceListener {
+        void onServiceConnected(int profile, BluetoothProfile proxy);
+
+        void onServiceDisconnected(int profile);
+    }
+}
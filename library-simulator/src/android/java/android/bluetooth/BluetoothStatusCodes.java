@@ -0,0 +1,14 @@
+package android.bluetooth;
+
+/**
+ * 在JVM上运行用的假实现
+ */
+public final class BluetoothStatusCodes {
+    public static final int SUCCESS = 0;
+    public static final int ERROR_DEVICE_NOT_CONNECTED = 4;
+    public static final int ERROR_GATT_WRITE_NOT_ALLOWED = 200;
+    public static final int ERROR_GATT_WRITE_REQUEST_BUSY = 201;
+
+    private BluetoothStatusCodes() {
+    }
+}
@@ -0,0 +1,17 @@
+package android.bluetooth.le;
+
+import java.util.List;
+
+/**
+ * 在JVM上运行用的假实现，搜索器的字段需要
+ */
+public abstract class ScanCallback {
+    public void onScanResult(int callbackType, ScanResult result) {
+    }
+
+    public void onBatchScanResults(List<ScanResult> results) {
+    }
+
+    public void onScanFailed(int errorCode) {
+    }
+}
@@ -0,0 +1,20 @@
+package android.bluetooth.le;
+
+/**
+ * 在JVM上运行用的假实现，只保存原始数据
+ */
+public final class ScanRecord {
+    private final byte[] bytes;
+
+    private ScanRecord(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    public static ScanRecord parseFromBytes(byte[] scanRecord) {
+        return scanRecord == null ? null : new ScanRecord(scanRecord);
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+}
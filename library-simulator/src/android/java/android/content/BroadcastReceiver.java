@@ -0,0 +1,8 @@
+package android.content;
+
+/**
+ * 在JVM上运行用的假实现，不会收到广播
+ */
+public abstract class BroadcastReceiver {
+    public abstract void onReceive(Context context, Intent intent);
+}
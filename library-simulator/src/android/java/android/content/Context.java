@@ -0,0 +1,33 @@
+package android.content;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothManager;
+import android.content.pm.PackageManager;
+
+/**
+ * 在JVM上运行用的假实现。所有Context共用模拟的系统服务，广播不会发送，注册接收者无效果
+ */
+public abstract class Context {
+    public static final String BLUETOOTH_SERVICE = "bluetooth";
+    private static final PackageManager PACKAGE_MANAGER = new PackageManager();
+    private static final BluetoothManager BLUETOOTH_MANAGER = new BluetoothManager(BluetoothAdapter.getDefaultAdapter());
+
+    public PackageManager getPackageManager() {
+        return PACKAGE_MANAGER;
+    }
+
+    public Object getSystemService(String name) {
+        return BLUETOOTH_SERVICE.equals(name) ? BLUETOOTH_MANAGER : null;
+    }
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+        return null;
+    }
+
+    public void unregisterReceiver(BroadcastReceiver receiver) {
+    }
+}
@@ -0,0 +1,19 @@
+package android.content;
+
+/**
+ * 在JVM上运行用的假实现，只用于类型检查
+ */
+public class Intent {
+    private String action;
+
+    public Intent() {
+    }
+
+    public Intent(String action) {
+        this.action = action;
+    }
+
+    public String getAction() {
+        return action;
+    }
+}
@@ -0,0 +1,19 @@
+package android.content;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 在JVM上运行用的假实现，只保存添加的action
+ */
+public class IntentFilter {
+    private final List<String> actions = new ArrayList<>();
+
+    public final void addAction(String action) {
+        actions.add(action);
+    }
+
+    public final int countActions() {
+        return actions.size();
+    }
+}
@@ -0,0 +1,14 @@
+package android.content.pm;
+
+/**
+ * 在JVM上运行用的假实现。只支持低功耗蓝牙
+ */
+public class PackageManager {
+    public static final String FEATURE_BLUETOOTH_LE = "android.hardware.bluetooth_le";
+    public static final int PERMISSION_GRANTED = 0;
+    public static final int PERMISSION_DENIED = -1;
+
+    public boolean hasSystemFeature(String name) {
+        return FEATURE_BLUETOOTH_LE.equals(name);
+    }
+}
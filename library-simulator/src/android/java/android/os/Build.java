@@ -0,0 +1,10 @@
+package android.os;
+
+/**
+ * 在JVM上运行用的假实现。系统版本固定为Android 11，不走Android 12以上的权限检查
+ */
+public class Build {
+    public static class VERSION {
+        public static final int SDK_INT = 30;
+    }
+}
@@ -0,0 +1,114 @@
+package android.os;
+
+/**
+ * 在JVM上运行用的假实现。消息按时间放入{@link Looper}的队列，在消息循环的线程上执行
+ */
+public class Handler {
+    public interface Callback {
+        boolean handleMessage(Message msg);
+    }
+
+    private final Looper looper;
+    private final Callback callback;
+
+    public Handler() {
+        this(Looper.myLooper(), null);
+    }
+
+    public Handler(Looper looper) {
+        this(looper, null);
+    }
+
+    public Handler(Looper looper, Callback callback) {
+        if (looper == null) {
+            throw new RuntimeException("Can't create handler inside thread " + Thread.currentThread() +
+                    " that has not called Looper.prepare()");
+        }
+        this.looper = looper;
+        this.callback = callback;
+    }
+
+    public void handleMessage(Message msg) {
+    }
+
+    public void dispatchMessage(Message msg) {
+        if (msg.callback != null) {
+            msg.callback.run();
+        } else if (callback == null || !callback.handleMessage(msg)) {
+            handleMessage(msg);
+        }
+    }
+
+    public final Looper getLooper() {
+        return looper;
+    }
+
+    public final Message obtainMessage(int what) {
+        return Message.obtain(this, what);
+    }
+
+    public final Message obtainMessage(int what, Object obj) {
+        return Message.obtain(this, what, obj);
+    }
+
+    public final Message obtainMessage(int what, int arg1, int arg2) {
+        return Message.obtain(this, what, arg1, arg2);
+    }
+
+    public final Message obtainMessage(int what, int arg1, int arg2, Object obj) {
+        return Message.obtain(this, what, arg1, arg2, obj);
+    }
+
+    public final boolean post(Runnable r) {
+        return sendMessageDelayed(Message.obtain(this, r), 0);
+    }
+
+    public final boolean postDelayed(Runnable r, long delayMillis) {
+        return sendMessageDelayed(Message.obtain(this, r), delayMillis);
+    }
+
+    public final boolean postAtTime(Runnable r, long uptimeMillis) {
+        return sendMessageAtTime(Message.obtain(this, r), uptimeMillis);
+    }
+
+    public final boolean sendMessage(Message msg) {
+        return sendMessageDelayed(msg, 0);
+    }
+
+    public final boolean sendEmptyMessage(int what) {
+        return sendMessageDelayed(Message.obtain(this, what), 0);
+    }
+
+    public final boolean sendEmptyMessageDelayed(int what, long delayMillis) {
+        return sendMessageDelayed(Message.obtain(this, what), delayMillis);
+    }
+
+    public final boolean sendMessageDelayed(Message msg, long delayMillis) {
+        return sendMessageAtTime(msg, SystemClock.uptimeMillis() + Math.max(0, delayMillis));
+    }
+
+    public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+        msg.target = this;
+        return looper.queue.enqueueMessage(msg, uptimeMillis);
+    }
+
+    public final boolean hasMessages(int what) {
+        return looper.queue.hasMessages(this, what, null);
+    }
+
+    public final void removeCallbacks(Runnable r) {
+        looper.queue.removeMessages(this, r, 0, null);
+    }
+
+    public final void removeMessages(int what) {
+        looper.queue.removeMessages(this, null, what, null);
+    }
+
+    public final void removeMessages(int what, Object object) {
+        looper.queue.removeMessages(this, null, what, object);
+    }
+
+    public final void removeCallbacksAndMessages(Object token) {
+        looper.queue.removeMessages(this, null, -1, token);
+    }
+}
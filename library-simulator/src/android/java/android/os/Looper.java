@@ -0,0 +1,65 @@
+package android.os;
+
+/**
+ * 在JVM上运行用的假实现。和系统一样每个线程最多一个消息循环，主线程的消息循环在第一次获取时
+ * 创建一个名为main的守护线程运行
+ */
+public final class Looper {
+    private static final ThreadLocal<Looper> threadLocal = new ThreadLocal<>();
+    private static Looper mainLooper;
+    final MessageQueue queue = new MessageQueue();
+    private final Thread thread = Thread.currentThread();
+
+    private Looper() {
+    }
+
+    public static void prepare() {
+        if (threadLocal.get() != null) {
+            throw new RuntimeException("Only one Looper may be created per thread");
+        }
+        threadLocal.set(new Looper());
+    }
+
+    public static Looper getMainLooper() {
+        synchronized (Looper.class) {
+            if (mainLooper == null) {
+                HandlerThread thread = new HandlerThread("main");
+                thread.setDaemon(true);
+                thread.start();
+                mainLooper = thread.getLooper();
+            }
+            return mainLooper;
+        }
+    }
+
+    public static Looper myLooper() {
+        return threadLocal.get();
+    }
+
+    public static void loop() {
+        Looper me = myLooper();
+        if (me == null) {
+            throw new RuntimeException("No Looper; Looper.prepare() wasn't called on this thread.");
+        }
+        Message msg;
+        while ((msg = me.queue.next()) != null) {
+            msg.target.dispatchMessage(msg);
+        }
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+
+    public boolean isCurrentThread() {
+        return thread == Thread.currentThread();
+    }
+
+    public void quit() {
+        queue.quit(false);
+    }
+
+    public void quitSafely() {
+        queue.quit(true);
+    }
+}
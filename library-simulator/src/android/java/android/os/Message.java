@@ -0,0 +1,74 @@
+package android.os;
+
+/**
+ * 在JVM上运行用的假实现，不复用实例
+ */
+public final class Message {
+    public int what;
+    public int arg1;
+    public int arg2;
+    public Object obj;
+    Handler target;
+    Runnable callback;
+    long when;
+    Message next;
+
+    public static Message obtain() {
+        return new Message();
+    }
+
+    public static Message obtain(Handler h) {
+        return obtain(h, 0, 0, 0, null);
+    }
+
+    public static Message obtain(Handler h, Runnable callback) {
+        Message m = obtain(h);
+        m.callback = callback;
+        return m;
+    }
+
+    public static Message obtain(Handler h, int what) {
+        return obtain(h, what, 0, 0, null);
+    }
+
+    public static Message obtain(Handler h, int what, Object obj) {
+        return obtain(h, what, 0, 0, obj);
+    }
+
+    public static Message obtain(Handler h, int what, int arg1, int arg2) {
+        return obtain(h, what, arg1, arg2, null);
+    }
+
+    public static Message obtain(Handler h, int what, int arg1, int arg2, Object obj) {
+        Message m = new Message();
+        m.target = h;
+        m.what = what;
+        m.arg1 = arg1;
+        m.arg2 = arg2;
+        m.obj = obj;
+        return m;
+    }
+
+    public Handler getTarget() {
+        return target;
+    }
+
+    public void setTarget(Handler target) {
+        this.target = target;
+    }
+
+    public Runnable getCallback() {
+        return callback;
+    }
+
+    public long getWhen() {
+        return when;
+    }
+
+    public void sendToTarget() {
+        target.sendMessage(this);
+    }
+
+    public void recycle() {
+    }
+}
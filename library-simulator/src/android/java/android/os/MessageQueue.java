@@ -0,0 +1,123 @@
+package android.os;
+
+/**
+ * 在JVM上运行用的假实现。和系统一样按执行时间排成链表，时间相同的先进先出
+ */
+public final class MessageQueue {
+    private Message messages;
+    private boolean quitting;
+
+    MessageQueue() {
+    }
+
+    synchronized boolean enqueueMessage(Message msg, long when) {
+        if (quitting) {
+            return false;
+        }
+        msg.when = when;
+        if (messages == null || when < messages.when) {
+            msg.next = messages;
+            messages = msg;
+        } else {
+            Message prev = messages;
+            while (prev.next != null && prev.next.when <= when) {
+                prev = prev.next;
+            }
+            msg.next = prev.next;
+            prev.next = msg;
+        }
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * 取出下一个到时间的消息，没有时等待。退出后返回null
+     */
+    synchronized Message next() {
+        while (true) {
+            long now = SystemClock.uptimeMillis();
+            if (messages != null && messages.when <= now) {
+                Message msg = messages;
+                messages = msg.next;
+                msg.next = null;
+                return msg;
+            }
+            if (quitting && messages == null) {
+                return null;
+            }
+            try {
+                if (messages == null) {
+                    wait();
+                } else {
+                    wait(messages.when - now);
+                }
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @param safe true则只移除还没到时间的消息，已到时间的执行完再退出
+     */
+    synchronized void quit(boolean safe) {
+        if (quitting) {
+            return;
+        }
+        quitting = true;
+        if (safe) {
+            long now = SystemClock.uptimeMillis();
+            Message prev = null;
+            Message msg = messages;
+            while (msg != null && msg.when <= now) {
+                prev = msg;
+                msg = msg.next;
+            }
+            if (prev == null) {
+                messages = null;
+            } else {
+                prev.next = null;
+            }
+        } else {
+            messages = null;
+        }
+        notifyAll();
+    }
+
+    synchronized boolean hasMessages(Handler h, int what, Object object) {
+        for (Message msg = messages; msg != null; msg = msg.next) {
+            if (msg.target == h && msg.callback == null && msg.what == what && (object == null || msg.obj == object)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 移除匹配的消息
+     *
+     * @param r      不为null时只移除此任务
+     * @param what   r为null时只移除此类型的消息，小于0表示全部类型
+     * @param object 不为null时只移除obj为此对象的消息
+     */
+    synchronized void removeMessages(Handler h, Runnable r, int what, Object object) {
+        Message prev = null;
+        Message msg = messages;
+        while (msg != null) {
+            Message next = msg.next;
+            boolean match = msg.target == h && (object == null || msg.obj == object) &&
+                    (r != null ? msg.callback == r : what < 0 || (msg.callback == null && msg.what == what));
+            if (match) {
+                if (prev == null) {
+                    messages = next;
+                } else {
+                    prev.next = next;
+                }
+                msg.next = null;
+            } else {
+                prev = msg;
+            }
+            msg = next;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package android.os;
+
+/**
+ * 在JVM上运行用的假实现，不支持序列化
+ */
+public final class Parcel {
+    private Parcel() {
+    }
+}
@@ -0,0 +1,16 @@
+package android.os;
+
+/**
+ * 在JVM上运行用的假实现，{@link cn.wandersnail.ble.Device}需要
+ */
+public interface Parcelable {
+    int describeContents();
+
+    void writeToParcel(Parcel dest, int flags);
+
+    interface Creator<T> {
+        T createFromParcel(Parcel source);
+
+        T[] newArray(int size);
+    }
+}
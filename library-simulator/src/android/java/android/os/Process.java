@@ -0,0 +1,17 @@
+package android.os;
+
+/**
+ * 在JVM上运行用的假实现，线程优先级不生效
+ */
+public class Process {
+    public static final int THREAD_PRIORITY_DEFAULT = 0;
+    public static final int THREAD_PRIORITY_BACKGROUND = 10;
+    public static final int THREAD_PRIORITY_FOREGROUND = -2;
+
+    public static int myPid() {
+        return (int) ProcessHandle.current().pid();
+    }
+
+    public static void setThreadPriority(int priority) {
+    }
+}
@@ -0,0 +1,13 @@
+package android.text;
+
+/**
+ * 在JVM上运行用的假实现
+ */
+public final class TextUtils {
+    private TextUtils() {
+    }
+
+    public static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+}
@@ -0,0 +1,31 @@
+package android.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 在JVM上运行用的假实现
+ */
+public class SparseArray<E> {
+    private final Map<Integer, E> map = new HashMap<>();
+
+    public E get(int key) {
+        return map.get(key);
+    }
+
+    public void put(int key, E value) {
+        map.put(key, value);
+    }
+
+    public void remove(int key) {
+        map.remove(key);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public void clear() {
+        map.clear();
+    }
+}
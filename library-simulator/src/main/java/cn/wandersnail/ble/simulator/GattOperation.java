@@ -0,0 +1,23 @@
+package cn.wandersnail.ble.simulator;
+
+/**
+ * 模拟外设处理的GATT操作，用于分别配置延时
+ */
+public enum GattOperation {
+    CONNECT,
+    DISCONNECT,
+    DISCOVER_SERVICES,
+    READ_CHARACTERISTIC,
+    WRITE_CHARACTERISTIC,
+    READ_DESCRIPTOR,
+    WRITE_DESCRIPTOR,
+    EXECUTE_RELIABLE_WRITE,
+    REQUEST_MTU,
+    READ_RSSI,
+    READ_PHY,
+    SET_PREFERRED_PHY,
+    /**
+     * 外设发出的通知或指示
+     */
+    NOTIFICATION
+}
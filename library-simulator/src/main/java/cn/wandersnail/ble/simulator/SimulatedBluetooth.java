@@ -0,0 +1,84 @@
+package cn.wandersnail.ble.simulator;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模拟的蓝牙环境，管理注册的外设，所有连接的回调在同一个名为SimulatedBluetooth的守护线程上执行，
+ * 和系统协议栈的Binder线程一样，回调中的耗时操作会推迟后面所有的回调
+ */
+public final class SimulatedBluetooth {
+    private static final Map<String, SimulatedPeripheral> peripherals = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "SimulatedBluetooth");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SimulatedBluetooth() {
+    }
+
+    /**
+     * 注册外设，地址相同的会被替换
+     */
+    public static void register(@NonNull SimulatedPeripheral peripheral) {
+        peripherals.put(peripheral.getAddress(), peripheral);
+    }
+
+    /**
+     * 注销外设，已建立的连接不受影响
+     */
+    public static void unregister(@NonNull String address) {
+        peripherals.remove(address.toUpperCase(Locale.US));
+    }
+
+    /**
+     * 注销所有外设
+     */
+    public static void clear() {
+        peripherals.clear();
+    }
+
+    @Nullable
+    public static SimulatedPeripheral getPeripheral(@NonNull String address) {
+        return peripherals.get(address.toUpperCase(Locale.US));
+    }
+
+    @NonNull
+    public static List<SimulatedPeripheral> getPeripherals() {
+        return new ArrayList<>(peripherals.values());
+    }
+
+    /**
+     * 创建连接并发起连接。地址没有注册外设时，直连失败，自动连接一直等待
+     *
+     * @param autoConnect 是否自动连接，外设不可连接时等待，不会失败
+     */
+    @NonNull
+    public static SimulatedLink connect(@NonNull String address, boolean autoConnect, @NonNull SimulatedGattCallback callback) {
+        SimulatedPeripheral peripheral = getPeripheral(address);
+        if (peripheral == null) {
+            peripheral = new SimulatedPeripheral.Builder(address).setConnectable(false).build();
+        }
+        SimulatedLink link = new SimulatedLink(peripheral, autoConnect, callback);
+        link.connect();
+        return link;
+    }
+
+    static void schedule(Runnable task, long delayNanos) {
+        if (delayNanos <= 0) {
+            executor.execute(task);
+        } else {
+            executor.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
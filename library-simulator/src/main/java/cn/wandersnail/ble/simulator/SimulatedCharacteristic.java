@@ -0,0 +1,58 @@
+package cn.wandersnail.ble.simulator;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.UUID;
+
+/**
+ * 模拟外设的特征定义。属性的取值和系统的BluetoothGattCharacteristic相同，有通知或指示属性的特征自动带有
+ * 客户端配置描述符
+ */
+public final class SimulatedCharacteristic {
+    public static final int PROPERTY_READ = 0x02;
+    public static final int PROPERTY_WRITE_NO_RESPONSE = 0x04;
+    public static final int PROPERTY_WRITE = 0x08;
+    public static final int PROPERTY_NOTIFY = 0x10;
+    public static final int PROPERTY_INDICATE = 0x20;
+    public static final int PROPERTY_SIGNED_WRITE = 0x40;
+    public static final int WRITE_TYPE_NO_RESPONSE = 0x01;
+    public static final int WRITE_TYPE_DEFAULT = 0x02;
+    public static final int WRITE_TYPE_SIGNED = 0x04;
+    private final UUID uuid;
+    private final int properties;
+    private final byte[] initialValue;
+
+    public SimulatedCharacteristic(@NonNull UUID uuid, int properties) {
+        this(uuid, properties, null);
+    }
+
+    /**
+     * @param initialValue 初始值，为null时是空数组
+     */
+    public SimulatedCharacteristic(@NonNull UUID uuid, int properties, @Nullable byte[] initialValue) {
+        this.uuid = uuid;
+        this.properties = properties;
+        this.initialValue = initialValue == null ? new byte[0] : initialValue.clone();
+    }
+
+    @NonNull
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public int getProperties() {
+        return properties;
+    }
+
+    /**
+     * 是否有客户端配置描述符
+     */
+    public boolean hasClientConfig() {
+        return (properties & (PROPERTY_NOTIFY | PROPERTY_INDICATE)) != 0;
+    }
+
+    byte[] getInitialValue() {
+        return initialValue.clone();
+    }
+}
@@ -0,0 +1,32 @@
+package cn.wandersnail.ble.simulator;
+
+import java.util.UUID;
+
+/**
+ * 模拟连接的回调，对应系统的BluetoothGattCallback，在模拟的协议栈线程上回调
+ */
+public interface SimulatedGattCallback {
+    void onConnectionStateChange(int status, int newState);
+
+    void onServicesDiscovered(int status);
+
+    void onCharacteristicRead(UUID service, UUID characteristic, byte[] value, int status);
+
+    void onCharacteristicWrite(UUID service, UUID characteristic, byte[] value, int status);
+
+    void onCharacteristicChanged(UUID service, UUID characteristic, byte[] value);
+
+    void onDescriptorRead(UUID service, UUID characteristic, UUID descriptor, byte[] value, int status);
+
+    void onDescriptorWrite(UUID service, UUID characteristic, UUID descriptor, byte[] value, int status);
+
+    void onReliableWriteCompleted(int status);
+
+    void onReadRemoteRssi(int rssi, int status);
+
+    void onMtuChanged(int mtu, int status);
+
+    void onPhyRead(int txPhy, int rxPhy, int status);
+
+    void onPhyUpdate(int txPhy, int rxPhy, int status);
+}
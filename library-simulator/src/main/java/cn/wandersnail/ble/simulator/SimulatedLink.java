@@ -0,0 +1,538 @@
+package cn.wandersnail.ble.simulator;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 中心设备到模拟外设的一个GATT连接，方法和系统的BluetoothGatt对应。
+ * <br>和系统协议栈一样，同一时间只能有一个进行中的特征或描述符操作，收到回调前再发起返回false，
+ * 发现服务、MTU、RSSI、PHY等操作不受限制。
+ * 回调在{@link SimulatedBluetooth}的协议栈线程上按发起顺序执行
+ */
+public final class SimulatedLink {
+    private static final int STATE_CONNECTING = 1;
+    private static final byte[] CLIENT_CONFIG_DISABLED = {0, 0};
+    private final SimulatedPeripheral peripheral;
+    private final SimulatedGattCallback callback;
+    private final boolean autoConnect;
+    private final ArrayDeque<Runnable> events = new ArrayDeque<>();//待回调的事件，按时间排列
+    private long lastEventTime;
+    private volatile boolean closed;
+    private int state = SimulatedPeripheral.STATE_DISCONNECTED;
+    private int generation;//每次连接成功加1，丢弃上次连接遗留的回调
+    private boolean busy;//有进行中的特征或描述符操作
+    private int mtu = SimulatedPeripheral.MIN_MTU;
+    private int txPhy = 1;
+    private int rxPhy = 1;
+    private final Map<SimulatedCharacteristic, byte[]> clientConfigs = new HashMap<>();
+    private final Set<SimulatedCharacteristic> registered = new HashSet<>();//本地开启了通知的
+    private boolean reliableWrite;
+    private final List<Runnable> reliableWrites = new ArrayList<>();
+
+    /**
+     * 执行GATT操作
+     */
+    private interface Operation {
+        /**
+         * 在协议栈线程上执行，外设处理请求
+         *
+         * @param respond 是否回调，为false表示回调丢失
+         */
+        void execute(boolean respond);
+    }
+
+    SimulatedLink(SimulatedPeripheral peripheral, boolean autoConnect, SimulatedGattCallback callback) {
+        this.peripheral = peripheral;
+        this.autoConnect = autoConnect;
+        this.callback = callback;
+    }
+
+    @NonNull
+    public SimulatedPeripheral getPeripheral() {
+        return peripheral;
+    }
+
+    public synchronized boolean isConnected() {
+        return state == SimulatedPeripheral.STATE_CONNECTED;
+    }
+
+    /**
+     * 当前协商的MTU
+     */
+    public synchronized int getMtu() {
+        return mtu;
+    }
+
+    /**
+     * 发起连接，已在连接或已连接时不重复发起
+     *
+     * @return 已关闭时返回false
+     */
+    public boolean connect() {
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            if (state != SimulatedPeripheral.STATE_DISCONNECTED) {
+                return true;
+            }
+            state = STATE_CONNECTING;
+        }
+        //自动连接会一直等到外设可连接
+        if (!autoConnect || !peripheral.waitUntilConnectable(this)) {
+            establish();
+        }
+        return true;
+    }
+
+    /**
+     * 经过连接延时后连接成功或失败
+     */
+    void establish() {
+        boolean fail = !peripheral.isConnectable() || peripheral.nextConnectionFailure();
+        post(GattOperation.CONNECT, () -> {
+            synchronized (this) {
+                if (state != STATE_CONNECTING) {
+                    return;
+                }
+                if (fail) {
+                    state = SimulatedPeripheral.STATE_DISCONNECTED;
+                } else {
+                    state = SimulatedPeripheral.STATE_CONNECTED;
+                    generation++;
+                    busy = false;
+                    mtu = SimulatedPeripheral.MIN_MTU;
+                    txPhy = 1;
+                    rxPhy = 1;
+                    clientConfigs.clear();
+                    reliableWrite = false;
+                    reliableWrites.clear();
+                }
+            }
+            if (fail) {
+                peripheral.onConnectionFailed();
+                callback.onConnectionStateChange(SimulatedPeripheral.GATT_ERROR, SimulatedPeripheral.STATE_DISCONNECTED);
+            } else {
+                peripheral.addLink(this);
+                callback.onConnectionStateChange(SimulatedPeripheral.GATT_SUCCESS, SimulatedPeripheral.STATE_CONNECTED);
+            }
+        });
+    }
+
+    /**
+     * 断开连接，经过断开延时后回调
+     */
+    public void disconnect() {
+        synchronized (this) {
+            if (closed || state == SimulatedPeripheral.STATE_DISCONNECTED) {
+                return;
+            }
+        }
+        peripheral.removeLink(this);
+        post(GattOperation.DISCONNECT, () -> {
+            synchronized (this) {
+                if (state == SimulatedPeripheral.STATE_DISCONNECTED) {
+                    return;
+                }
+                state = SimulatedPeripheral.STATE_DISCONNECTED;
+            }
+            callback.onConnectionStateChange(SimulatedPeripheral.GATT_SUCCESS, SimulatedPeripheral.STATE_DISCONNECTED);
+        });
+    }
+
+    /**
+     * 关闭连接，之后不再有任何回调
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            state = SimulatedPeripheral.STATE_DISCONNECTED;
+            events.clear();
+        }
+        peripheral.removeLink(this);
+    }
+
+    /**
+     * 链路断开
+     */
+    void lose(int status) {
+        int gen;
+        synchronized (this) {
+            if (state != SimulatedPeripheral.STATE_CONNECTED) {
+                return;
+            }
+            gen = generation;
+        }
+        peripheral.removeLink(this);
+        post(GattOperation.DISCONNECT, () -> {
+            synchronized (this) {
+                if (state != SimulatedPeripheral.STATE_CONNECTED || generation != gen) {
+                    return;
+                }
+                state = SimulatedPeripheral.STATE_DISCONNECTED;
+            }
+            callback.onConnectionStateChange(status, SimulatedPeripheral.STATE_DISCONNECTED);
+        });
+    }
+
+    public boolean discoverServices() {
+        return request(GattOperation.DISCOVER_SERVICES, respond -> {
+            if (respond) {
+                callback.onServicesDiscovered(SimulatedPeripheral.GATT_SUCCESS);
+            }
+        });
+    }
+
+    public boolean readCharacteristic(@NonNull UUID service, @NonNull UUID characteristic) {
+        SimulatedCharacteristic c = peripheral.findCharacteristic(service, characteristic);
+        if (c == null) {
+            return false;
+        }
+        return request(GattOperation.READ_CHARACTERISTIC, respond -> {
+            if (respond) {
+                if ((c.getProperties() & SimulatedCharacteristic.PROPERTY_READ) == 0) {
+                    callback.onCharacteristicRead(service, characteristic, new byte[0], SimulatedPeripheral.GATT_READ_NOT_PERMITTED);
+                } else {
+                    callback.onCharacteristicRead(service, characteristic, peripheral.getValue(c), SimulatedPeripheral.GATT_SUCCESS);
+                }
+            }
+        });
+    }
+
+    /**
+     * 写特征。无回复写入超过MTU的部分被截掉，其他写入超过{@link SimulatedPeripheral#MAX_ATTRIBUTE_LENGTH}时失败
+     *
+     * @param writeType {@link SimulatedCharacteristic#WRITE_TYPE_DEFAULT}等
+     */
+    public boolean writeCharacteristic(@NonNull UUID service, @NonNull UUID characteristic, @NonNull byte[] value, int writeType) {
+        SimulatedCharacteristic c = peripheral.findCharacteristic(service, characteristic);
+        if (c == null) {
+            return false;
+        }
+        byte[] data = value.clone();
+        return request(GattOperation.WRITE_CHARACTERISTIC, respond -> {
+            int property;
+            if (writeType == SimulatedCharacteristic.WRITE_TYPE_NO_RESPONSE) {
+                property = SimulatedCharacteristic.PROPERTY_WRITE_NO_RESPONSE;
+            } else if (writeType == SimulatedCharacteristic.WRITE_TYPE_SIGNED) {
+                property = SimulatedCharacteristic.PROPERTY_SIGNED_WRITE;
+            } else {
+                property = SimulatedCharacteristic.PROPERTY_WRITE;
+            }
+            int status = SimulatedPeripheral.GATT_SUCCESS;
+            byte[] received = data;
+            boolean reliable;
+            synchronized (this) {
+                reliable = reliableWrite;
+                if ((c.getProperties() & property) == 0) {
+                    status = SimulatedPeripheral.GATT_WRITE_NOT_PERMITTED;
+                } else if (writeType == SimulatedCharacteristic.WRITE_TYPE_NO_RESPONSE && data.length > mtu - 3) {
+                    received = Arrays.copyOf(data, mtu - 3);
+                } else if (data.length > SimulatedPeripheral.MAX_ATTRIBUTE_LENGTH) {
+                    status = SimulatedPeripheral.GATT_INVALID_ATTRIBUTE_LENGTH;
+                }
+            }
+            if (status == SimulatedPeripheral.GATT_SUCCESS) {
+                byte[] bytes = received;
+                if (reliable) {
+                    synchronized (this) {
+                        reliableWrites.add(() -> peripheral.onWrite(service, c, bytes));
+                    }
+                } else {
+                    peripheral.onWrite(service, c, bytes);
+                }
+            }
+            if (respond) {
+                callback.onCharacteristicWrite(service, characteristic, data, status);
+            }
+        });
+    }
+
+    /**
+     * 读描述符，只支持客户端配置描述符
+     */
+    public boolean readDescriptor(@NonNull UUID service, @NonNull UUID characteristic, @NonNull UUID descriptor) {
+        SimulatedCharacteristic c = peripheral.findCharacteristic(service, characteristic);
+        if (c == null || !c.hasClientConfig() || !SimulatedPeripheral.CLIENT_CHARACTERISTIC_CONFIG.equals(descriptor)) {
+            return false;
+        }
+        return request(GattOperation.READ_DESCRIPTOR, respond -> {
+            if (respond) {
+                byte[] value;
+                synchronized (this) {
+                    value = clientConfigs.get(c);
+                }
+                callback.onDescriptorRead(service, characteristic, descriptor,
+                        value == null ? CLIENT_CONFIG_DISABLED.clone() : value.clone(), SimulatedPeripheral.GATT_SUCCESS);
+            }
+        });
+    }
+
+    /**
+     * 写描述符，只支持客户端配置描述符
+     */
+    public boolean writeDescriptor(@NonNull UUID service, @NonNull UUID characteristic, @NonNull UUID descriptor,
+                                   @NonNull byte[] value) {
+        SimulatedCharacteristic c = peripheral.findCharacteristic(service, characteristic);
+        if (c == null || !c.hasClientConfig() || !SimulatedPeripheral.CLIENT_CHARACTERISTIC_CONFIG.equals(descriptor)) {
+            return false;
+        }
+        byte[] data = value.clone();
+        return request(GattOperation.WRITE_DESCRIPTOR, respond -> {
+            int status = SimulatedPeripheral.GATT_SUCCESS;
+            if (data.length != 2) {
+                status = SimulatedPeripheral.GATT_INVALID_ATTRIBUTE_LENGTH;
+            } else {
+                synchronized (this) {
+                    clientConfigs.put(c, data);
+                }
+            }
+            if (respond) {
+                callback.onDescriptorWrite(service, characteristic, descriptor, data, status);
+            }
+        });
+    }
+
+    /**
+     * 本地开启或关闭特征的通知，和系统一样需要同时写客户端配置描述符才能收到通知
+     */
+    public boolean setCharacteristicNotification(@NonNull UUID service, @NonNull UUID characteristic, boolean enable) {
+        SimulatedCharacteristic c = peripheral.findCharacteristic(service, characteristic);
+        if (c == null) {
+            return false;
+        }
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            if (enable) {
+                registered.add(c);
+            } else {
+                registered.remove(c);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 协商MTU，结果取请求值和外设最大值中较小的
+     */
+    public boolean requestMtu(int mtu) {
+        return request(GattOperation.REQUEST_MTU, respond -> {
+            int negotiated = Math.max(SimulatedPeripheral.MIN_MTU, Math.min(mtu, peripheral.getMaxMtu()));
+            synchronized (this) {
+                this.mtu = negotiated;
+            }
+            if (respond) {
+                callback.onMtuChanged(negotiated, SimulatedPeripheral.GATT_SUCCESS);
+            }
+        });
+    }
+
+    public boolean readRemoteRssi() {
+        return request(GattOperation.READ_RSSI, respond -> {
+            if (respond) {
+                callback.onReadRemoteRssi(peripheral.getRssi(), SimulatedPeripheral.GATT_SUCCESS);
+            }
+        });
+    }
+
+    public boolean readPhy() {
+        return request(GattOperation.READ_PHY, respond -> {
+            int tx;
+            int rx;
+            synchronized (this) {
+                tx = txPhy;
+                rx = rxPhy;
+            }
+            if (respond) {
+                callback.onPhyRead(tx, rx, SimulatedPeripheral.GATT_SUCCESS);
+            }
+        });
+    }
+
+    /**
+     * 设置首选PHY，掩码中有2M时用2M，其次1M，最后Coded
+     */
+    public boolean setPreferredPhy(int txPhyMask, int rxPhyMask, int phyOptions) {
+        return request(GattOperation.SET_PREFERRED_PHY, respond -> {
+            int tx;
+            int rx;
+            synchronized (this) {
+                txPhy = selectPhy(txPhyMask, txPhy);
+                rxPhy = selectPhy(rxPhyMask, rxPhy);
+                tx = txPhy;
+                rx = rxPhy;
+            }
+            if (respond) {
+                callback.onPhyUpdate(tx, rx, SimulatedPeripheral.GATT_SUCCESS);
+            }
+        });
+    }
+
+    private static int selectPhy(int mask, int current) {
+        if ((mask & 2) != 0) {
+            return 2;
+        } else if ((mask & 1) != 0) {
+            return 1;
+        } else if ((mask & 4) != 0) {
+            return 3;
+        }
+        return current;
+    }
+
+    /**
+     * 开始可靠写入，之后的特征写入在执行时才交给外设
+     */
+    public synchronized boolean beginReliableWrite() {
+        if (closed || state != SimulatedPeripheral.STATE_CONNECTED) {
+            return false;
+        }
+        reliableWrite = true;
+        reliableWrites.clear();
+        return true;
+    }
+
+    public boolean executeReliableWrite() {
+        synchronized (this) {
+            if (!reliableWrite) {
+                return false;
+            }
+        }
+        return request(GattOperation.EXECUTE_RELIABLE_WRITE, respond -> {
+            List<Runnable> writes;
+            synchronized (this) {
+                writes = new ArrayList<>(reliableWrites);
+                reliableWrites.clear();
+                reliableWrite = false;
+            }
+            for (Runnable write : writes) {
+                write.run();
+            }
+            if (respond) {
+                callback.onReliableWriteCompleted(SimulatedPeripheral.GATT_SUCCESS);
+            }
+        });
+    }
+
+    public synchronized void abortReliableWrite() {
+        reliableWrite = false;
+        reliableWrites.clear();
+    }
+
+    /**
+     * 外设发出通知，连接本地和描述符都开启了通知或指示时回调
+     */
+    boolean notifyValue(UUID service, SimulatedCharacteristic characteristic, byte[] value) {
+        int gen;
+        synchronized (this) {
+            byte[] config = clientConfigs.get(characteristic);
+            if (closed || state != SimulatedPeripheral.STATE_CONNECTED || !registered.contains(characteristic) ||
+                    config == null || (config[0] & 0x03) == 0) {
+                return false;
+            }
+            gen = generation;
+        }
+        post(GattOperation.NOTIFICATION, () -> {
+            synchronized (this) {
+                if (state != SimulatedPeripheral.STATE_CONNECTED || generation != gen) {
+                    return;
+                }
+            }
+            callback.onCharacteristicChanged(service, characteristic.getUuid(), value.clone());
+        });
+        return true;
+    }
+
+    /**
+     * 系统的BluetoothGatt只对特征、描述符的读写和执行可靠写入检查是否有进行中的操作
+     */
+    private static boolean isExclusive(GattOperation type) {
+        switch (type) {
+            case READ_CHARACTERISTIC:
+            case WRITE_CHARACTERISTIC:
+            case READ_DESCRIPTOR:
+            case WRITE_DESCRIPTOR:
+            case EXECUTE_RELIABLE_WRITE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 发起GATT操作。经过延时后外设处理请求并回调，协议栈在回调前恢复空闲
+     *
+     * @return 未连接或协议栈忙时返回false
+     */
+    private boolean request(GattOperation type, Operation operation) {
+        boolean exclusive = isExclusive(type);
+        int gen;
+        boolean lost;
+        synchronized (this) {
+            if (closed || state != SimulatedPeripheral.STATE_CONNECTED) {
+                return false;
+            }
+            if ((exclusive && busy) || peripheral.nextBusy()) {
+                peripheral.onBusy();
+                return false;
+            }
+            if (exclusive) {
+                busy = true;
+            }
+            gen = generation;
+            lost = peripheral.nextLost();
+        }
+        post(type, () -> {
+            synchronized (this) {
+                if (state != SimulatedPeripheral.STATE_CONNECTED || generation != gen) {
+                    return;
+                }
+                if (exclusive) {
+                    busy = false;
+                }
+            }
+            if (lost) {
+                peripheral.onLost();
+            }
+            operation.execute(!lost);
+        });
+        return true;
+    }
+
+    /**
+     * 按操作的延时在协议栈线程上执行事件。事件的时间不早于前一个事件，保证同一连接的回调按顺序
+     */
+    private void post(GattOperation type, Runnable event) {
+        long delayNanos;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            long now = System.nanoTime();
+            long time = Math.max(now + peripheral.nextLatencyNanos(type), lastEventTime);
+            lastEventTime = time;
+            delayNanos = time - now;
+            events.addLast(event);
+        }
+        //每个事件调度一次，执行时取队首的，先到期的任务也不会越过前面的事件
+        SimulatedBluetooth.schedule(() -> {
+            Runnable next;
+            synchronized (this) {
+                next = closed ? null : events.pollFirst();
+            }
+            if (next != null) {
+                next.run();
+            }
+        }, delayNanos);
+    }
+}
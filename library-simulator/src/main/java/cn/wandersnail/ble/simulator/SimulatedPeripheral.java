@@ -0,0 +1,519 @@
+package cn.wandersnail.ble.simulator;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在JVM中模拟的GATT外设。可配置服务和特征、最大MTU、每种操作的延时、丢包、协议栈忙和连接失败(状态码133)的概率，
+ * 随机数使用固定种子，同样的操作顺序得到同样的结果。
+ * <br>外设注册到{@link SimulatedBluetooth}后，通过{@link SimulatedBluetooth#connect(String, boolean, SimulatedGattCallback)}
+ * 建立的连接在模拟的协议栈线程上回调，回调顺序和系统协议栈一致：同一时间只能有一个GATT操作，回调前发起的新操作返回false
+ */
+public final class SimulatedPeripheral {
+    /**
+     * 客户端配置描述符
+     */
+    public static final UUID CLIENT_CHARACTERISTIC_CONFIG = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+    public static final int GATT_SUCCESS = 0;
+    public static final int GATT_READ_NOT_PERMITTED = 2;
+    public static final int GATT_WRITE_NOT_PERMITTED = 3;
+    public static final int GATT_CONN_TIMEOUT = 8;
+    public static final int GATT_INVALID_ATTRIBUTE_LENGTH = 13;
+    /**
+     * 连接失败时协议栈常见的状态码
+     */
+    public static final int GATT_ERROR = 133;
+    public static final int STATE_DISCONNECTED = 0;
+    public static final int STATE_CONNECTED = 2;
+    public static final int MIN_MTU = 23;
+    public static final int MAX_MTU = 517;
+    /**
+     * 特征值的最大长度，超过时写入失败
+     */
+    public static final int MAX_ATTRIBUTE_LENGTH = 512;
+
+    private final String address;
+    private final String name;
+    private final Map<UUID, List<SimulatedCharacteristic>> services;
+    private final Map<SimulatedCharacteristic, byte[]> values = new HashMap<>();
+    private final int maxMtu;
+    private final long[] minLatencyNanos;
+    private final long[] maxLatencyNanos;
+    private final double lossRate;
+    private final double busyRate;
+    private final double connectionFailureRate;
+    private final Random random;
+    private final List<SimulatedLink> links = new ArrayList<>();//已连接的
+    private final List<SimulatedLink> pendingLinks = new ArrayList<>();//等待外设可连接的自动连接
+    private volatile boolean connectable;
+    private volatile int rssi;
+    private volatile WriteListener writeListener;
+    private final AtomicLong connectionCount = new AtomicLong();
+    private final AtomicLong connectionFailureCount = new AtomicLong();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong notificationCount = new AtomicLong();
+    private final AtomicLong busyCount = new AtomicLong();
+    private final AtomicLong lostCount = new AtomicLong();
+
+    private SimulatedPeripheral(Builder builder) {
+        address = builder.address;
+        name = builder.name;
+        Map<UUID, List<SimulatedCharacteristic>> map = new LinkedHashMap<>();
+        for (Map.Entry<UUID, List<SimulatedCharacteristic>> entry : builder.services.entrySet()) {
+            map.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+            for (SimulatedCharacteristic characteristic : entry.getValue()) {
+                values.put(characteristic, characteristic.getInitialValue());
+            }
+        }
+        services = Collections.unmodifiableMap(map);
+        maxMtu = builder.maxMtu;
+        minLatencyNanos = builder.minLatencyNanos.clone();
+        maxLatencyNanos = builder.maxLatencyNanos.clone();
+        lossRate = builder.lossRate;
+        busyRate = builder.busyRate;
+        connectionFailureRate = builder.connectionFailureRate;
+        random = new Random(builder.seed);
+        connectable = builder.connectable;
+        rssi = builder.rssi;
+    }
+
+    /**
+     * 外设收到写入的监听器，在模拟的协议栈线程上回调，可用于模拟应答通知
+     */
+    public interface WriteListener {
+        void onCharacteristicWrite(@NonNull SimulatedPeripheral peripheral, @NonNull UUID service, @NonNull UUID characteristic,
+                                   @NonNull byte[] value);
+    }
+
+    @NonNull
+    public String getAddress() {
+        return address;
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxMtu() {
+        return maxMtu;
+    }
+
+    public int getRssi() {
+        return rssi;
+    }
+
+    public void setRssi(int rssi) {
+        this.rssi = rssi;
+    }
+
+    public boolean isConnectable() {
+        return connectable;
+    }
+
+    /**
+     * 设置是否可连接。不可连接时直连失败，自动连接等待，恢复可连接后自动连接继续
+     */
+    public void setConnectable(boolean connectable) {
+        List<SimulatedLink> waiting;
+        synchronized (this) {
+            this.connectable = connectable;
+            if (!connectable || pendingLinks.isEmpty()) {
+                return;
+            }
+            waiting = new ArrayList<>(pendingLinks);
+            pendingLinks.clear();
+        }
+        for (SimulatedLink link : waiting) {
+            link.establish();
+        }
+    }
+
+    public void setWriteListener(@Nullable WriteListener writeListener) {
+        this.writeListener = writeListener;
+    }
+
+    /**
+     * 服务UUID，按添加顺序
+     */
+    @NonNull
+    public List<UUID> getServiceUuids() {
+        return new ArrayList<>(services.keySet());
+    }
+
+    /**
+     * 服务下的特征，服务不存在时返回空列表
+     */
+    @NonNull
+    public List<SimulatedCharacteristic> getCharacteristics(@NonNull UUID service) {
+        List<SimulatedCharacteristic> list = services.get(service);
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    /**
+     * 特征当前的值，特征不存在时返回null
+     */
+    @Nullable
+    public byte[] getValue(@NonNull UUID service, @NonNull UUID characteristic) {
+        SimulatedCharacteristic c = findCharacteristic(service, characteristic);
+        return c == null ? null : getValue(c);
+    }
+
+    /**
+     * 修改特征的值，不发送通知
+     */
+    public void setValue(@NonNull UUID service, @NonNull UUID characteristic, @NonNull byte[] value) {
+        SimulatedCharacteristic c = findCharacteristic(service, characteristic);
+        if (c == null) {
+            throw new IllegalArgumentException("No characteristic " + characteristic + " in service " + service);
+        }
+        setValue(c, value.clone());
+    }
+
+    /**
+     * 修改特征的值，并通知开启了通知或指示的连接
+     *
+     * @return 收到通知的连接数
+     */
+    public int notify(@NonNull UUID service, @NonNull UUID characteristic, @NonNull byte[] value) {
+        SimulatedCharacteristic c = findCharacteristic(service, characteristic);
+        if (c == null) {
+            throw new IllegalArgumentException("No characteristic " + characteristic + " in service " + service);
+        }
+        byte[] copy = value.clone();
+        setValue(c, copy);
+        int count = 0;
+        for (SimulatedLink link : getLinks()) {
+            if (link.notifyValue(service, c, copy)) {
+                count++;
+            }
+        }
+        notificationCount.addAndGet(count);
+        return count;
+    }
+
+    /**
+     * 模拟链路断开，所有连接以{@link #GATT_CONN_TIMEOUT}断开
+     */
+    public void disconnect() {
+        disconnect(GATT_CONN_TIMEOUT);
+    }
+
+    /**
+     * 模拟链路断开，所有连接以指定的状态码断开
+     */
+    public void disconnect(int status) {
+        for (SimulatedLink link : getLinks()) {
+            link.lose(status);
+        }
+    }
+
+    /**
+     * 是否有已连接的连接
+     */
+    public synchronized boolean isConnected() {
+        return !links.isEmpty();
+    }
+
+    /**
+     * 成功建立连接的次数
+     */
+    public long getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * 连接失败的次数
+     */
+    public long getConnectionFailureCount() {
+        return connectionFailureCount.get();
+    }
+
+    /**
+     * 收到的特征写入次数，不含失败的
+     */
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    /**
+     * 收到的特征写入字节数
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * 发出的通知数，每个连接算一次
+     */
+    public long getNotificationCount() {
+        return notificationCount.get();
+    }
+
+    /**
+     * 因协议栈忙被拒绝的操作次数
+     */
+    public long getBusyCount() {
+        return busyCount.get();
+    }
+
+    /**
+     * 丢失了回调的操作次数
+     */
+    public long getLostCount() {
+        return lostCount.get();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "SimulatedPeripheral{address='" + address + "', name='" + name + "'}";
+    }
+
+    @Nullable
+    SimulatedCharacteristic findCharacteristic(UUID service, UUID characteristic) {
+        List<SimulatedCharacteristic> list = services.get(service);
+        if (list != null) {
+            for (SimulatedCharacteristic c : list) {
+                if (c.getUuid().equals(characteristic)) {
+                    return c;
+                }
+            }
+        }
+        return null;
+    }
+
+    synchronized byte[] getValue(SimulatedCharacteristic characteristic) {
+        return values.get(characteristic).clone();
+    }
+
+    private synchronized void setValue(SimulatedCharacteristic characteristic, byte[] value) {
+        values.put(characteristic, value);
+    }
+
+    private synchronized List<SimulatedLink> getLinks() {
+        return new ArrayList<>(links);
+    }
+
+    synchronized void addLink(SimulatedLink link) {
+        links.add(link);
+        connectionCount.incrementAndGet();
+    }
+
+    synchronized void removeLink(SimulatedLink link) {
+        links.remove(link);
+        pendingLinks.remove(link);
+    }
+
+    /**
+     * 外设不可连接时加入等待，可连接时返回false
+     */
+    synchronized boolean waitUntilConnectable(SimulatedLink link) {
+        if (connectable) {
+            return false;
+        }
+        pendingLinks.add(link);
+        return true;
+    }
+
+    void onConnectionFailed() {
+        connectionFailureCount.incrementAndGet();
+    }
+
+    void onBusy() {
+        busyCount.incrementAndGet();
+    }
+
+    void onLost() {
+        lostCount.incrementAndGet();
+    }
+
+    /**
+     * 外设收到写入，在模拟的协议栈线程上调用
+     */
+    void onWrite(UUID service, SimulatedCharacteristic characteristic, byte[] value) {
+        setValue(characteristic, value);
+        writeCount.incrementAndGet();
+        bytesWritten.addAndGet(value.length);
+        WriteListener listener = writeListener;
+        if (listener != null) {
+            listener.onCharacteristicWrite(this, service, characteristic.getUuid(), value.clone());
+        }
+    }
+
+    long nextLatencyNanos(GattOperation operation) {
+        long min = minLatencyNanos[operation.ordinal()];
+        long max = maxLatencyNanos[operation.ordinal()];
+        if (max <= min) {
+            return min;
+        }
+        synchronized (random) {
+            return min + (long) (random.nextDouble() * (max - min));
+        }
+    }
+
+    boolean nextLost() {
+        return nextBoolean(lossRate);
+    }
+
+    boolean nextBusy() {
+        return nextBoolean(busyRate);
+    }
+
+    boolean nextConnectionFailure() {
+        return nextBoolean(connectionFailureRate);
+    }
+
+    private boolean nextBoolean(double rate) {
+        if (rate <= 0) {
+            return false;
+        }
+        synchronized (random) {
+            return random.nextDouble() < rate;
+        }
+    }
+
+    public static final class Builder {
+        private final String address;
+        private String name;
+        private final Map<UUID, List<SimulatedCharacteristic>> services = new LinkedHashMap<>();
+        private int maxMtu = MAX_MTU;
+        private final long[] minLatencyNanos = new long[GattOperation.values().length];
+        private final long[] maxLatencyNanos = new long[GattOperation.values().length];
+        private double lossRate;
+        private double busyRate;
+        private double connectionFailureRate;
+        private boolean connectable = true;
+        private int rssi = -60;
+        private long seed;
+
+        /**
+         * @param address 蓝牙地址，转为大写
+         */
+        public Builder(@NonNull String address) {
+            this.address = address.toUpperCase(Locale.US);
+            name = "Simulated-" + this.address.substring(Math.max(0, this.address.length() - 5));
+        }
+
+        public Builder setName(@NonNull String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * 添加服务，服务已存在时追加特征
+         */
+        public Builder addService(@NonNull UUID service, @NonNull SimulatedCharacteristic... characteristics) {
+            List<SimulatedCharacteristic> list = services.get(service);
+            if (list == null) {
+                list = new ArrayList<>();
+                services.put(service, list);
+            }
+            list.addAll(Arrays.asList(characteristics));
+            return this;
+        }
+
+        /**
+         * 外设支持的最大MTU，协商结果取双方较小值。默认517
+         */
+        public Builder setMaxMtu(int maxMtu) {
+            if (maxMtu < MIN_MTU || maxMtu > MAX_MTU) {
+                throw new IllegalArgumentException("maxMtu must be between " + MIN_MTU + " and " + MAX_MTU);
+            }
+            this.maxMtu = maxMtu;
+            return this;
+        }
+
+        /**
+         * 设置所有操作的固定延时，默认0
+         */
+        public Builder setLatencyMillis(long millis) {
+            for (GattOperation operation : GattOperation.values()) {
+                setLatencyMillis(operation, millis, millis);
+            }
+            return this;
+        }
+
+        /**
+         * 设置操作的延时，在最小和最大值之间均匀分布。同一连接的回调按发起顺序，延时短的不会超过前面的
+         */
+        public Builder setLatencyMillis(@NonNull GattOperation operation, long minMillis, long maxMillis) {
+            if (minMillis < 0 || maxMillis < minMillis) {
+                throw new IllegalArgumentException("Invalid latency range: " + minMillis + "~" + maxMillis);
+            }
+            minLatencyNanos[operation.ordinal()] = TimeUnit.MILLISECONDS.toNanos(minMillis);
+            maxLatencyNanos[operation.ordinal()] = TimeUnit.MILLISECONDS.toNanos(maxMillis);
+            return this;
+        }
+
+        /**
+         * 操作被协议栈接受后丢失回调的概率，外设仍会处理请求。通知不会丢失
+         */
+        public Builder setLossRate(double lossRate) {
+            this.lossRate = checkRate(lossRate);
+            return this;
+        }
+
+        /**
+         * 空闲时发起操作仍返回协议栈忙的概率
+         */
+        public Builder setBusyRate(double busyRate) {
+            this.busyRate = checkRate(busyRate);
+            return this;
+        }
+
+        /**
+         * 连接失败的概率，失败时以状态码{@link #GATT_ERROR}回调断开
+         */
+        public Builder setConnectionFailureRate(double connectionFailureRate) {
+            this.connectionFailureRate = checkRate(connectionFailureRate);
+            return this;
+        }
+
+        /**
+         * 初始是否可连接，默认可连接
+         */
+        public Builder setConnectable(boolean connectable) {
+            this.connectable = connectable;
+            return this;
+        }
+
+        public Builder setRssi(int rssi) {
+            this.rssi = rssi;
+            return this;
+        }
+
+        /**
+         * 随机数种子，默认0
+         */
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public SimulatedPeripheral build() {
+            return new SimulatedPeripheral(this);
+        }
+
+        private static double checkRate(double rate) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("rate must be between 0 and 1");
+            }
+            return rate;
+        }
+    }
+}
@@ -248,8 +248,10 @@ abstract class AbstractScanner implements Scanner {
                     handleScanCallback(false, dev, isConnectedBySys, -1, "");
                 }
             }
-            String msg = String.format(Locale.US, "found device! [name: %s, addr: %s]", TextUtils.isEmpty(name) ? "N/A" : name, device.getAddress());
-            logger.log(Log.DEBUG, Logger.TYPE_SCAN_STATE, msg);
+            if (logger.isEnabled(Log.DEBUG, Logger.TYPE_SCAN_STATE)) {
+                String msg = String.format(Locale.US, "found device! [name: %s, addr: %s]", TextUtils.isEmpty(name) ? "N/A" : name, device.getAddress());
+                logger.log(Log.DEBUG, Logger.TYPE_SCAN_STATE, msg);
+            }
         });
     }
 
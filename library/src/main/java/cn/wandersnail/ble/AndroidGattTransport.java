@@ -0,0 +1,492 @@
+package cn.wandersnail.ble;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothStatusCodes;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 使用系统BluetoothGatt的传输层。处理不同系统版本的接口差异，并把系统回调转发给{@link Connection#setBluetoothGattCallback}设置的回调
+ */
+@SuppressLint("MissingPermission")
+final class AndroidGattTransport implements GattTransport {
+    private static final byte[] EMPTY = new byte[0];
+    private final EasyBLE easyBle;
+    private final Device device;
+    private final ConnectionConfiguration configuration;
+    private final Callback callback;
+    private final BluetoothGattCallback gattCallback = new GattCallback();
+    private BluetoothGatt gatt;
+    private volatile BluetoothGattCallback originCallback;
+    private byte[] descriptorOriginValue;//正在写入的描述符原来的值，写入失败时还原
+    private byte[] descriptorWritingValue;//正在写入的描述符的值
+
+    static final class Factory implements GattTransport.Factory {
+        private final EasyBLE easyBle;
+
+        Factory(EasyBLE easyBle) {
+            this.easyBle = easyBle;
+        }
+
+        @NonNull
+        @Override
+        public GattTransport create(@NonNull Device device, @NonNull ConnectionConfiguration configuration, @NonNull Callback callback) {
+            return new AndroidGattTransport(easyBle, device, configuration, callback);
+        }
+    }
+
+    private AndroidGattTransport(EasyBLE easyBle, Device device, ConnectionConfiguration configuration, Callback callback) {
+        this.easyBle = easyBle;
+        this.device = device;
+        this.configuration = configuration;
+        this.callback = callback;
+    }
+
+    void setOriginCallback(@Nullable BluetoothGattCallback originCallback) {
+        this.originCallback = originCallback;
+    }
+
+    @Nullable
+    BluetoothGatt getGatt() {
+        return gatt;
+    }
+
+    @Nullable
+    BluetoothGattService getService(UUID service) {
+        return gatt == null ? null : gatt.getService(service);
+    }
+
+    @Nullable
+    BluetoothGattCharacteristic getCharacteristic(UUID service, UUID characteristic) {
+        BluetoothGattService gattService = getService(service);
+        return gattService == null ? null : gattService.getCharacteristic(characteristic);
+    }
+
+    @Nullable
+    BluetoothGattDescriptor getDescriptor(UUID service, UUID characteristic, UUID descriptor) {
+        BluetoothGattCharacteristic gattCharacteristic = getCharacteristic(service, characteristic);
+        return gattCharacteristic == null ? null : gattCharacteristic.getDescriptor(descriptor);
+    }
+
+    @Override
+    public boolean connect(boolean autoConnect) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            gatt = device.getOriginDevice().connectGatt(easyBle.getContext(), autoConnect, gattCallback,
+                    configuration.transport, configuration.phy);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            gatt = device.getOriginDevice().connectGatt(easyBle.getContext(), autoConnect, gattCallback,
+                    configuration.transport);
+        } else {
+            gatt = device.getOriginDevice().connectGatt(easyBle.getContext(), autoConnect, gattCallback);
+        }
+        return gatt != null;
+    }
+
+    @Override
+    public void disconnect() {
+        if (gatt != null) {
+            gatt.disconnect();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (gatt != null) {
+            gatt.close();
+        }
+    }
+
+    //系统的隐藏方法，清理内部缓存并强制刷新蓝牙设备的服务
+    @SuppressWarnings("all")
+    @Override
+    public boolean refresh() {
+        if (gatt == null) {
+            return false;
+        }
+        try {
+            Method localMethod = gatt.getClass().getMethod("refresh");
+            return (boolean) localMethod.invoke(gatt);
+        } catch (Throwable ignore) {
+        }
+        return false;
+    }
+
+    @Override
+    public boolean discoverServices() {
+        return gatt != null && gatt.discoverServices();
+    }
+
+    @NonNull
+    @Override
+    public List<UUID> getServices() {
+        if (gatt == null) {
+            return Collections.emptyList();
+        }
+        List<BluetoothGattService> services = gatt.getServices();
+        List<UUID> list = new ArrayList<>(services.size());
+        for (BluetoothGattService service : services) {
+            list.add(service.getUuid());
+        }
+        return list;
+    }
+
+    @Override
+    public boolean hasService(@NonNull UUID service) {
+        return getService(service) != null;
+    }
+
+    @Override
+    public boolean hasCharacteristic(@NonNull UUID service, @NonNull UUID characteristic) {
+        return getCharacteristic(service, characteristic) != null;
+    }
+
+    @Override
+    public boolean hasDescriptor(@NonNull UUID service, @NonNull UUID characteristic, @NonNull UUID descriptor) {
+        return getDescriptor(service, characteristic, descriptor) != null;
+    }
+
+    @Override
+    public int getProperties(@NonNull UUID service, @NonNull UUID characteristic) {
+        BluetoothGattCharacteristic gattCharacteristic = getCharacteristic(service, characteristic);
+        return gattCharacteristic == null ? 0 : gattCharacteristic.getProperties();
+    }
+
+    @Override
+    public boolean readCharacteristic(@NonNull UUID service, @NonNull UUID characteristic) {
+        BluetoothGattCharacteristic gattCharacteristic = getCharacteristic(service, characteristic);
+        return gattCharacteristic != null && gatt.readCharacteristic(gattCharacteristic);
+    }
+
+    @Override
+    public int writeCharacteristic(@NonNull UUID service, @NonNull UUID characteristic, @NonNull byte[] value, int writeType) {
+        BluetoothGattCharacteristic gattCharacteristic = getCharacteristic(service, characteristic);
+        if (gattCharacteristic == null) {
+            return WRITE_FAILED;
+        }
+        if (writeType == BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE ||
+                writeType == BluetoothGattCharacteristic.WRITE_TYPE_SIGNED ||
+                writeType == BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT) {
+            gattCharacteristic.setWriteType(writeType);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            int status = gatt.writeCharacteristic(gattCharacteristic, value, gattCharacteristic.getWriteType());
+            if (status == BluetoothStatusCodes.SUCCESS) {
+                return WRITE_SUCCESS;
+            }
+            return status == BluetoothStatusCodes.ERROR_GATT_WRITE_REQUEST_BUSY ? WRITE_BUSY : WRITE_FAILED;
+        }
+        gattCharacteristic.setValue(value);
+        //低版本上一个操作未完成时也是返回false
+        return gatt.writeCharacteristic(gattCharacteristic) ? WRITE_SUCCESS : WRITE_REJECTED;
+    }
+
+    @Override
+    public int writeReliableCharacteristic(@NonNull UUID service, @NonNull UUID characteristic, @NonNull byte[] value) {
+        BluetoothGattCharacteristic gattCharacteristic = getCharacteristic(service, characteristic);
+        if (gattCharacteristic == null) {
+            return WRITE_FAILED;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            //直接传写入类型，不修改特征的
+            int status = gatt.writeCharacteristic(gattCharacteristic, value, BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+            if (status == BluetoothStatusCodes.SUCCESS) {
+                return WRITE_SUCCESS;
+            }
+            return status == BluetoothStatusCodes.ERROR_GATT_WRITE_REQUEST_BUSY ? WRITE_BUSY : WRITE_FAILED;
+        }
+        //写入调用时已取了写入类型，调用后还原，不影响之后按特征默认类型的写入
+        int writeType = gattCharacteristic.getWriteType();
+        gattCharacteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+        gattCharacteristic.setValue(value);
+        boolean result = gatt.writeCharacteristic(gattCharacteristic);
+        gattCharacteristic.setWriteType(writeType);
+        return result ? WRITE_SUCCESS : WRITE_REJECTED;
+    }
+
+    @Override
+    public boolean isWriteValueCopied() {
+        //低版本setValue保存的是数组的引用，回调和原始回调里取特征的值时才读取
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU;
+    }
+
+    @Override
+    public boolean readDescriptor(@NonNull UUID service, @NonNull UUID characteristic, @NonNull UUID descriptor) {
+        BluetoothGattDescriptor gattDescriptor = getDescriptor(service, characteristic, descriptor);
+        return gattDescriptor != null && gatt.readDescriptor(gattDescriptor);
+    }
+
+    @Override
+    public boolean writeDescriptor(@NonNull UUID service, @NonNull UUID characteristic, @NonNull UUID descriptor, @NonNull byte[] value) {
+        BluetoothGattDescriptor gattDescriptor = getDescriptor(service, characteristic, descriptor);
+        if (gattDescriptor == null) {
+            return false;
+        }
+        byte[] originValue = gattDescriptor.getValue();
+        descriptorOriginValue = originValue;
+        descriptorWritingValue = value;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            //直接传值写入，不修改描述符的值，成功后再更新
+            return gatt.writeDescriptor(gattDescriptor, value) == BluetoothStatusCodes.SUCCESS;
+        }
+        gattDescriptor.setValue(value);
+        // There was a bug in Android up to 6.0 where the descriptor was written using parent
+        // characteristic's write type, instead of always Write With Response, as the spec says.
+        BluetoothGattCharacteristic gattCharacteristic = gattDescriptor.getCharacteristic();
+        int writeType = gattCharacteristic.getWriteType();
+        gattCharacteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+        boolean result = gatt.writeDescriptor(gattDescriptor);
+        if (Connection.clientCharacteristicConfig.equals(descriptor) &&
+                Arrays.equals(value, BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE)) {
+            //还原原始值
+            gattDescriptor.setValue(originValue);
+        }
+        gattCharacteristic.setWriteType(writeType);
+        return result;
+    }
+
+    @Override
+    public boolean setCharacteristicNotification(@NonNull UUID service, @NonNull UUID characteristic, boolean enable) {
+        BluetoothGattCharacteristic gattCharacteristic = getCharacteristic(service, characteristic);
+        return gattCharacteristic != null && gatt.setCharacteristicNotification(gattCharacteristic, enable);
+    }
+
+    @Override
+    public boolean beginReliableWrite() {
+        return gatt != null && gatt.beginReliableWrite();
+    }
+
+    @Override
+    public boolean executeReliableWrite() {
+        return gatt != null && gatt.executeReliableWrite();
+    }
+
+    @Override
+    public void abortReliableWrite() {
+        if (gatt != null) {
+            gatt.abortReliableWrite();
+        }
+    }
+
+    @Override
+    public boolean requestMtu(int mtu) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            return gatt != null && gatt.requestMtu(mtu);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean readRemoteRssi() {
+        return gatt != null && gatt.readRemoteRssi();
+    }
+
+    @Override
+    public void readPhy() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && gatt != null) {
+            gatt.readPhy();
+        }
+    }
+
+    @Override
+    public void setPreferredPhy(int txPhy, int rxPhy, int phyOptions) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && gatt != null) {
+            gatt.setPreferredPhy(txPhy, rxPhy, phyOptions);
+        }
+    }
+
+    private void post(Runnable runnable) {
+        easyBle.getExecutorService().execute(runnable);
+    }
+
+    private class GattCallback extends BluetoothGattCallback {
+        @Override
+        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
+            BluetoothGattCallback origin = originCallback;
+            if (origin != null) {
+                post(() -> origin.onConnectionStateChange(gatt, status, newState));
+            }
+            callback.onConnectionStateChange(AndroidGattTransport.this, status, newState);
+        }
+
+        @Override
+        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
+            BluetoothGattCallback origin = originCallback;
+            if (origin != null) {
+                post(() -> origin.onServicesDiscovered(gatt, status));
+            }
+            callback.onServicesDiscovered(AndroidGattTransport.this, status);
+        }
+
+        //Android 13及以上回调带值的方法，以下回调不带值的方法，需要从特征中取值。两个方法只处理一个
+
+        @Override
+        public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                return;
+            }
+            BluetoothGattCallback origin = originCallback;
+            if (origin != null) {
+                post(() -> origin.onCharacteristicRead(gatt, characteristic, status));
+            }
+            byte[] value = characteristic.getValue();
+            callback.onCharacteristicRead(AndroidGattTransport.this, characteristic.getService().getUuid(),
+                    characteristic.getUuid(), value == null ? EMPTY : value, status);
+        }
+
+        @Override
+        public void onCharacteristicRead(@NonNull BluetoothGatt gatt, @NonNull BluetoothGattCharacteristic characteristic,
+                                         @NonNull byte[] value, int status) {
+            BluetoothGattCallback origin = originCallback;
+            if (origin != null) {
+                post(() -> origin.onCharacteristicRead(gatt, characteristic, value, status));
+            }
+            callback.onCharacteristicRead(AndroidGattTransport.this, characteristic.getService().getUuid(),
+                    characteristic.getUuid(), value, status);
+        }
+
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            BluetoothGattCallback origin = originCallback;
+            if (origin != null) {
+                post(() -> origin.onCharacteristicWrite(gatt, characteristic, status));
+            }
+            //低版本取到的是写入前setValue的值，期间收到通知会被覆盖；高版本写入时没有修改特征的值
+            byte[] value = Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU ? null : characteristic.getValue();
+            callback.onCharacteristicWrite(AndroidGattTransport.this, characteristic.getService().getUuid(),
+                    characteristic.getUuid(), value, status);
+        }
+
+        @Override
+        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                return;
+            }
+            BluetoothGattCallback origin = originCallback;
+            if (origin != null) {
+                post(() -> origin.onCharacteristicChanged(gatt, characteristic));
+            }
+            //低版本特征的值会被后续通知覆盖，先取出
+            byte[] value = characteristic.getValue();
+            callback.onCharacteristicChanged(AndroidGattTransport.this, characteristic.getService().getUuid(),
+                    characteristic.getUuid(), value == null ? EMPTY : value);
+        }
+
+        @Override
+        public void onCharacteristicChanged(@NonNull BluetoothGatt gatt, @NonNull BluetoothGattCharacteristic characteristic,
+                                            @NonNull byte[] value) {
+            BluetoothGattCallback origin = originCallback;
+            if (origin != null) {
+                post(() -> origin.onCharacteristicChanged(gatt, characteristic, value));
+            }
+            callback.onCharacteristicChanged(AndroidGattTransport.this, characteristic.getService().getUuid(),
+                    characteristic.getUuid(), value);
+        }
+
+        @Override
+        public void onReadRemoteRssi(BluetoothGatt gatt, int rssi, int status) {
+            BluetoothGattCallback origin = originCallback;
+            if (origin != null) {
+                post(() -> origin.onReadRemoteRssi(gatt, rssi, status));
+            }
+            callback.onReadRemoteRssi(AndroidGattTransport.this, rssi, status);
+        }
+
+        @Override
+        public void onDescriptorRead(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                return;
+            }
+            BluetoothGattCallback origin = originCallback;
+            if (origin != null) {
+                post(() -> origin.onDescriptorRead(gatt, descriptor, status));
+            }
+            BluetoothGattCharacteristic characteristic = descriptor.getCharacteristic();
+            byte[] value = descriptor.getValue();
+            callback.onDescriptorRead(AndroidGattTransport.this, characteristic.getService().getUuid(), characteristic.getUuid(),
+                    descriptor.getUuid(), value == null ? EMPTY : value, status);
+        }
+
+        @Override
+        public void onDescriptorRead(@NonNull BluetoothGatt gatt, @NonNull BluetoothGattDescriptor descriptor, int status,
+                                     @NonNull byte[] value) {
+            BluetoothGattCallback origin = originCallback;
+            if (origin != null) {
+                post(() -> origin.onDescriptorRead(gatt, descriptor, status, value));
+            }
+            BluetoothGattCharacteristic characteristic = descriptor.getCharacteristic();
+            callback.onDescriptorRead(AndroidGattTransport.this, characteristic.getService().getUuid(), characteristic.getUuid(),
+                    descriptor.getUuid(), value, status);
+        }
+
+        @Override
+        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+            BluetoothGattCallback origin = originCallback;
+            if (origin != null) {
+                post(() -> origin.onDescriptorWrite(gatt, descriptor, status));
+            }
+            if (descriptorWritingValue != null) {
+                if (status != BluetoothGatt.GATT_SUCCESS) {
+                    descriptor.setValue(descriptorOriginValue);
+                } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                    //写入时没有修改描述符的值，成功后再更新，用于判断通知是否开启
+                    descriptor.setValue(descriptorWritingValue);
+                }
+            }
+            descriptorOriginValue = null;
+            descriptorWritingValue = null;
+            BluetoothGattCharacteristic characteristic = descriptor.getCharacteristic();
+            callback.onDescriptorWrite(AndroidGattTransport.this, characteristic.getService().getUuid(), characteristic.getUuid(),
+                    descriptor.getUuid(), status);
+        }
+
+        @Override
+        public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
+            BluetoothGattCallback origin = originCallback;
+            if (origin != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                post(() -> origin.onMtuChanged(gatt, mtu, status));
+            }
+            callback.onMtuChanged(AndroidGattTransport.this, mtu, status);
+        }
+
+        @Override
+        public void onReliableWriteCompleted(BluetoothGatt gatt, int status) {
+            BluetoothGattCallback origin = originCallback;
+            if (origin != null) {
+                post(() -> origin.onReliableWriteCompleted(gatt, status));
+            }
+            callback.onReliableWriteCompleted(AndroidGattTransport.this, status);
+        }
+
+        @Override
+        public void onPhyRead(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            BluetoothGattCallback origin = originCallback;
+            if (origin != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                post(() -> origin.onPhyRead(gatt, txPhy, rxPhy, status));
+            }
+            callback.onPhyRead(AndroidGattTransport.this, txPhy, rxPhy, status);
+        }
+
+        @Override
+        public void onPhyUpdate(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            BluetoothGattCallback origin = originCallback;
+            if (origin != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                post(() -> origin.onPhyUpdate(gatt, txPhy, rxPhy, status));
+            }
+            callback.onPhyUpdate(AndroidGattTransport.this, txPhy, rxPhy, status);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+
+import cn.wandersnail.ble.callback.BatchCallback;
+
+/**
+ * 批量请求构建器。多个请求作为一个整体排队，按添加的顺序连续执行，中间不会插入其他请求。
+ * 整个批量请求共用一个超时，只回调一次结果，其中一步失败则不再执行后面的步骤。
+ * <br>添加的请求自身设置的回调不会被调用
+ */
+public final class BatchRequestBuilder extends RequestBuilder<BatchCallback> {
+    BatchRequestBuilder() {
+        super(RequestType.BATCH);
+    }
+
+    @Override
+    public BatchRequestBuilder setTag(String tag) {
+        super.setTag(tag);
+        return this;
+    }
+
+    @Override
+    public BatchRequestBuilder setPriority(int priority) {
+        super.setPriority(priority);
+        return this;
+    }
+
+    @Override
+    public BatchRequestBuilder setCallback(BatchCallback callback) {
+        super.setCallback(callback);
+        return this;
+    }
+
+    /**
+     * 添加一步请求。支持读写特征、开关通知和Indication、读描述符、修改MTU、读信号强度
+     *
+     * @param request 通过{@link RequestBuilderFactory}构建的请求
+     */
+    public BatchRequestBuilder addRequest(@NonNull Request request) {
+        //已加入其他批量请求或已单独执行的不能再加入
+        if (!(request instanceof GenericRequest) || ((GenericRequest) request).batch != null ||
+                ((GenericRequest) request).connection != null) {
+            throw new IllegalArgumentException("Request can not be added to batch.");
+        }
+        switch (request.getType()) {
+            case READ_CHARACTERISTIC:
+            case WRITE_CHARACTERISTIC:
+            case SET_NOTIFICATION:
+            case SET_INDICATION:
+            case READ_DESCRIPTOR:
+            case CHANGE_MTU:
+            case READ_RSSI:
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported request type in batch: " + request.getType());
+        }
+        if (batchSteps == null) {
+            batchSteps = new ArrayList<>();
+        }
+        batchSteps.add((GenericRequest) request);
+        return this;
+    }
+
+    /**
+     * 设置整个批量请求的超时时长，不设置时为每步请求超时时长之和
+     */
+    @Override
+    public BatchRequestBuilder setTimeoutMillis(int timeoutMillis) {
+        super.setTimeoutMillis(timeoutMillis);
+        return this;
+    }
+
+    @Override
+    public Request build() {
+        if (batchSteps == null) {
+            throw new IllegalStateException("No request added.");
+        }
+        for (GenericRequest step : batchSteps) {
+            //加入后又被其他批量请求构建或被单独执行
+            if (step.batch != null || step.connection != null) {
+                throw new IllegalStateException("Request in batch has been added to another batch or executed.");
+            }
+        }
+        return super.build();
+    }
+}
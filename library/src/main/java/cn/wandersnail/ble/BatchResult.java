@@ -0,0 +1,55 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * 批量请求的结果，按添加的顺序保存每一步的结果
+ */
+public final class BatchResult {
+    private final List<GenericRequest> requests;
+    private final Object[] values;
+    int failedIndex = -1;
+
+    BatchResult(List<GenericRequest> requests) {
+        this.requests = requests;
+        values = new Object[requests.size()];
+    }
+
+    void set(int index, Object value) {
+        values[index] = value;
+    }
+
+    /**
+     * 步骤数
+     */
+    public int size() {
+        return requests.size();
+    }
+
+    /**
+     * 第index步的请求
+     */
+    @NonNull
+    public Request getRequest(int index) {
+        return requests.get(index);
+    }
+
+    /**
+     * 第index步的结果。读特征、读描述符和写特征为byte[]，开关通知和Indication为Boolean，
+     * 修改MTU和读信号强度为Integer。未执行或失败的步骤为null
+     */
+    @Nullable
+    public Object getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * 失败的步骤，全部成功时为-1
+     */
+    public int getFailedIndex() {
+        return failedIndex;
+    }
+}
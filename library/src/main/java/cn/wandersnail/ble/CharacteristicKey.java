@@ -0,0 +1,33 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+
+import java.util.UUID;
+
+/**
+ * 服务和特征UUID组合成的键
+ */
+final class CharacteristicKey {
+    final UUID service;
+    final UUID characteristic;
+    private final int hash;
+
+    CharacteristicKey(@NonNull UUID service, @NonNull UUID characteristic) {
+        this.service = service;
+        this.characteristic = characteristic;
+        hash = 31 * service.hashCode() + characteristic.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CharacteristicKey)) return false;
+        CharacteristicKey that = (CharacteristicKey) o;
+        return service.equals(that.service) && characteristic.equals(that.characteristic);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,93 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按特征登记的对象。以特征UUID查找，得到的数组在修改时整体替换，遍历时不加锁也不创建对象，适合在通知回调中使用
+ */
+class CharacteristicRegistry<T> {
+    private final ConcurrentHashMap<UUID, Entry<T>[]> entries = new ConcurrentHashMap<>();
+
+    static final class Entry<T> {
+        final UUID service;
+        final T item;
+
+        Entry(UUID service, T item) {
+            this.service = service;
+            this.item = item;
+        }
+    }
+
+    synchronized void add(@NonNull UUID service, @NonNull UUID characteristic, @NonNull T item) {
+        Entry<T>[] old = entries.get(characteristic);
+        int len = old == null ? 0 : old.length;
+        Entry<T>[] array = newArray(len + 1);
+        if (old != null) {
+            System.arraycopy(old, 0, array, 0, len);
+        }
+        array[len] = new Entry<>(service, item);
+        entries.put(characteristic, array);
+    }
+
+    /**
+     * @return 是否登记过
+     */
+    synchronized boolean remove(@NonNull UUID service, @NonNull UUID characteristic, @NonNull T item) {
+        Entry<T>[] old = entries.get(characteristic);
+        if (old == null) {
+            return false;
+        }
+        for (int i = 0; i < old.length; i++) {
+            if (old[i].item.equals(item) && old[i].service.equals(service)) {
+                if (old.length == 1) {
+                    entries.remove(characteristic);
+                } else {
+                    Entry<T>[] array = newArray(old.length - 1);
+                    System.arraycopy(old, 0, array, 0, i);
+                    System.arraycopy(old, i + 1, array, i, old.length - i - 1);
+                    entries.put(characteristic, array);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取特征下登记的对象，不同服务的同名特征也在其中，需要比较{@link Entry#service}
+     */
+    @Nullable
+    Entry<T>[] get(@NonNull UUID characteristic) {
+        return entries.get(characteristic);
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * 取出所有对象并清空
+     */
+    @NonNull
+    synchronized List<T> removeAll() {
+        List<T> list = new ArrayList<>();
+        for (Entry<T>[] array : entries.values()) {
+            for (Entry<T> entry : array) {
+                list.add(entry.item);
+            }
+        }
+        entries.clear();
+        return list;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Entry<T>[] newArray(int length) {
+        return new Entry[length];
+    }
+}
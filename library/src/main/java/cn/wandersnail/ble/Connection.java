@@ -6,11 +6,17 @@ import android.bluetooth.BluetoothGattCallback;
 import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattDescriptor;
 import android.bluetooth.BluetoothGattService;
+import android.os.Build;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import org.reactivestreams.Publisher;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * date: 2019/8/3 13:45
@@ -35,6 +41,10 @@ public interface Connection {
     int REQUEST_FAIL_TYPE_REQUEST_TIMEOUT = 7;
     int REQUEST_FAIL_TYPE_CONNECTION_DISCONNECTED = 8;
     int REQUEST_FAIL_TYPE_CONNECTION_RELEASED = 9;
+    /**
+     * 请求被取消
+     */
+    int REQUEST_FAIL_TYPE_REQUEST_CANCELLED = 10;
 
     //----------连接超时类型---------
     int TIMEOUT_TYPE_CANNOT_DISCOVER_DEVICE = 0;
@@ -69,6 +79,12 @@ public interface Connection {
      */
     int getMtu();
 
+    /**
+     * 获取连接的运行统计快照，包括读写字节数、各类请求结果、耗时分布、GATT状态码、队列长度、各连接状态时长、重连次数
+     */
+    @NonNull
+    ConnectionStats getStats();
+
     /**
      * 重连
      */
@@ -109,15 +125,22 @@ public interface Connection {
     BluetoothGatt getGatt();
 
     /**
-     * 清除请求队列，不触发事件
+     * 清除请求队列，排队中和正在执行的请求以{@link #REQUEST_FAIL_TYPE_REQUEST_CANCELLED}失败
      */
     void clearRequestQueue();
 
     /**
-     * 将指定的请求类型从队列中移除，如果传null，则清除请求队列，不触发事件
+     * 将指定的请求类型从队列中移除，如果传null，则清除请求队列。被移除的请求以{@link #REQUEST_FAIL_TYPE_REQUEST_CANCELLED}失败
      */
     void clearRequestQueueByType(@Nullable RequestType type);
 
+    /**
+     * 取消指定标识的所有请求，取消规则同{@link RequestHandle#cancel()}
+     *
+     * @return 取消的请求数
+     */
+    int cancelByTag(@NonNull String tag);
+
     @NonNull
     ConnectionConfiguration getConnectionConfiguration();
 
@@ -131,9 +154,58 @@ public interface Connection {
     BluetoothGattDescriptor getDescriptor(UUID service, UUID characteristic, UUID descriptor);
 
     /**
-     * 执行请求
+     * 执行请求，不是通过{@link RequestBuilder}构建的请求不执行
+     *
+     * @return 请求句柄，可用于取消请求
+     * @throws IllegalArgumentException 请求已加入批量请求时，应执行批量请求
      */
-    void execute(@NonNull Request request);
+    @NonNull
+    RequestHandle execute(@NonNull Request request);
+
+    /**
+     * 执行请求，以Future的方式获取结果。Future在{@link EasyBLE}的线程池中结束，不占用连接的线程。
+     * 请求失败时以{@link RequestFailedException}结束，取消Future同时取消请求。请求设置的回调和观察者照常收到通知。
+     * 不是通过{@link RequestBuilder}构建的请求以IllegalArgumentException结束
+     */
+    @RequiresApi(Build.VERSION_CODES.N)
+    @NonNull
+    CompletableFuture<RequestResult> submit(@NonNull Request request);
+
+    /**
+     * 特征通知的发布者，缓存满时以错误结束订阅，缓存128个。见{@link #notifications(UUID, UUID, OverflowStrategy, int)}
+     */
+    @NonNull
+    Publisher<byte[]> notifications(@NonNull UUID service, @NonNull UUID characteristic);
+
+    /**
+     * 特征通知的发布者，按订阅者请求的数量发送。每个订阅独立缓存，只收到此特征的通知，不影响观察者。
+     * 通知需要另外通过请求开启，连接释放后订阅结束
+     *
+     * @param strategy   订阅者处理不及时，缓存满时的处理方式
+     * @param bufferSize 每个订阅的缓存数量，strategy为{@link OverflowStrategy#LATEST}时忽略
+     */
+    @NonNull
+    Publisher<byte[]> notifications(@NonNull UUID service, @NonNull UUID characteristic,
+                                    @NonNull OverflowStrategy strategy, int bufferSize);
+
+    /**
+     * 添加特征通知的接收器。分发过程不创建对象，注册了接收器的特征，通知不再发给观察者
+     */
+    void addNotificationSink(@NonNull UUID service, @NonNull UUID characteristic, @NonNull NotificationSink sink);
+
+    /**
+     * 移除特征通知的接收器
+     */
+    void removeNotificationSink(@NonNull UUID service, @NonNull UUID characteristic, @NonNull NotificationSink sink);
+
+    /**
+     * 同{@link #submit(Request)}
+     *
+     * @param executor 结束Future的执行器，为null时使用{@link EasyBLE}的线程池
+     */
+    @RequiresApi(Build.VERSION_CODES.N)
+    @NonNull
+    CompletableFuture<RequestResult> submit(@NonNull Request request, @Nullable Executor executor);
 
     /**
      * 通知或Indication是否开启
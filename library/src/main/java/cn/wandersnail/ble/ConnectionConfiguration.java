@@ -14,6 +14,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import cn.wandersnail.ble.core.ReconnectPolicy;
+
 /**
  * date: 2019/8/3 17:06
  * author: zengfansheng
@@ -22,7 +24,7 @@ public class ConnectionConfiguration {
     /**
      * 无限重连
      */
-    public static final int TRY_RECONNECT_TIMES_INFINITE = -1;
+    public static final int TRY_RECONNECT_TIMES_INFINITE = ReconnectPolicy.ATTEMPTS_INFINITE;
     int discoverServicesDelayMillis = 600;
     int connectTimeoutMillis = 10000;
     int requestTimeoutMillis = 3000;
@@ -49,6 +51,21 @@ public class ConnectionConfiguration {
      * 使用读取信号强度辅助判断连接状态
      */
     boolean useReadRemoteRssiToDetectDisconnection = false;
+    /**
+     * 是否为连接单独创建后台线程运行连接状态机
+     */
+    boolean useDedicatedLooper = false;
+    /**
+     * 是否合并相同特征的读请求
+     */
+    boolean isCoalesceReads = false;
+    /**
+     * 是否根据请求的实际耗时计算超时时长
+     */
+    boolean isAdaptiveRequestTimeout = false;
+    float adaptiveTimeoutMultiplier = 3;
+    int minAdaptiveTimeoutMillis = 300;
+    int maxAdaptiveTimeoutMillis = 10000;
 
     public ConnectionConfiguration() {
         scanIntervalPairsInAutoReconnection = new ArrayList<>();
@@ -192,4 +209,56 @@ public class ConnectionConfiguration {
         this.useReadRemoteRssiToDetectDisconnection = useReadRemoteRssiToDetectDisconnection;
         return this;
     }
+
+    /**
+     * 是否为此连接单独创建一个后台线程运行连接状态机，连接释放时线程退出。
+     * 设置为true时，忽略{@link EasyBLEBuilder#setConnectionLooperPoolSize(int)}的配置
+     *
+     * @param useDedicatedLooper true：使用独立线程，false：使用共享的线程或主线程
+     */
+    public ConnectionConfiguration setUseDedicatedLooper(boolean useDedicatedLooper) {
+        this.useDedicatedLooper = useDedicatedLooper;
+        return this;
+    }
+
+    /**
+     * 是否合并相同特征的读请求。开启后，读特征时如果同一特征已有读请求在排队或正在执行，则不再新建GATT读操作，
+     * 读取结果同时回调给所有合并的请求。向特征写入后发起的读不会合并到写入之前的读请求
+     */
+    public ConnectionConfiguration setCoalesceReads(boolean coalesceReads) {
+        isCoalesceReads = coalesceReads;
+        return this;
+    }
+
+    /**
+     * 是否根据请求的实际耗时计算超时时长。开启后按请求类型分别统计此连接上请求的耗时，
+     * 超时时长 = 耗时的99百分位 × {@link #setAdaptiveTimeoutMultiplier(float)}，并限制在
+     * {@link #setAdaptiveTimeoutBounds(int, int)}范围内。样本不足时使用{@link #setRequestTimeoutMillis(int)}的值。
+     * 分包写入时按每包计算
+     */
+    public ConnectionConfiguration setAdaptiveRequestTimeout(boolean adaptiveRequestTimeout) {
+        isAdaptiveRequestTimeout = adaptiveRequestTimeout;
+        return this;
+    }
+
+    /**
+     * 自适应超时时长相对于耗时99百分位的倍数，默认3
+     */
+    public ConnectionConfiguration setAdaptiveTimeoutMultiplier(float multiplier) {
+        if (multiplier >= 1) {
+            adaptiveTimeoutMultiplier = multiplier;
+        }
+        return this;
+    }
+
+    /**
+     * 自适应超时时长的范围，默认300~10000毫秒
+     */
+    public ConnectionConfiguration setAdaptiveTimeoutBounds(int minMillis, int maxMillis) {
+        if (minMillis > 0 && maxMillis >= minMillis) {
+            minAdaptiveTimeoutMillis = minMillis;
+            maxAdaptiveTimeoutMillis = maxMillis;
+        }
+        return this;
+    }
 }
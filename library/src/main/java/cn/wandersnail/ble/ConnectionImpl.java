@@ -10,32 +10,40 @@ import android.bluetooth.BluetoothGattService;
 import android.bluetooth.BluetoothProfile;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 import androidx.core.util.Pair;
 
+import org.reactivestreams.Publisher;
+
 import java.lang.ref.WeakReference;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import cn.wandersnail.ble.callback.RequestCallback;
 import cn.wandersnail.ble.callback.ScanListener;
+import cn.wandersnail.ble.core.LatencyHistogram;
+import cn.wandersnail.ble.core.ObserverRegistry;
+import cn.wandersnail.ble.core.PackageSplitter;
+import cn.wandersnail.ble.core.ReconnectPolicy;
+import cn.wandersnail.ble.core.RequestQueue;
 import cn.wandersnail.ble.util.Logger;
-import cn.wandersnail.commons.observer.Observable;
-import cn.wandersnail.commons.poster.MethodInfo;
 import cn.wandersnail.commons.poster.PosterDispatcher;
-import cn.wandersnail.commons.util.MathUtils;
+import cn.wandersnail.commons.poster.ThreadMode;
 import cn.wandersnail.commons.util.StringUtils;
 
 /**
@@ -52,42 +60,72 @@ class ConnectionImpl implements Connection, ScanListener {
     private static final int MSG_DISCOVER_SERVICES = 6;
     private static final int MSG_ON_CONNECTION_STATE_CHANGE = 7;
     private static final int MSG_ON_SERVICES_DISCOVERED = 8;
+    private static final int MSG_WRITE_PACKAGE = 9;
+
+    //写入一包数据的结果
+    private static final int WRITE_SUCCESS = 0;
+    private static final int WRITE_BUSY = 1;
+    private static final int WRITE_FAILED = 2;
+
+    //自适应超时开始生效需要的最少样本数
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    //耗时样本数达到此值时衰减旧样本
+    private static final int LATENCY_DECAY_THRESHOLD = 512;
 
     private static final int MSG_ARG_NONE = 0;
     private static final int MSG_ARG_RECONNECT = 1;
+    private static final int MSG_ARG_PACKAGE_READ = 2;
 
     private final BluetoothAdapter bluetoothAdapter;
     private final Device device;
     private final ConnectionConfiguration configuration;//连接配置
-    private BluetoothGatt bluetoothGatt;
-    private final List<GenericRequest> requestQueue = new ArrayList<>();//请求队列
+    private GattTransport transport;
+    private final RequestQueue<GenericRequest, RequestType> requestQueue = new RequestQueue<>(RequestType.class);//请求队列
     private GenericRequest currentRequest;//当前的请求
+    private GenericRequest currentBatch;//正在执行的批量请求，currentRequest为其中的一步
+    //按请求类型统计的GATT操作耗时，用于计算自适应超时
+    private final LatencyHistogram[] latencyHistograms = new LatencyHistogram[RequestType.values().length];
+    private final Map<CharacteristicKey, GenericRequest> pendingReads = new HashMap<>();//排队中或正在执行的读特征请求，用于合并
+    //按特征分开的通知订阅和接收器
+    private final CharacteristicRegistry<NotificationSubscription> notificationSubscriptions = new CharacteristicRegistry<>();
+    private final CharacteristicRegistry<NotificationSink> notificationSinks = new CharacteristicRegistry<>();
+    private final CharacteristicRegistry<RoutedCharacteristicListener> characteristicListeners;//EasyBLE中此设备的路由表
     private final EventObserver observer;//伴生观察者
     private boolean isReleased;//连接是否已释放
-    private final Handler connHandler;//用于操作连接的Handler，运行在主线程
+    private final Handler connHandler;//用于操作连接的Handler，运行在主线程或配置的后台线程
+    private final HandlerThread dedicatedThread;//连接独占的后台线程
     private long connStartTime; //用于连接超时计时
     private int refreshCount;//刷新（清缓存）计数，在发现服务后清零
-    private int tryReconnectCount;//尝试重连计数
+    private final ReconnectPolicy reconnectPolicy = new ReconnectPolicy();//自动重连的次数和退避
     private ConnectionState lastConnectionState;//上次连接状态
-    private int reconnectImmediatelyCount = 0; //不搜索直接重连计数
     private boolean refreshing;//是否正在执行清理缓存
     private boolean isActiveDisconnect;//是否主动断开连接
     private long lastScanStopTime;//上次搜索停止时间
     private final Logger logger;
-    private final Observable observable;
+    private final EventDispatcher eventDispatcher;
+    private final ObserverRegistry.Entry<EventObserver, ThreadMode> observerEntry;//伴生观察者
     private final PosterDispatcher posterDispatcher;
-    private final BluetoothGattCallback gattCallback = new BleGattCallback();
+    private final GattTransport.Factory transportFactory;
+    private final GattTransport.Callback transportCallback = new TransportCallback();
     private final EasyBLE easyBle;
     private int mtu = 23;
-    private BluetoothGattCallback originCallback;
+    private final PackageSplitter packageSplitter = new PackageSplitter();//分包写入，协议栈复制数据时整包复用缓冲区
+    private volatile BluetoothGattCallback originCallback;
     private boolean connectFailed;//连接失败过
     private long lastRemoteRssiReadTime;
+    @Nullable
+    private final FlightRecorder flightRecorder;
+    private final int flightRecorderAddressId;
+    private final ConnectionMetrics metrics;
 
     ConnectionImpl(EasyBLE easyBle, BluetoothAdapter bluetoothAdapter, Device device, ConnectionConfiguration configuration,
                    int connectDelay, EventObserver observer) {
         this.easyBle = easyBle;
         this.bluetoothAdapter = bluetoothAdapter;
         this.device = device;
+        for (int i = 0; i < latencyHistograms.length; i++) {
+            latencyHistograms[i] = new LatencyHistogram(LATENCY_DECAY_THRESHOLD);
+        }
         //如果没有配置
         if (configuration == null) {
             this.configuration = new ConnectionConfiguration();
@@ -96,9 +134,23 @@ class ConnectionImpl implements Connection, ScanListener {
         }
         this.observer = observer;
         logger = easyBle.getLogger();
-        observable = easyBle.getObservable();
+        eventDispatcher = easyBle.getEventDispatcher();
+        observerEntry = observer == null ? null : eventDispatcher.resolve(observer, false);
         posterDispatcher = easyBle.getPosterDispatcher();
-        connHandler = new ConnHandler(this);
+        transportFactory = easyBle.getGattTransportFactory();
+        characteristicListeners = easyBle.getCharacteristicListeners(device.address);
+        flightRecorder = easyBle.getFlightRecorder();
+        flightRecorderAddressId = flightRecorder == null ? 0 : flightRecorder.getAddressId(device.address);
+        metrics = new ConnectionMetrics(device.connectionState);
+        Looper looper;
+        if (this.configuration.useDedicatedLooper) {
+            dedicatedThread = ConnectionLooperPool.startThread("EasyBLE-Connection-" + device.address);
+            looper = dedicatedThread.getLooper();
+        } else {
+            dedicatedThread = null;
+            looper = easyBle.getConnectionLooper();
+        }
+        connHandler = new ConnHandler(this, looper);
         connStartTime = System.currentTimeMillis();
         connHandler.sendEmptyMessageDelayed(MSG_CONNECT, connectDelay); //执行连接
         connHandler.sendEmptyMessageDelayed(MSG_TIMER, connectDelay); //启动定时器
@@ -133,54 +185,54 @@ class ConnectionImpl implements Connection, ScanListener {
     @Override
     public void setBluetoothGattCallback(BluetoothGattCallback callback) {
         originCallback = callback;
+        GattTransport t = transport;
+        if (t instanceof AndroidGattTransport) {
+            ((AndroidGattTransport) t).setOriginCallback(callback);
+        }
     }
 
     @Override
     public boolean hasProperty(UUID service, UUID characteristic, int property) {
-        BluetoothGattCharacteristic charac = getCharacteristic(service, characteristic);
-        if (charac == null) {
+        GattTransport t = transport;
+        if (service == null || characteristic == null || t == null) {
             return false;
         }
-        return (charac.getProperties() & property) != 0;
+        return (t.getProperties(service, characteristic) & property) != 0;
     }
 
-    private class BleGattCallback extends BluetoothGattCallback {
+    private class TransportCallback implements GattTransport.Callback {
         @Override
-        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
-            if (originCallback != null) {
-                easyBle.getExecutorService().execute(() -> originCallback.onConnectionStateChange(gatt, status, newState));
-            }
+        public void onConnectionStateChange(@NonNull GattTransport transport, int status, int newState) {
+            record(FlightRecorder.EVENT_CONNECTION_STATE, status, newState);
+            metrics.onGattStatus(status);
             if (!isReleased) {
                 Message.obtain(connHandler, MSG_ON_CONNECTION_STATE_CHANGE, status, newState).sendToTarget();
             } else {
-                closeGatt(gatt);
+                closeTransport(transport);
             }
         }
 
         @Override
-        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
-            if (originCallback != null) {
-                easyBle.getExecutorService().execute(() -> originCallback.onServicesDiscovered(gatt, status));
-            }
+        public void onServicesDiscovered(@NonNull GattTransport transport, int status) {
+            record(FlightRecorder.EVENT_SERVICES_DISCOVERED, status, 0);
+            metrics.onGattStatus(status);
             if (!isReleased) {
-                if (gatt != null) {
-                    gatt.readRemoteRssi();
-                }
+                transport.readRemoteRssi();
                 Message.obtain(connHandler, MSG_ON_SERVICES_DISCOVERED, status, 0).sendToTarget();
             } else {
-                closeGatt(gatt);
+                closeTransport(transport);
             }
         }
 
         @Override
-        public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
-            if (originCallback != null) {
-                easyBle.getExecutorService().execute(() -> originCallback.onCharacteristicRead(gatt, characteristic, status));
-            }
+        public void onCharacteristicRead(@NonNull GattTransport transport, @NonNull UUID service, @NonNull UUID characteristic,
+                                         @NonNull byte[] value, int status) {
+            record(FlightRecorder.EVENT_CHARACTERISTIC_READ, status, value);
+            metrics.onGattStatus(status);
             if (currentRequest != null) {
                 if (currentRequest.type == RequestType.READ_CHARACTERISTIC) {
                     if (status == BluetoothGatt.GATT_SUCCESS) {
-                        notifyCharacteristicRead(currentRequest, characteristic.getValue());
+                        notifyCharacteristicRead(currentRequest, value);
                     } else {
                         handleGattStatusFailed(status);
                     }
@@ -190,67 +242,53 @@ class ConnectionImpl implements Connection, ScanListener {
         }
 
         @Override
-        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
-            if (originCallback != null) {
-                easyBle.getExecutorService().execute(() -> originCallback.onCharacteristicWrite(gatt, characteristic, status));
-            }
-            if (currentRequest != null && currentRequest.type == RequestType.WRITE_CHARACTERISTIC &&
-                    currentRequest.writeOptions.isWaitWriteResult) {
+        public void onCharacteristicWrite(@NonNull GattTransport transport, @NonNull UUID service, @NonNull UUID characteristic,
+                                          @Nullable byte[] value, int status) {
+            GenericRequest request = currentRequest;
+            recordWrite(request, value, status);
+            metrics.onGattStatus(status);
+            if (request != null && request.type == RequestType.RELIABLE_WRITE && request.reliableWriteBegun) {
+                onReliableItemWritten(request, status);
+            } else if (request != null && request.type == RequestType.WRITE_CHARACTERISTIC &&
+                    request.writeOptions.isWaitWriteResult && request.sendingBytes != null) {
+                if (request.cancelled) {
+                    finishCancelledWrite(request);
+                } else if (status == BluetoothGatt.GATT_SUCCESS) {
+                    printWriteLog(request, request.sendingBytes.length);
+                    onPackageWritten(request);
+                } else {
+                    handleFailedCallback(request, REQUEST_FAIL_TYPE_GATT_STATUS_FAILED, status, true);
+                }
+            } else if (request != null && isCreditWindowEnabled(request)) {
                 if (status == BluetoothGatt.GATT_SUCCESS) {
-                    if (logger.isEnabled()) {
-                        byte[] data = (byte[]) currentRequest.value;//完整包数据
-                        int packageSize = currentRequest.writeOptions.packageSize;
-                        int total = data.length / packageSize + (data.length % packageSize == 0 ? 0 : 1);
-                        int progress;
-                        if (currentRequest.remainQueue == null || currentRequest.remainQueue.isEmpty()) {
-                            progress = total;
-                        } else {
-                            progress = data.length / packageSize - currentRequest.remainQueue.size() + 1;
-                        }
-                        printWriteLog(currentRequest, progress, total, characteristic.getValue());
-                    }
-                    if (currentRequest.remainQueue == null || currentRequest.remainQueue.isEmpty()) {
-                        notifyCharacteristicWrite(currentRequest, (byte[]) currentRequest.value);
-                        executeNextRequest();
-                    } else {
-                        connHandler.removeMessages(MSG_REQUEST_TIMEOUT);
-                        connHandler.sendMessageDelayed(Message.obtain(connHandler, MSG_REQUEST_TIMEOUT, currentRequest),
-                                configuration.requestTimeoutMillis);
-                        GenericRequest req = currentRequest;
-                        int delay = currentRequest.writeOptions.packageWriteDelayMillis;
-                        if (delay > 0) {
-                            try {
-                                Thread.sleep(delay);
-                            } catch (InterruptedException ignore) {
-                            }
-                            if (req != currentRequest) {
-                                return;
-                            }
-                        }
-                        req.sendingBytes = req.remainQueue.remove();
-                        write(req, characteristic, req.sendingBytes);
-                    }
+                    onCreditReturned(request);
+                } else {
+                    handleFailedCallback(request, REQUEST_FAIL_TYPE_GATT_STATUS_FAILED, status, true);
+                }
+            } else if (request != null && request.type == RequestType.WRITE_STREAM && request.sendingBytes != null) {
+                if (request.cancelled) {
+                    finishCancelledWrite(request);
+                } else if (status == BluetoothGatt.GATT_SUCCESS) {
+                    onStreamPackageWritten(request);
                 } else {
-                    handleFailedCallback(currentRequest, REQUEST_FAIL_TYPE_GATT_STATUS_FAILED, status, true);
+                    handleFailedCallback(request, REQUEST_FAIL_TYPE_GATT_STATUS_FAILED, status, true);
                 }
             }
         }
 
         @Override
-        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
-            if (originCallback != null) {
-                easyBle.getExecutorService().execute(() -> originCallback.onCharacteristicChanged(gatt, characteristic));
-            }
-            notifyCharacteristicChanged(characteristic);
+        public void onCharacteristicChanged(@NonNull GattTransport transport, @NonNull UUID service, @NonNull UUID characteristic,
+                                            @NonNull byte[] value) {
+            record(FlightRecorder.EVENT_CHARACTERISTIC_CHANGED, 0, value);
+            notifyCharacteristicChanged(service, characteristic, value);
         }
 
         @Override
-        public void onReadRemoteRssi(BluetoothGatt gatt, int rssi, int status) {
+        public void onReadRemoteRssi(@NonNull GattTransport transport, int rssi, int status) {
+            record(FlightRecorder.EVENT_RSSI_READ, status, rssi);
+            metrics.onGattStatus(status);
             lastRemoteRssiReadTime = System.currentTimeMillis();
             device.setRssi(rssi);
-            if (originCallback != null) {
-                easyBle.getExecutorService().execute(() -> originCallback.onReadRemoteRssi(gatt, rssi, status));
-            }
             if (currentRequest != null) {
                 if (currentRequest.type == RequestType.READ_RSSI) {
                     if (status == BluetoothGatt.GATT_SUCCESS) {
@@ -264,14 +302,14 @@ class ConnectionImpl implements Connection, ScanListener {
         }
 
         @Override
-        public void onDescriptorRead(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
-            if (originCallback != null) {
-                easyBle.getExecutorService().execute(() -> originCallback.onDescriptorRead(gatt, descriptor, status));
-            }
+        public void onDescriptorRead(@NonNull GattTransport transport, @NonNull UUID service, @NonNull UUID characteristic,
+                                     @NonNull UUID descriptor, @NonNull byte[] value, int status) {
+            record(FlightRecorder.EVENT_DESCRIPTOR_READ, status, value);
+            metrics.onGattStatus(status);
             if (currentRequest != null) {
                 if (currentRequest.type == RequestType.READ_DESCRIPTOR) {
                     if (status == BluetoothGatt.GATT_SUCCESS) {
-                        notifyDescriptorRead(currentRequest, descriptor.getValue());
+                        notifyDescriptorRead(currentRequest, value);
                     } else {
                         handleGattStatusFailed(status);
                     }
@@ -281,19 +319,14 @@ class ConnectionImpl implements Connection, ScanListener {
         }
 
         @Override
-        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
-            if (originCallback != null) {
-                easyBle.getExecutorService().execute(() -> originCallback.onDescriptorWrite(gatt, descriptor, status));
-            }
+        public void onDescriptorWrite(@NonNull GattTransport transport, @NonNull UUID service, @NonNull UUID characteristic,
+                                      @NonNull UUID descriptor, int status) {
+            record(FlightRecorder.EVENT_DESCRIPTOR_WRITE, status, 0);
+            metrics.onGattStatus(status);
             if (currentRequest != null) {
                 if (currentRequest.type == RequestType.SET_NOTIFICATION || currentRequest.type == RequestType.SET_INDICATION) {
-                    BluetoothGattDescriptor localDescriptor = getDescriptor(descriptor.getCharacteristic().getService().getUuid(),
-                            descriptor.getCharacteristic().getUuid(), clientCharacteristicConfig);
                     if (status != BluetoothGatt.GATT_SUCCESS) {
                         handleGattStatusFailed(status);
-                        if (localDescriptor != null) {
-                            localDescriptor.setValue(currentRequest.descriptorTemp);
-                        }
                     } else {
                         notifyNotificationOrIndicationChanged(currentRequest, ((int) currentRequest.value) == 1);
                     }
@@ -303,12 +336,9 @@ class ConnectionImpl implements Connection, ScanListener {
         }
 
         @Override
-        public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
-            if (originCallback != null) {
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                    easyBle.getExecutorService().execute(() -> originCallback.onMtuChanged(gatt, mtu, status));
-                }
-            }
+        public void onMtuChanged(@NonNull GattTransport transport, int mtu, int status) {
+            record(FlightRecorder.EVENT_MTU_CHANGED, status, mtu);
+            metrics.onGattStatus(status);
             if (currentRequest != null) {
                 if (currentRequest.type == RequestType.CHANGE_MTU) {
                     if (status == BluetoothGatt.GATT_SUCCESS) {
@@ -323,28 +353,38 @@ class ConnectionImpl implements Connection, ScanListener {
         }
 
         @Override
-        public void onPhyRead(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
-            if (originCallback != null) {
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                    easyBle.getExecutorService().execute(() -> originCallback.onPhyRead(gatt, txPhy, rxPhy, status));
+        public void onReliableWriteCompleted(@NonNull GattTransport transport, int status) {
+            record(FlightRecorder.EVENT_RELIABLE_WRITE_COMPLETED, status, 0);
+            metrics.onGattStatus(status);
+            GenericRequest request = currentRequest;
+            if (request != null && request.type == RequestType.RELIABLE_WRITE && request.reliableWriteBegun) {
+                request.reliableWriteBegun = false;
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    notifyReliableWriteCompleted(request);
+                    executeNextRequest();
+                } else {
+                    handleFailedCallback(request, REQUEST_FAIL_TYPE_GATT_STATUS_FAILED, status, true);
                 }
             }
+        }
+
+        @Override
+        public void onPhyRead(@NonNull GattTransport transport, int txPhy, int rxPhy, int status) {
+            record(FlightRecorder.EVENT_PHY_CHANGED, status, txPhy << 16 | rxPhy);
+            metrics.onGattStatus(status);
             handlePhyChange(true, txPhy, rxPhy, status);
         }
 
         @Override
-        public void onPhyUpdate(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
-            if (originCallback != null) {
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                    easyBle.getExecutorService().execute(() -> originCallback.onPhyRead(gatt, txPhy, rxPhy, status));
-                }
-            }
+        public void onPhyUpdate(@NonNull GattTransport transport, int txPhy, int rxPhy, int status) {
+            record(FlightRecorder.EVENT_PHY_CHANGED, status, txPhy << 16 | rxPhy);
+            metrics.onGattStatus(status);
             handlePhyChange(false, txPhy, rxPhy, status);
         }
     }
 
     private void doOnConnectionStateChange(int status, int newState) {
-        if (bluetoothGatt != null) {
+        if (transport != null) {
             if (status == BluetoothGatt.GATT_SUCCESS) {
                 if (newState == BluetoothProfile.STATE_CONNECTED) {
                     logD(Logger.TYPE_CONNECTION_STATE, "connected! [name: %s, addr: %s]", device.name, device.address);
@@ -374,8 +414,8 @@ class ConnectionImpl implements Connection, ScanListener {
     }
 
     private void doOnServicesDiscovered(int status) {
-        if (bluetoothGatt != null) {
-            List<BluetoothGattService> services = bluetoothGatt.getServices();
+        if (transport != null) {
+            List<UUID> services = transport.getServices();
             if (status == BluetoothGatt.GATT_SUCCESS) {
                 logD(Logger.TYPE_CONNECTION_STATE, "services discovered! [name: %s, addr: %s, size: %d]", device.name,
                         device.address, services.size());
@@ -383,8 +423,9 @@ class ConnectionImpl implements Connection, ScanListener {
                     doClearTaskAndRefresh();
                 } else {
                     refreshCount = 0;
-                    tryReconnectCount = 0;
-                    reconnectImmediatelyCount = 0;
+                    if (reconnectPolicy.reset()) {
+                        metrics.onReconnected();
+                    }
                     device.connectionState = ConnectionState.SERVICE_DISCOVERED;
                     sendConnectionCallback();
                 }
@@ -399,8 +440,8 @@ class ConnectionImpl implements Connection, ScanListener {
     }
 
     private void doDiscoverServices() {
-        if (bluetoothGatt != null) {
-            bluetoothGatt.discoverServices();
+        if (transport != null) {
+            transport.discoverServices();
             device.connectionState = ConnectionState.SERVICE_DISCOVERING;
             sendConnectionCallback();
         } else {
@@ -429,19 +470,17 @@ class ConnectionImpl implements Connection, ScanListener {
                                 type = TIMEOUT_TYPE_CANNOT_DISCOVER_SERVICES;
                                 break;
                         }
-                        observable.notifyObservers(MethodInfoGenerator.onConnectTimeout(device, type));
-                        if (observer != null) {
-                            posterDispatcher.post(observer, MethodInfoGenerator.onConnectTimeout(device, type));
-                        }
-                        boolean infinite = configuration.tryReconnectMaxTimes == ConnectionConfiguration.TRY_RECONNECT_TIMES_INFINITE;
-                        if (configuration.isAutoReconnect && (infinite || tryReconnectCount < configuration.tryReconnectMaxTimes)) {
+                        ObserverEvent event = ObserverEvent.onConnectTimeout(device, type);
+                        easyBle.notifyObservers(event);
+                        eventDispatcher.post(observerEntry, event);
+                        applyReconnectConfiguration();
+                        if (configuration.isAutoReconnect && reconnectPolicy.hasAttemptsLeft()) {
                             doDisconnect(true);
                         } else {
                             doDisconnect(false);
-                            if (observer != null) {
-                                posterDispatcher.post(observer, MethodInfoGenerator.onConnectFailed(device, CONNECT_FAIL_TYPE_MAXIMUM_RECONNECTION));
-                            }
-                            observable.notifyObservers(MethodInfoGenerator.onConnectFailed(device, CONNECT_FAIL_TYPE_MAXIMUM_RECONNECTION));
+                            ObserverEvent failedEvent = ObserverEvent.onConnectFailed(device, CONNECT_FAIL_TYPE_MAXIMUM_RECONNECTION);
+                            eventDispatcher.post(observerEntry, failedEvent);
+                            easyBle.notifyObservers(failedEvent);
                             logE(Logger.TYPE_CONNECTION_STATE, "connect failed! [type: maximun reconnection, name: %s, addr: %s]",
                                     device.name, device.address);
                         }
@@ -460,9 +499,9 @@ class ConnectionImpl implements Connection, ScanListener {
                     clearRequestQueueAndNotify();
                     notifyDisconnected();
                 } else if (System.currentTimeMillis() - lastRemoteRssiReadTime > 1000) {
-                    BluetoothGatt gatt = bluetoothGatt;
-                    if (gatt != null) {
-                        gatt.readRemoteRssi();
+                    GattTransport t = transport;
+                    if (t != null) {
+                        t.readRemoteRssi();
                     }
                 }
             }
@@ -481,15 +520,12 @@ class ConnectionImpl implements Connection, ScanListener {
                 if (!autoConnect && connectFailed && configuration.useAutoConnectAfterConnectionFailure) {
                     autoConnect = true;
                 }
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                    bluetoothGatt = device.getOriginDevice().connectGatt(easyBle.getContext(), autoConnect, gattCallback,
-                            configuration.transport, configuration.phy);
-                } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                    bluetoothGatt = device.getOriginDevice().connectGatt(easyBle.getContext(), autoConnect, gattCallback,
-                            configuration.transport);
-                } else {
-                    bluetoothGatt = device.getOriginDevice().connectGatt(easyBle.getContext(), autoConnect, gattCallback);
+                GattTransport t = transportFactory.create(device, configuration, transportCallback);
+                packageSplitter.setReuseBuffer(t.isWriteValueCopied());
+                if (t instanceof AndroidGattTransport) {
+                    ((AndroidGattTransport) t).setOriginCallback(originCallback);
                 }
+                transport = t.connect(autoConnect) ? t : null;
             }
         }
     };
@@ -511,20 +547,22 @@ class ConnectionImpl implements Connection, ScanListener {
         clearRequestQueueAndNotify();
         connHandler.removeCallbacks(connectRunnable);
         connHandler.removeMessages(MSG_DISCOVER_SERVICES);
-        if (bluetoothGatt != null) {
-            closeGatt(bluetoothGatt);
-            bluetoothGatt = null;
+        if (transport != null) {
+            closeTransport(transport);
+            transport = null;
         }
         device.connectionState = ConnectionState.DISCONNECTED;
         if (bluetoothAdapter != null && bluetoothAdapter.isEnabled() && reconnect && !isReleased) {
-            if (reconnectImmediatelyCount < configuration.reconnectImmediatelyMaxTimes) {
-                tryReconnectCount++;
-                reconnectImmediatelyCount++;
-                connStartTime = System.currentTimeMillis();
-                doConnect();
-                return;
-            } else if (canScanReconnect()) {
-                tryScanReconnect();
+            applyReconnectConfiguration();
+            switch (reconnectPolicy.next(System.currentTimeMillis() - lastScanStopTime)) {
+                case ReconnectPolicy.ACTION_CONNECT:
+                    metrics.onReconnectAttempt();
+                    connStartTime = System.currentTimeMillis();
+                    doConnect();
+                    return;
+                case ReconnectPolicy.ACTION_SCAN:
+                    tryScanReconnect();
+                    break;
             }
         }
         sendConnectionCallback();
@@ -539,25 +577,25 @@ class ConnectionImpl implements Connection, ScanListener {
     private void doRefresh(boolean isAuto) {
         logD(Logger.TYPE_CONNECTION_STATE, "refresh GATT! [name: %s, addr: %s]", device.name, device.address);
         connStartTime = System.currentTimeMillis();
-        if (bluetoothGatt != null) {
+        if (transport != null) {
             try {
-                bluetoothGatt.disconnect();
+                transport.disconnect();
             } catch (Throwable ignore) {
             }
 
             if (isAuto) {
                 if (refreshCount <= 5) {
-                    refreshing = doRefresh();
+                    refreshing = transport.refresh();
                 }
                 refreshCount++;
             } else {
-                refreshing = doRefresh();
+                refreshing = transport.refresh();
             }
             if (refreshing) {
                 connHandler.postDelayed(this::cancelRefreshState, 2000);
-            } else if (bluetoothGatt != null) {
-                closeGatt(bluetoothGatt);
-                bluetoothGatt = null;
+            } else if (transport != null) {
+                closeTransport(transport);
+                transport = null;
             }
         }
         notifyDisconnected();
@@ -566,16 +604,16 @@ class ConnectionImpl implements Connection, ScanListener {
     private void cancelRefreshState() {
         if (refreshing) {
             refreshing = false;
-            if (bluetoothGatt != null) {
-                closeGatt(bluetoothGatt);
-                bluetoothGatt = null;
+            if (transport != null) {
+                closeTransport(transport);
+                transport = null;
             }
         }
     }
 
     private void tryScanReconnect() {
         if (!isReleased) {
-            tryReconnectCount++;
+            metrics.onReconnectAttempt();
             connStartTime = System.currentTimeMillis();
             easyBle.stopScan();
             //搜索设备，搜索到才执行连接
@@ -585,29 +623,31 @@ class ConnectionImpl implements Connection, ScanListener {
         }
     }
 
-    private boolean canScanReconnect() {
-        long duration = System.currentTimeMillis() - lastScanStopTime;
+    //连接配置可能随时修改，决定是否重连前同步到重连策略
+    private void applyReconnectConfiguration() {
+        reconnectPolicy.setMaxAttempts(configuration.tryReconnectMaxTimes);
+        reconnectPolicy.setImmediateMaxAttempts(configuration.reconnectImmediatelyMaxTimes);
         List<Pair<Integer, Integer>> parameters = configuration.scanIntervalPairsInAutoReconnection;
-        Collections.sort(parameters, (o1, o2) -> {
-            if (o1 == null || o1.first == null) return 1;
-            if (o2 == null || o2.first == null) return -1;
-            return o2.first.compareTo(o1.first);
-        });
+        int[] afterAttempts = new int[parameters.size()];
+        long[] intervals = new long[parameters.size()];
+        int count = 0;
         for (Pair<Integer, Integer> pair : parameters) {
-            if (pair.first != null && pair.second != null && tryReconnectCount >= pair.first && duration >= pair.second) {
-                return true;
+            if (pair != null && pair.first != null && pair.second != null) {
+                afterAttempts[count] = pair.first;
+                intervals[count] = pair.second;
+                count++;
             }
         }
-        return false;
+        reconnectPolicy.setScanIntervals(Arrays.copyOf(afterAttempts, count), Arrays.copyOf(intervals, count));
     }
 
-    private void closeGatt(BluetoothGatt gatt) {
+    private void closeTransport(GattTransport transport) {
         try {
-            gatt.disconnect();
+            transport.disconnect();
         } catch (Throwable ignore) {
         }
         try {
-            gatt.close();
+            transport.close();
         } catch (Throwable ignore) {
         }
     }
@@ -620,80 +660,74 @@ class ConnectionImpl implements Connection, ScanListener {
     private void sendConnectionCallback() {
         if (lastConnectionState != device.connectionState) {
             lastConnectionState = device.connectionState;
-            if (observer != null) {
-                posterDispatcher.post(observer, MethodInfoGenerator.onConnectionStateChanged(device));
-            }
-            observable.notifyObservers(MethodInfoGenerator.onConnectionStateChanged(device));
+            metrics.onStateChanged(device.connectionState);
+            ObserverEvent event = ObserverEvent.onConnectionStateChanged(device);
+            eventDispatcher.post(observerEntry, event);
+            easyBle.notifyObservers(event);
         }
     }
 
-    private boolean write(GenericRequest request, BluetoothGattCharacteristic characteristic, byte[] value) {
-        characteristic.setValue(value);
-        int writeType = request.writeOptions.writeType;
-        if ((writeType == BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE ||
-                writeType == BluetoothGattCharacteristic.WRITE_TYPE_SIGNED ||
-                writeType == BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT)) {
-            characteristic.setWriteType(writeType);
-        }
-        if (bluetoothGatt == null) {
+    /**
+     * 写入一包数据。协议栈忙时返回{@link #WRITE_BUSY}，由调用方稍后重试；其他失败的已回调请求失败，返回{@link #WRITE_FAILED}
+     */
+    private int write(GenericRequest request, byte[] value) {
+        if (transport == null) {
             handleFailedCallback(request, REQUEST_FAIL_TYPE_GATT_IS_NULL, true);
-            return false;
+            return WRITE_FAILED;
         }
-        if (!bluetoothGatt.writeCharacteristic(characteristic)) {
-            handleWriteFailed(request);
-            return false;
+        long start = SystemClock.elapsedRealtime();
+        int result = transport.writeCharacteristic(request.service, request.characteristic, value, request.writeOptions.writeType);
+        if (result == GattTransport.WRITE_SUCCESS) {
+            request.operationStartTime = start;
+            metrics.onBytesWritten(value.length);
+            return WRITE_SUCCESS;
+        } else if (result == GattTransport.WRITE_BUSY || (result == GattTransport.WRITE_REJECTED && isCreditWindowEnabled(request))) {
+            //无法区分是否忙时，流控模式下按忙处理
+            return WRITE_BUSY;
         }
-        return true;
+        handleWriteFailed(request);
+        return WRITE_FAILED;
+    }
+
+    //协议栈忙，稍后重试写入。不重置超时，一直忙时由请求超时结束
+    private void retryWriteLater(GenericRequest request) {
+        connHandler.sendMessageDelayed(Message.obtain(connHandler, MSG_WRITE_PACKAGE, request),
+                request.writeOptions.busyRetryDelayMillis);
+    }
+
+    private static boolean isCreditWindowEnabled(GenericRequest request) {
+        return request.type == RequestType.WRITE_CHARACTERISTIC && !request.writeOptions.isWaitWriteResult &&
+                request.writeOptions.creditWindow > 0;
     }
 
     private void handleWriteFailed(GenericRequest request) {
         connHandler.removeMessages(MSG_REQUEST_TIMEOUT);
-        request.remainQueue = null;
+        request.sendingBytes = null;
+        request.pendingPackages = 0;
         handleFailedCallback(request, REQUEST_FAIL_TYPE_REQUEST_FAILED, true);
     }
 
-    private boolean enableNotificationOrIndicationFail(boolean enable, boolean notification, BluetoothGattCharacteristic characteristic) {
-        if (!bluetoothAdapter.isEnabled() || bluetoothGatt == null || !bluetoothGatt
-                .setCharacteristicNotification(characteristic, enable)) {
-            return true;
-        }
-        BluetoothGattDescriptor descriptor = characteristic.getDescriptor(clientCharacteristicConfig);
-        if (descriptor == null) {
+    private boolean enableNotificationOrIndicationFail(boolean enable, boolean notification, GenericRequest request) {
+        if (!bluetoothAdapter.isEnabled() || transport == null ||
+                !transport.setCharacteristicNotification(request.service, request.characteristic, enable)) {
             return true;
         }
-        byte[] originValue = descriptor.getValue();
-        if (currentRequest != null) {
-            if (currentRequest.type == RequestType.SET_NOTIFICATION || currentRequest.type == RequestType.SET_INDICATION) {
-                currentRequest.descriptorTemp = originValue;
-            }
-        }
+        return !transport.writeDescriptor(request.service, request.characteristic, clientCharacteristicConfig,
+                getClientConfigValue(enable, notification));
+    }
+
+    private static byte[] getClientConfigValue(boolean enable, boolean notification) {
         if (enable) {
-            if (notification) {
-                descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
-            } else {
-                descriptor.setValue(BluetoothGattDescriptor.ENABLE_INDICATION_VALUE);
-            }
-        } else {
-            descriptor.setValue(BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE);
-        }
-        // There was a bug in Android up to 6.0 where the descriptor was written using parent
-        // characteristic's write type, instead of always Write With Response, as the spec says.
-        int writeType = characteristic.getWriteType();
-        characteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
-        boolean result = bluetoothGatt.writeDescriptor(descriptor);
-        if (!enable) {
-            //还原原始值
-            descriptor.setValue(originValue);
+            return notification ? BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE : BluetoothGattDescriptor.ENABLE_INDICATION_VALUE;
         }
-        characteristic.setWriteType(writeType);
-        return !result;
+        return BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE;
     }
 
     private static class ConnHandler extends Handler {
         private final WeakReference<ConnectionImpl> weakRef;
 
-        ConnHandler(ConnectionImpl connection) {
-            super(Looper.getMainLooper());
+        ConnHandler(ConnectionImpl connection, Looper looper) {
+            super(looper);
             weakRef = new WeakReference<>(connection);
         }
 
@@ -707,8 +741,13 @@ class ConnectionImpl implements Connection, ScanListener {
                 switch (msg.what) {
                     case MSG_REQUEST_TIMEOUT:
                         GenericRequest request = (GenericRequest) msg.obj;
-                        if (connection.currentRequest != null && connection.currentRequest == request) {
-                            connection.handleFailedCallback(request, REQUEST_FAIL_TYPE_REQUEST_TIMEOUT, false);
+                        GenericRequest current = connection.currentRequest;
+                        //批量请求超时时，当前步骤失败
+                        if (current != null && (current == request || connection.currentBatch == request)) {
+                            if (current == request) {
+                                connection.recordTimeout(current);
+                            }
+                            connection.handleFailedCallback(current, REQUEST_FAIL_TYPE_REQUEST_TIMEOUT, false);
                             connection.executeNextRequest();
                         }
                         break;
@@ -727,6 +766,13 @@ class ConnectionImpl implements Connection, ScanListener {
                     case MSG_TIMER://定时器
                         connection.doTimer();
                         break;
+                    case MSG_WRITE_PACKAGE://延时写入下一包，或流式写入的下一包已读取
+                        if (msg.arg1 == MSG_ARG_PACKAGE_READ) {
+                            connection.onStreamPackageRead((GenericRequest) msg.obj, msg.arg2);
+                        } else {
+                            connection.writeDelayedPackages((GenericRequest) msg.obj);
+                        }
+                        break;
                     case MSG_DISCOVER_SERVICES://执行发现服务
                     case MSG_ON_CONNECTION_STATE_CHANGE://连接状态变化
                     case MSG_ON_SERVICES_DISCOVERED://服务已发现
@@ -750,94 +796,260 @@ class ConnectionImpl implements Connection, ScanListener {
             handleFailedCallback(request, REQUEST_FAIL_TYPE_CONNECTION_RELEASED, false);
         } else {
             synchronized (this) {
+                if (configuration.isCoalesceReads && coalesceRead(request)) {
+                    return;
+                }
                 if (currentRequest == null) {
                     executeRequest(request);
                 } else {
                     //根据优化级将请求插入队列中
-                    int index = -1;
-                    for (int i = 0; i < requestQueue.size(); i++) {
-                        GenericRequest req = requestQueue.get(i);
-                        if (req.priority >= request.priority) {
-                            if (i < requestQueue.size() - 1) {
-                                if (requestQueue.get(i + 1).priority < request.priority) {
-                                    index = i + 1;
-                                    break;
-                                }
-                            } else {
-                                index = i + 1;
-                            }
-                        }
-                    }
-                    if (index == -1) {
-                        requestQueue.add(0, request);
-                    } else if (index >= requestQueue.size()) {
-                        requestQueue.add(request);
-                    } else {
-                        requestQueue.add(index, request);
+                    requestQueue.add(request);
+                    metrics.onQueueDepth(requestQueue.size());
+                }
+            }
+        }
+    }
+
+    /**
+     * 合并相同特征的读请求
+     *
+     * @return 是否已合并到其他请求
+     */
+    private boolean coalesceRead(GenericRequest request) {
+        switch (request.type) {
+            case READ_CHARACTERISTIC:
+                CharacteristicKey key = new CharacteristicKey(request.service, request.characteristic);
+                GenericRequest pending = pendingReads.get(key);
+                if (pending == null) {
+                    pendingReads.put(key, request);
+                    return false;
+                }
+                if (pending.coalescedReads == null) {
+                    pending.coalescedReads = new ArrayList<>();
+                }
+                pending.coalescedReads.add(request);
+                if (pending.isQueued() && request.queuePriority > pending.queuePriority) {
+                    //按合并的请求中最高的优先级排队
+                    pending.queuePriority = request.queuePriority;
+                    requestQueue.add(pending);
+                }
+                return true;
+            case WRITE_CHARACTERISTIC:
+            case WRITE_STREAM:
+                //写入后的读不能使用写入前的结果
+                pendingReads.remove(new CharacteristicKey(request.service, request.characteristic));
+                break;
+            case RELIABLE_WRITE:
+                for (ReliableWriteItem item : request.reliableWriteItems) {
+                    pendingReads.remove(new CharacteristicKey(item.service, item.characteristic));
+                }
+                break;
+            case BATCH:
+                for (GenericRequest step : request.batchSteps) {
+                    if (step.type == RequestType.WRITE_CHARACTERISTIC) {
+                        pendingReads.remove(new CharacteristicKey(step.service, step.characteristic));
                     }
                 }
+                break;
+        }
+        return false;
+    }
+
+    /**
+     * 读请求结束，取出合并到此请求的其他请求
+     */
+    @Nullable
+    private List<GenericRequest> takeCoalescedReads(GenericRequest request) {
+        if (request.type != RequestType.READ_CHARACTERISTIC) {
+            return null;
+        }
+        synchronized (this) {
+            CharacteristicKey key = new CharacteristicKey(request.service, request.characteristic);
+            if (pendingReads.get(key) == request) {
+                pendingReads.remove(key);
             }
+            List<GenericRequest> list = request.coalescedReads;
+            request.coalescedReads = null;
+            return list;
         }
     }
 
     private void executeNextRequest() {
         synchronized (this) {
+            connHandler.removeMessages(MSG_WRITE_PACKAGE);
+            if (currentBatch != null && executeNextBatchStep()) {
+                return;
+            }
             connHandler.removeMessages(MSG_REQUEST_TIMEOUT);
-            if (requestQueue.isEmpty()) {
+            GenericRequest request = requestQueue.poll();
+            if (request == null) {
                 currentRequest = null;
             } else {
-                executeRequest(requestQueue.remove(0));
+                executeRequest(request);
+            }
+        }
+    }
+
+    //一包写入完成，重新开始请求超时计时。批量请求中的步骤不单独计时
+    private void restartRequestTimeout(GenericRequest request) {
+        recordLatency(request);
+        if (request.batch == null) {
+            connHandler.removeMessages(MSG_REQUEST_TIMEOUT);
+            request.armedTimeoutMillis = getRequestTimeout(request);
+            connHandler.sendMessageDelayed(Message.obtain(connHandler, MSG_REQUEST_TIMEOUT, request),
+                    request.armedTimeoutMillis);
+        }
+    }
+
+    /**
+     * 获取请求的超时时长。优先使用请求设置的值，开启自适应超时并且样本足够时根据耗时计算，否则使用连接配置的值
+     */
+    private int getRequestTimeout(GenericRequest request) {
+        if (request.timeoutMillis > 0) {
+            return request.timeoutMillis;
+        }
+        if (configuration.isAdaptiveRequestTimeout) {
+            long timeout = latencyHistograms[request.type.ordinal()].adaptiveTimeout(MIN_LATENCY_SAMPLES,
+                    configuration.adaptiveTimeoutMultiplier, configuration.minAdaptiveTimeoutMillis,
+                    configuration.maxAdaptiveTimeoutMillis);
+            if (timeout >= 0) {
+                return (int) timeout;
+            }
+        }
+        return configuration.requestTimeoutMillis;
+    }
+
+    //不等待写入结果的没有经过GATT回调，不计入耗时统计
+    private boolean isLatencyTracked(GenericRequest request) {
+        return request.type != RequestType.WRITE_CHARACTERISTIC || request.writeOptions.isWaitWriteResult ||
+                isCreditWindowEnabled(request);
+    }
+
+    //一次GATT操作完成，记录从调用到回调的耗时。写入的包在调用时重新开始计时，不含包间隔和等待额度的时间
+    private void recordLatency(GenericRequest request) {
+        if (!isLatencyTracked(request)) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        latencyHistograms[request.type.ordinal()].record(now - request.operationStartTime);
+        request.operationStartTime = now;
+    }
+
+    //超时的操作实际耗时不小于超时时长，按超时时长计入。只统计成功的会让链路变差时的超时越算越短
+    private void recordTimeout(GenericRequest request) {
+        if (request.armedTimeoutMillis > 0 && isLatencyTracked(request)) {
+            latencyHistograms[request.type.ordinal()].record(request.armedTimeoutMillis);
+        }
+    }
+
+    private void executeBatch(GenericRequest batch) {
+        currentBatch = batch;
+        batch.batchIndex = 0;
+        batch.batchResult = new BatchResult(batch.batchSteps);
+        int timeout = batch.timeoutMillis;
+        if (timeout <= 0) {
+            for (GenericRequest step : batch.batchSteps) {
+                timeout += getRequestTimeout(step);
             }
         }
+        connHandler.sendMessageDelayed(Message.obtain(connHandler, MSG_REQUEST_TIMEOUT, batch), timeout);
+        executeRequest(batch.batchSteps.get(0));
+    }
+
+    /**
+     * 执行批量请求的下一步，已是最后一步则回调结果
+     *
+     * @return 是否还有下一步
+     */
+    private boolean executeNextBatchStep() {
+        GenericRequest batch = currentBatch;
+        if (batch.batchIndex + 1 >= batch.batchSteps.size()) {
+            //全部步骤已执行完成，不再算作取消
+            currentBatch = null;
+            notifyBatchCompleted(batch);
+            return false;
+        }
+        if (batch.cancelled) {
+            //未执行的下一步记为失败的步骤
+            currentBatch = null;
+            batch.batchResult.failedIndex = batch.batchIndex + 1;
+            notifyBatchFailed(batch, REQUEST_FAIL_TYPE_REQUEST_CANCELLED, -1);
+            return false;
+        }
+        batch.batchIndex++;
+        executeRequest(batch.batchSteps.get(batch.batchIndex));
+        return true;
+    }
+
+    /**
+     * 批量请求中的一步执行成功，记录结果
+     *
+     * @return 是否为批量请求中的步骤
+     */
+    private boolean onBatchStepCompleted(GenericRequest request, Object value) {
+        GenericRequest batch = request.batch;
+        if (batch == null) {
+            return false;
+        }
+        if (batch == currentBatch) {
+            batch.batchResult.set(batch.batchIndex, value);
+        }
+        return true;
     }
 
     private void executeRequest(GenericRequest request) {
+        if (request.type == RequestType.BATCH) {
+            executeBatch(request);
+            return;
+        }
         currentRequest = request;
-        connHandler.sendMessageDelayed(Message.obtain(connHandler, MSG_REQUEST_TIMEOUT, request), configuration.requestTimeoutMillis);
+        request.operationStartTime = SystemClock.elapsedRealtime();
+        if (request.batch == null) {
+            request.armedTimeoutMillis = getRequestTimeout(request);
+            connHandler.sendMessageDelayed(Message.obtain(connHandler, MSG_REQUEST_TIMEOUT, request), request.armedTimeoutMillis);
+        }
         if (bluetoothAdapter.isEnabled()) {
-            if (bluetoothGatt != null) {
+            if (transport != null) {
                 switch (request.type) {
                     case READ_RSSI:
-                        if (!bluetoothGatt.readRemoteRssi()) {
+                        if (!transport.readRemoteRssi()) {
                             handleFailedCallback(request, REQUEST_FAIL_TYPE_REQUEST_FAILED, true);
                         }
                         break;
                     case CHANGE_MTU:
-                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                            if (!bluetoothGatt.requestMtu((int) request.value)) {
-                                handleFailedCallback(request, REQUEST_FAIL_TYPE_REQUEST_FAILED, true);
-                            }
+                        if (!transport.requestMtu((int) request.value)) {
+                            handleFailedCallback(request, REQUEST_FAIL_TYPE_REQUEST_FAILED, true);
                         }
                         break;
                     case READ_PHY:
-                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                            bluetoothGatt.readPhy();
-                        }
+                        transport.readPhy();
                         break;
                     case SET_PREFERRED_PHY:
-                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                            int[] options = (int[]) request.value;
-                            bluetoothGatt.setPreferredPhy(options[0], options[1], options[2]);
-                        }
+                        int[] options = (int[]) request.value;
+                        transport.setPreferredPhy(options[0], options[1], options[2]);
+                        break;
+                    case RELIABLE_WRITE:
+                        executeReliableWrite(request);
                         break;
                     default:
-                        BluetoothGattService gattService = bluetoothGatt.getService(request.service);
-                        if (gattService != null) {
-                            BluetoothGattCharacteristic characteristic = gattService.getCharacteristic(request.characteristic);
-                            if (characteristic != null) {
+                        if (transport.hasService(request.service)) {
+                            if (transport.hasCharacteristic(request.service, request.characteristic)) {
                                 switch (request.type) {
                                     case SET_NOTIFICATION:
                                     case SET_INDICATION:
-                                        executeIndicationOrNotification(request, characteristic);
+                                        executeIndicationOrNotification(request);
                                         break;
                                     case READ_CHARACTERISTIC:
-                                        executeReadCharacteristic(request, characteristic);
+                                        executeReadCharacteristic(request);
                                         break;
                                     case READ_DESCRIPTOR:
-                                        executeReadDescriptor(request, characteristic);
+                                        executeReadDescriptor(request);
                                         break;
                                     case WRITE_CHARACTERISTIC:
-                                        executeWriteCharacteristic(request, characteristic);
+                                        executeWriteCharacteristic(request);
+                                        break;
+                                    case WRITE_STREAM:
+                                        executeWriteStream(request);
                                         break;
                                 }
                             } else {
@@ -856,10 +1068,16 @@ class ConnectionImpl implements Connection, ScanListener {
         }
     }
 
-    private void printWriteLog(GenericRequest request, int progress, int total, byte[] value) {
-        if (logger.isEnabled()) {
+    //打印刚交给协议栈的一包，数据从完整数据中取，分包的缓冲区此时可能已被下一包覆盖
+    private void printWriteLog(GenericRequest request, int packageLength) {
+        if (isLogEnabled(Logger.TYPE_CHARACTERISTIC_WRITE)) {
+            byte[] data = (byte[]) request.value;//完整包数据
+            byte[] value = Arrays.copyOfRange(data, request.writeOffset - packageLength, request.writeOffset);
+            int packageSize = request.writeOptions.packageSize;
+            int total = data.length / packageSize + (data.length % packageSize == 0 ? 0 : 1);
             String t = String.valueOf(total);
-            StringBuilder sb = new StringBuilder(String.valueOf(progress));
+            //根据已写入位置计算当前是第几包
+            StringBuilder sb = new StringBuilder(String.valueOf((request.writeOffset + packageSize - 1) / packageSize));
             while (sb.length() < t.length()) {
                 sb.insert(0, "0");
             }
@@ -868,143 +1086,635 @@ class ConnectionImpl implements Connection, ScanListener {
         }
     }
 
-    private void executeWriteCharacteristic(GenericRequest request, BluetoothGattCharacteristic characteristic) {
+    private void executeWriteCharacteristic(GenericRequest request) {
         try {
             byte[] value = (byte[]) request.value;
             WriteOptions options = request.writeOptions;
-            int reqDelay = options.requestWriteDelayMillis > 0 ? options.requestWriteDelayMillis : options.packageWriteDelayMillis;
-            if (reqDelay > 0) {
-                try {
-                    Thread.sleep(reqDelay);
-                } catch (InterruptedException ignore) {
-                }
-                if (request != currentRequest) {
-                    return;
-                }
-            }
             if (options.useMtuAsPackageSize) {
                 options.packageSize = mtu - 3;
             }
-            if (value.length > options.packageSize) {
-                List<byte[]> list = MathUtils.splitPackage(value, options.packageSize);
-                if (!options.isWaitWriteResult) { //不等待写入回调，直接写入下一包数据
-                    int delay = options.packageWriteDelayMillis;
-                    for (int i = 0; i < list.size(); i++) {
-                        byte[] bytes = list.get(i);
-                        if (i > 0 && delay > 0) {
-                            try {
-                                Thread.sleep(delay);
-                            } catch (InterruptedException ignore) {
-                            }
-                            if (request != currentRequest) {
-                                return;
-                            }
-                        }
-                        if (!write(request, characteristic, bytes)) {
-                            return;
-                        } else {
-                            printWriteLog(request, i + 1, list.size(), bytes);
-                        }
-                    }
-                    printWriteLog(request, list.size(), list.size(), list.get(list.size() - 1));
-                } else { //发送第一包，剩下的加入队列
-                    request.remainQueue = new ConcurrentLinkedQueue<>();
-                    request.remainQueue.addAll(list);
-                    request.sendingBytes = request.remainQueue.remove();
-                    write(request, characteristic, request.sendingBytes);
-                }
+            request.writeOffset = 0;
+            request.sendingBytes = null;
+            request.writeBusy = false;
+            request.pendingPackages = 0;
+            request.creditSentPackages = 0;
+            if (isCreditWindowEnabled(request) && (request.creditSendTimes == null ||
+                    request.creditSendTimes.length != options.creditWindow)) {
+                request.creditSendTimes = new long[options.creditWindow];
+            }
+            int reqDelay = options.requestWriteDelayMillis > 0 ? options.requestWriteDelayMillis : options.packageWriteDelayMillis;
+            if (reqDelay > 0) {
+                //延时后写入，不阻塞当前线程
+                connHandler.sendMessageDelayed(Message.obtain(connHandler, MSG_WRITE_PACKAGE, request), reqDelay);
             } else {
-                request.sendingBytes = value;
-                if (write(request, characteristic, value)) {
-                    if (!options.isWaitWriteResult) {
-                        notifyCharacteristicWrite(request, value);
-                        printWriteLog(request, 1, 1, value);
-                        executeNextRequest();
-                    }
-                }
+                writePackages(request);
             }
         } catch (Throwable e) {
             handleWriteFailed(request);
         }
     }
 
-    private void executeReadDescriptor(GenericRequest request, BluetoothGattCharacteristic characteristic) {
-        BluetoothGattDescriptor gattDescriptor = characteristic.getDescriptor(request.descriptor);
-        if (gattDescriptor != null) {
-            if (!bluetoothGatt.readDescriptor(gattDescriptor)) {
-                handleFailedCallback(request, REQUEST_FAIL_TYPE_REQUEST_FAILED, true);
-            }
+    //延时后继续写入
+    private void writeDelayedPackages(GenericRequest request) {
+        if (request != currentRequest) {
+            return;
+        }
+        if (transport == null || !transport.hasCharacteristic(request.service, request.characteristic)) {
+            handleFailedCallback(request, REQUEST_FAIL_TYPE_CHARACTERISTIC_NOT_EXIST, true);
+        } else if (request.type == RequestType.WRITE_STREAM) {
+            writeStreamPackage(request);
         } else {
-            handleFailedCallback(request, REQUEST_FAIL_TYPE_DESCRIPTOR_NOT_EXIST, true);
+            writePackages(request);
         }
     }
 
-    private void executeReadCharacteristic(GenericRequest request, BluetoothGattCharacteristic characteristic) {
-        if (!bluetoothGatt.readCharacteristic(characteristic)) {
-            handleFailedCallback(request, REQUEST_FAIL_TYPE_REQUEST_FAILED, true);
+    /**
+     * 写入剩余的包。等待写入结果的，每次只写一包，在写入回调里继续；不等待的，连续写入，
+     * 设置了包间隔的，通过Handler延时后继续，不阻塞线程。请求被取消或已结束时停止写入
+     */
+    private void writePackages(GenericRequest request) {
+        if (isCreditWindowEnabled(request)) {
+            writeCreditPackages(request);
+            return;
+        }
+        byte[] data = (byte[]) request.value;
+        //空数据也要写一次
+        while (request == currentRequest && !request.cancelled && (request.writeOffset < data.length || request.sendingBytes == null)) {
+            byte[] previous = request.sendingBytes;
+            request.sendingBytes = packageSplitter.next(data, request.writeOffset, request.writeOptions.packageSize);
+            request.writeOffset += request.sendingBytes.length;
+            int result = write(request, request.sendingBytes);
+            if (result == WRITE_BUSY) {
+                //退回位置，重试时重新取这一包
+                request.writeOffset -= request.sendingBytes.length;
+                request.sendingBytes = previous;
+                retryWriteLater(request);
+                return;
+            } else if (result != WRITE_SUCCESS) {
+                return;
+            }
+            if (request.writeOptions.isWaitWriteResult) {
+                return;
+            }
+            printWriteLog(request, request.sendingBytes.length);
+            if (request.writeOffset >= data.length || request.writeOptions.packageWriteDelayMillis > 0) {
+                onPackageWritten(request);
+                return;
+            }
         }
     }
 
-    private void executeIndicationOrNotification(GenericRequest request, BluetoothGattCharacteristic characteristic) {
-        if (enableNotificationOrIndicationFail(((int) request.value) == 1,
-                request.type == RequestType.SET_NOTIFICATION, characteristic)) {
-            handleGattStatusFailed(-1);
+    //一包数据写入完成，全部写完则回调结果，否则继续写下一包
+    private void onPackageWritten(GenericRequest request) {
+        if (request.writeOffset >= ((byte[]) request.value).length) {
+            request.sendingBytes = null;
+            notifyCharacteristicWrite(request, (byte[]) request.value);
             executeNextRequest();
+        } else {
+            restartRequestTimeout(request);
+            int delay = request.writeOptions.packageWriteDelayMillis;
+            if (delay > 0) {
+                connHandler.sendMessageDelayed(Message.obtain(connHandler, MSG_WRITE_PACKAGE, request), delay);
+            } else {
+                writePackages(request);
+            }
         }
     }
-    
-    private void handlePhyChange(boolean read, int txPhy, int rxPhy, int status) {
-        if (currentRequest != null) {
-            if ((read && currentRequest.type == RequestType.READ_PHY) || ((!read && currentRequest.type == RequestType.SET_PREFERRED_PHY))) {
-                if (status == BluetoothGatt.GATT_SUCCESS) {
-                    notifyPhyChange(currentRequest, txPhy, rxPhy);
-                } else {
-                    handleGattStatusFailed(status);
+
+    /**
+     * 流控写入。已写入未回调的包数小于窗口时连续写入，额度用完或者协议栈忙时停下，
+     * 收到写入回调归还额度后继续，全部写入并且都收到回调后才算完成
+     */
+    private void writeCreditPackages(GenericRequest request) {
+        synchronized (this) {
+            byte[] data = (byte[]) request.value;
+            int window = request.writeOptions.creditWindow;
+            int packageSize = request.writeOptions.packageSize;
+            while (request == currentRequest && !request.cancelled && request.pendingPackages < window &&
+                    (request.writeOffset < data.length || request.sendingBytes == null)) {
+                byte[] value = packageSplitter.next(data, request.writeOffset, packageSize);
+                request.pendingPackages++;
+                int result = write(request, value);
+                if (result == WRITE_BUSY) {
+                    request.pendingPackages--;
+                    retryWriteLater(request);
+                    return;
+                } else if (result != WRITE_SUCCESS) {
+                    return;
                 }
-                executeNextRequest();
+                request.sendingBytes = value;
+                request.writeOffset += value.length;
+                request.creditSendTimes[request.creditSentPackages++ % window] = request.operationStartTime;
+                printWriteLog(request, value.length);
             }
         }
     }
 
-    private void handleGattStatusFailed(int status) {
-        if (currentRequest != null) {
-            connHandler.removeMessages(MSG_REQUEST_TIMEOUT);//移除超时检测
-            handleFailedCallback(currentRequest, REQUEST_FAIL_TYPE_GATT_STATUS_FAILED, status, false);
+    //流控模式收到写入回调，归还额度
+    private void onCreditReturned(GenericRequest request) {
+        synchronized (this) {
+            if (request != currentRequest || request.pendingPackages <= 0) {
+                return;
+            }
+            //回调的是最早写入的包，从它交给协议栈时计时
+            request.operationStartTime = request.creditSendTimes[(request.creditSentPackages - request.pendingPackages) %
+                    request.creditSendTimes.length];
+            request.pendingPackages--;
+            if (request.cancelled) {
+                //已写入的包都回调后再结束，避免回调被当作下一个请求的
+                if (request.pendingPackages == 0) {
+                    finishCancelledWrite(request);
+                }
+            } else if (request.pendingPackages == 0 && request.writeOffset >= ((byte[]) request.value).length) {
+                request.sendingBytes = null;
+                notifyCharacteristicWrite(request, (byte[]) request.value);
+                executeNextRequest();
+            } else {
+                restartRequestTimeout(request);
+                //等待忙重试的不在这里写，避免重复
+                if (!connHandler.hasMessages(MSG_WRITE_PACKAGE, request)) {
+                    writeCreditPackages(request);
+                }
+            }
         }
     }
 
-    private void handleFailedCallback(GenericRequest request, int failType, int status, boolean executeNext) {
-        notifyRequestFailed(request, failType, status);
-        if (executeNext) {
-            executeNextRequest();
+    /**
+     * 取消请求
+     *
+     * @return 是否取消成功
+     */
+    boolean cancel(GenericRequest request) {
+        synchronized (this) {
+            if (request.cancelled) {
+                return false;
+            }
+            if (requestQueue.remove(request)) {
+                request.cancelled = true;
+                promoteCoalescedRead(request);
+                notifyRequestFailed(request, REQUEST_FAIL_TYPE_REQUEST_CANCELLED, -1);
+                return true;
+            }
+            if (request == currentBatch) {
+                if (request.batchIndex + 1 >= request.batchSteps.size()) {
+                    return false;//最后一步已在执行，没有可以停止的步骤
+                }
+                //当前步骤完成后停止
+                request.cancelled = true;
+                return true;
+            }
+            if (request == currentRequest && request.batch == null) {
+                return cancelRunningWrite(request);
+            }
+            return cancelCoalescedRead(request);
         }
     }
-    
-    private void handleFailedCallback(GenericRequest request, int failType, boolean executeNext) {
-        handleFailedCallback(request, failType, -1, executeNext);
-    }
 
-    private String toHex(byte[] bytes) {
-        return StringUtils.toHex(bytes);
+    //正在执行的分包写入和流式写入在包与包之间停止，有包在等待写入回调的，等回调后再结束。
+    //没有未交给协议栈的包时，数据已全部发出，不能取消
+    private boolean cancelRunningWrite(GenericRequest request) {
+        if (!hasUnsentPackage(request)) {
+            return false;
+        }
+        boolean waitingCallback;
+        if (request.type == RequestType.WRITE_STREAM) {
+            //正在读取的，等读取完成后结束
+            waitingCallback = request.streamReading || !connHandler.hasMessages(MSG_WRITE_PACKAGE, request);
+        } else if (request.type == RequestType.WRITE_CHARACTERISTIC) {
+            if (isCreditWindowEnabled(request)) {
+                waitingCallback = request.pendingPackages > 0;
+            } else {
+                waitingCallback = request.writeOptions.isWaitWriteResult && !connHandler.hasMessages(MSG_WRITE_PACKAGE, request);
+            }
+        } else {
+            return false;
+        }
+        request.cancelled = true;
+        if (!waitingCallback) {
+            //在连接线程结束，写入循环在检查到取消后停止
+            connHandler.post(() -> finishCancelledWrite(request));
+        }
+        return true;
+    }
+
+    //是否还有包未交给协议栈，因协议栈忙等待重写的包也算
+    private boolean hasUnsentPackage(GenericRequest request) {
+        if (request.writeBusy) {
+            return true;
+        }
+        if (request.type == RequestType.WRITE_STREAM) {
+            if (request.streamTotalLength < 0) {
+                return true;//长度未知，读到结尾前无法判断
+            }
+            long handedOver = request.streamSentBytes;
+            if (request.sendingBytes != null && !request.streamReading && !connHandler.hasMessages(MSG_WRITE_PACKAGE, request)) {
+                handedOver += request.sendingBytes.length;//正在等待回调的包
+            }
+            return handedOver < request.streamTotalLength;
+        }
+        if (request.type == RequestType.WRITE_CHARACTERISTIC) {
+            //空数据在写入前sendingBytes为null
+            return request.writeOffset < ((byte[]) request.value).length || request.sendingBytes == null;
+        }
+        return false;
+    }
+
+    private void finishCancelledWrite(GenericRequest request) {
+        if (request != currentRequest) {
+            return;
+        }
+        connHandler.removeMessages(MSG_WRITE_PACKAGE);
+        request.sendingBytes = null;
+        request.pendingPackages = 0;
+        logD(Logger.TYPE_CHARACTERISTIC_WRITE, "write cancelled! [UUID: %s, addr: %s, written: %d]",
+                substringUuid(request.characteristic), device.address,
+                request.type == RequestType.WRITE_STREAM ? request.streamSentBytes : request.writeOffset);
+        handleFailedCallback(request, REQUEST_FAIL_TYPE_REQUEST_CANCELLED, true);
+    }
+
+    //排队中的读请求被取消时，由合并到它的第一个请求接替排队，合并的请求不随之失败
+    private void promoteCoalescedRead(GenericRequest request) {
+        List<GenericRequest> coalescedReads = request.coalescedReads;
+        if (request.type != RequestType.READ_CHARACTERISTIC || coalescedReads == null || coalescedReads.isEmpty()) {
+            return;
+        }
+        request.coalescedReads = null;
+        GenericRequest successor = coalescedReads.remove(0);
+        successor.coalescedReads = coalescedReads.isEmpty() ? null : coalescedReads;
+        //按剩下的合并请求中最高的优先级排队
+        successor.queuePriority = successor.priority;
+        for (GenericRequest read : coalescedReads) {
+            successor.queuePriority = Math.max(successor.queuePriority, read.priority);
+        }
+        CharacteristicKey key = new CharacteristicKey(request.service, request.characteristic);
+        if (pendingReads.get(key) == request) {
+            pendingReads.put(key, successor);
+        }
+        requestQueue.add(successor);
+    }
+
+    //取消合并到其他读请求的读请求
+    private boolean cancelCoalescedRead(GenericRequest request) {
+        if (request.type != RequestType.READ_CHARACTERISTIC) {
+            return false;
+        }
+        GenericRequest pending = pendingReads.get(new CharacteristicKey(request.service, request.characteristic));
+        if (pending != null && pending.coalescedReads != null && pending.coalescedReads.remove(request)) {
+            request.cancelled = true;
+            notifyRequestFailed(request, REQUEST_FAIL_TYPE_REQUEST_CANCELLED, -1);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int cancelByTag(@NonNull String tag) {
+        synchronized (this) {
+            int count = 0;
+            //先取消合并的读请求，排队的请求被取消时接替它的就不会是同一标识的
+            if (!pendingReads.isEmpty()) {
+                for (GenericRequest pending : new ArrayList<>(pendingReads.values())) {
+                    if (pending.coalescedReads != null) {
+                        for (GenericRequest request : new ArrayList<>(pending.coalescedReads)) {
+                            if (tag.equals(request.getTag()) && cancelCoalescedRead(request)) {
+                                count++;
+                            }
+                        }
+                    }
+                }
+            }
+            for (GenericRequest request : requestQueue.removeByTag(tag)) {
+                request.cancelled = true;
+                promoteCoalescedRead(request);
+                notifyRequestFailed(request, REQUEST_FAIL_TYPE_REQUEST_CANCELLED, -1);
+                count++;
+            }
+            if (currentBatch != null) {
+                if (tag.equals(currentBatch.getTag()) && cancel(currentBatch)) {
+                    count++;
+                }
+            } else if (currentRequest != null && tag.equals(currentRequest.getTag()) && cancel(currentRequest)) {
+                count++;
+            }
+            return count;
+        }
+    }
+
+    private void executeReliableWrite(GenericRequest request) {
+        request.reliableWriteIndex = 0;
+        if (!transport.beginReliableWrite()) {
+            handleFailedCallback(request, REQUEST_FAIL_TYPE_REQUEST_FAILED, true);
+            return;
+        }
+        request.reliableWriteBegun = true;
+        writeReliableItem(request);
+    }
+
+    //写入可靠写入事务中的当前项，设备回传写入的值且协议栈校验通过后在写入回调里继续下一项
+    private void writeReliableItem(GenericRequest request) {
+        ReliableWriteItem item = request.reliableWriteItems.get(request.reliableWriteIndex);
+        if (transport == null || !transport.hasCharacteristic(item.service, item.characteristic)) {
+            handleFailedCallback(request, REQUEST_FAIL_TYPE_CHARACTERISTIC_NOT_EXIST, true);
+            return;
+        }
+        //每项写入后还原特征原来的写入类型，不影响事务外的写入
+        int result = transport.writeReliableCharacteristic(item.service, item.characteristic, item.value);
+        if (result == GattTransport.WRITE_SUCCESS) {
+            metrics.onBytesWritten(item.value.length);
+        } else {
+            handleFailedCallback(request, REQUEST_FAIL_TYPE_REQUEST_FAILED, true);
+        }
+    }
+
+    //设备回传的值由协议栈与写入的比较，不一致时回调失败状态。回调里取不到回传的值，低版本取到的是特征缓存的值，不再比较
+    private void onReliableItemWritten(GenericRequest request, int status) {
+        if (status != BluetoothGatt.GATT_SUCCESS) {
+            handleFailedCallback(request, REQUEST_FAIL_TYPE_GATT_STATUS_FAILED, status, true);
+            return;
+        }
+        ReliableWriteItem item = request.reliableWriteItems.get(request.reliableWriteIndex);
+        if (isLogEnabled(Logger.TYPE_CHARACTERISTIC_WRITE)) {
+            logD(Logger.TYPE_CHARACTERISTIC_WRITE, "reliable write [%d/%d] prepared! [UUID: %s, addr: %s, value: %s]",
+                    request.reliableWriteIndex + 1, request.reliableWriteItems.size(), substringUuid(item.characteristic),
+                    device.address, toHex(item.value));
+        }
+        request.reliableWriteIndex++;
+        if (request.reliableWriteIndex < request.reliableWriteItems.size()) {
+            writeReliableItem(request);
+        } else if (transport == null || !transport.executeReliableWrite()) {
+            handleFailedCallback(request, REQUEST_FAIL_TYPE_REQUEST_FAILED, true);
+        }
+    }
+
+    //取消未提交的可靠写入
+    private void abortReliableWrite(GenericRequest request) {
+        if (request.reliableWriteBegun) {
+            request.reliableWriteBegun = false;
+            if (transport != null) {
+                transport.abortReliableWrite();
+            }
+        }
+    }
+
+    private void executeWriteStream(GenericRequest request) {
+        WriteOptions options = request.writeOptions;
+        if (options.useMtuAsPackageSize) {
+            options.packageSize = mtu - 3;
+        }
+        request.streamSentBytes = 0;
+        request.writeBusy = false;
+        request.streamReading = false;
+        request.streamStartTime = System.currentTimeMillis();
+        request.lastProgressTime = request.streamStartTime;
+        int reqDelay = options.requestWriteDelayMillis > 0 ? options.requestWriteDelayMillis : options.packageWriteDelayMillis;
+        connHandler.sendMessageDelayed(Message.obtain(connHandler, MSG_WRITE_PACKAGE, request), Math.max(reqDelay, 0));
+    }
+
+    /**
+     * 从数据源读取一包写入，在写入回调后才读取下一包，数据源读取速度受写入速度限制。
+     * 读取可能阻塞，在线程池读取，读完后回到连接线程写入，不阻塞连接线程的回调和超时
+     */
+    private void writeStreamPackage(GenericRequest request) {
+        if (request != currentRequest || request.streamSource == null || request.cancelled || request.streamReading) {
+            return;
+        }
+        if (request.writeBusy) {
+            //上一包因协议栈忙未写入，重写这一包
+            writeStreamSendingBytes(request);
+            return;
+        }
+        int packageSize = request.writeOptions.packageSize;
+        byte[] buffer = request.streamBuffer;
+        //缓冲区只属于这个请求，请求提前结束时读取线程写入也不影响其他请求
+        if (buffer == null || buffer.length != packageSize || !transport.isWriteValueCopied()) {
+            buffer = new byte[packageSize];
+            request.streamBuffer = buffer;
+        }
+        StreamSource source = request.streamSource;
+        byte[] dst = buffer;
+        request.streamReading = true;
+        easyBle.getExecutorService().execute(() -> {
+            int len;
+            try {
+                len = source.read(dst);
+            } catch (Throwable e) {
+                request.streamReadError = e;
+                len = -1;
+            }
+            Message.obtain(connHandler, MSG_WRITE_PACKAGE, MSG_ARG_PACKAGE_READ, len, request).sendToTarget();
+        });
+    }
+
+    //后台读取完一包，在连接线程写入
+    private void onStreamPackageRead(GenericRequest request, int len) {
+        request.streamReading = false;
+        Throwable error = request.streamReadError;
+        request.streamReadError = null;
+        if (request != currentRequest || request.streamSource == null) {
+            return;
+        }
+        if (request.cancelled) {
+            finishCancelledWrite(request);
+            return;
+        }
+        if (error != null) {
+            logger.log(Log.ERROR, Logger.TYPE_CHARACTERISTIC_WRITE, "stream read failed!", error);
+            handleWriteFailed(request);
+            return;
+        }
+        if (len == -1) {
+            notifyStreamWriteComplete(request);
+            executeNextRequest();
+            return;
+        }
+        if (transport == null || !transport.hasCharacteristic(request.service, request.characteristic)) {
+            handleFailedCallback(request, REQUEST_FAIL_TYPE_CHARACTERISTIC_NOT_EXIST, true);
+            return;
+        }
+        byte[] buffer = request.streamBuffer;
+        //最后一包不满时使用实际长度
+        request.sendingBytes = len == buffer.length ? buffer : Arrays.copyOf(buffer, len);
+        writeStreamSendingBytes(request);
+    }
+
+    private void writeStreamSendingBytes(GenericRequest request) {
+        request.writeBusy = write(request, request.sendingBytes) == WRITE_BUSY;
+        if (request.writeBusy) {
+            retryWriteLater(request);
+        }
+    }
+
+    private void onStreamPackageWritten(GenericRequest request) {
+        request.streamSentBytes += request.sendingBytes.length;
+        if (isLogEnabled(Logger.TYPE_CHARACTERISTIC_WRITE)) {
+            logD(Logger.TYPE_CHARACTERISTIC_WRITE, "stream package write success! [sent: %d, UUID: %s, addr: %s, value: %s]",
+                    request.streamSentBytes, substringUuid(request.characteristic), device.address, toHex(request.sendingBytes));
+        }
+        long now = System.currentTimeMillis();
+        if (now - request.lastProgressTime >= request.progressIntervalMillis) {
+            request.lastProgressTime = now;
+            notifyStreamWriteProgress(request, now);
+        }
+        restartRequestTimeout(request);
+        //写入回调在Binder线程，回到连接线程后在线程池读取下一包
+        int delay = request.writeOptions.packageWriteDelayMillis;
+        connHandler.sendMessageDelayed(Message.obtain(connHandler, MSG_WRITE_PACKAGE, request), Math.max(delay, 0));
+    }
+
+    //关闭流式写入的数据源
+    private void closeStream(GenericRequest request) {
+        StreamSource source = request.streamSource;
+        if (source != null) {
+            request.streamSource = null;
+            source.close();
+        }
+    }
+
+    private void executeReadDescriptor(GenericRequest request) {
+        if (transport.hasDescriptor(request.service, request.characteristic, request.descriptor)) {
+            if (!transport.readDescriptor(request.service, request.characteristic, request.descriptor)) {
+                handleFailedCallback(request, REQUEST_FAIL_TYPE_REQUEST_FAILED, true);
+            }
+        } else {
+            handleFailedCallback(request, REQUEST_FAIL_TYPE_DESCRIPTOR_NOT_EXIST, true);
+        }
+    }
+
+    private void executeReadCharacteristic(GenericRequest request) {
+        if (!transport.readCharacteristic(request.service, request.characteristic)) {
+            handleFailedCallback(request, REQUEST_FAIL_TYPE_REQUEST_FAILED, true);
+        }
+    }
+
+    private void executeIndicationOrNotification(GenericRequest request) {
+        if (enableNotificationOrIndicationFail(((int) request.value) == 1,
+                request.type == RequestType.SET_NOTIFICATION, request)) {
+            handleGattStatusFailed(-1);
+            executeNextRequest();
+        }
+    }
+    
+    private void handlePhyChange(boolean read, int txPhy, int rxPhy, int status) {
+        if (currentRequest != null) {
+            if ((read && currentRequest.type == RequestType.READ_PHY) || ((!read && currentRequest.type == RequestType.SET_PREFERRED_PHY))) {
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    notifyPhyChange(currentRequest, txPhy, rxPhy);
+                } else {
+                    handleGattStatusFailed(status);
+                }
+                executeNextRequest();
+            }
+        }
+    }
+
+    private void handleGattStatusFailed(int status) {
+        if (currentRequest != null) {
+            connHandler.removeMessages(MSG_REQUEST_TIMEOUT);//移除超时检测
+            handleFailedCallback(currentRequest, REQUEST_FAIL_TYPE_GATT_STATUS_FAILED, status, false);
+        }
+    }
+
+    private void handleFailedCallback(GenericRequest request, int failType, int status, boolean executeNext) {
+        record(FlightRecorder.EVENT_REQUEST_FAILED, status, failType);
+        notifyRequestFailed(request, failType, status);
+        if (executeNext) {
+            executeNextRequest();
+        }
+    }
+    
+    private void handleFailedCallback(GenericRequest request, int failType, boolean executeNext) {
+        handleFailedCallback(request, failType, -1, executeNext);
+    }
+
+    private String toHex(byte[] bytes) {
+        return StringUtils.toHex(bytes);
     }
 
     private String substringUuid(UUID uuid) {
         return uuid == null ? "null" : uuid.toString().substring(0, 8);
     }
 
-    private void handleCallbacks(RequestCallback callback, MethodInfo info) {
-        if (observer != null) {
-            posterDispatcher.post(observer, info);//通知伴生观察者
+    /**
+     * 是否有伴生观察者、回调或者观察者接收此事件，没有则不创建事件
+     *
+     * @param callback 请求的回调，设置了回调时观察者不接收请求的事件
+     */
+    private boolean isObserved(int eventId, @Nullable RequestCallback callback) {
+        if (observerEntry != null && observerEntry.isObserved(eventId)) {
+            return true;
         }
-        if (callback != null) {//回调方式
-            posterDispatcher.post(callback, info);
+        if (callback != null) {
+            return (EventDispatcher.getOverriddenEvents(callback.getClass()) & (1 << eventId)) != 0;
+        }
+        return easyBle.isObserved(eventId);
+    }
+
+    private void handleCallbacks(RequestCallback callback, ObserverEvent event) {
+        eventDispatcher.post(observerEntry, event);//通知伴生观察者
+        if (callback != null) {//回调方式，回调不是观察者，仍按方法名查找，只通知重写了的方法
+            if ((EventDispatcher.getOverriddenEvents(callback.getClass()) & (1 << event.id)) != 0) {
+                posterDispatcher.post(callback, event.toMethodInfo());
+            }
         } else {//观察者模式
-            observable.notifyObservers(info);
+            easyBle.notifyObservers(event);
+        }
+    }
+
+    private static int getOutcome(int failType) {
+        switch (failType) {
+            case REQUEST_FAIL_TYPE_REQUEST_TIMEOUT:
+                return ConnectionStats.OUTCOME_TIMEOUT;
+            case REQUEST_FAIL_TYPE_REQUEST_CANCELLED:
+                return ConnectionStats.OUTCOME_CANCELLED;
+            default:
+                return ConnectionStats.OUTCOME_FAILED;
+        }
+    }
+
+    private void record(int event, int status, int value) {
+        if (flightRecorder != null) {
+            flightRecorder.record(flightRecorderAddressId, event, status, value);
+        }
+    }
+
+    private void record(int event, int status, byte[] data) {
+        if (flightRecorder != null) {
+            flightRecorder.record(flightRecorderAddressId, event, status, data);
+        }
+    }
+
+    //记录写入回调对应的包。分包写入的从完整数据中取，流控模式下回调的是最早写入的包，不是最后写入的
+    private void recordWrite(GenericRequest request, byte[] value, int status) {
+        if (flightRecorder == null) {
+            return;
+        }
+        if (request != null && request.type == RequestType.WRITE_CHARACTERISTIC && request.sendingBytes != null) {
+            byte[] data = (byte[]) request.value;
+            int start;
+            if (isCreditWindowEnabled(request)) {
+                start = (request.creditSentPackages - request.pendingPackages) * request.writeOptions.packageSize;
+            } else {
+                start = request.writeOffset - request.sendingBytes.length;
+            }
+            int len = Math.max(0, Math.min(request.writeOptions.packageSize, data.length - start));
+            flightRecorder.record(flightRecorderAddressId, FlightRecorder.EVENT_CHARACTERISTIC_WRITE, status, data, start, len);
+        } else if (request != null && request.type == RequestType.WRITE_STREAM && request.sendingBytes != null) {
+            //流式写入在回调后才读取下一包，此时还是回调的这一包
+            record(FlightRecorder.EVENT_CHARACTERISTIC_WRITE, status, request.sendingBytes);
+        } else {
+            record(FlightRecorder.EVENT_CHARACTERISTIC_WRITE, status, value);
         }
     }
 
     private void log(int priority, int type, String format, Object... args) {
-        logger.log(priority, type, String.format(Locale.US, format, args));
+        if (logger.isEnabled(priority, type)) {
+            logger.log(priority, type, String.format(Locale.US, format, args));
+        }
+    }
+
+    //参数需要转换的日志，先判断是否输出
+    private boolean isLogEnabled(int type) {
+        return logger.isEnabled(Log.DEBUG, type);
     }
 
     private void logE(int type, String format, Object... args) {
@@ -1016,21 +1726,47 @@ class ConnectionImpl implements Connection, ScanListener {
     }
 
     private void notifyConnectionError(Device device, int status) {
-        MethodInfo info = MethodInfoGenerator.onConnectionError(status);
-        MethodInfo info1 = MethodInfoGenerator.onConnectionError(device, status);
-        observable.notifyObservers(info1);
-        observable.notifyObservers(info);
-        if (observer != null) {
-            posterDispatcher.post(observer, info1);
-            posterDispatcher.post(observer, info);
+        if (isObserved(ObserverEvent.CONNECTION_ERROR, null)) {
+            ObserverEvent event = ObserverEvent.onConnectionError(device, status);
+            easyBle.notifyObservers(event);
+            eventDispatcher.post(observerEntry, event);
+        }
+        if (isObserved(ObserverEvent.CONNECTION_ERROR_DEPRECATED, null)) {
+            ObserverEvent event = ObserverEvent.onConnectionError(status);
+            easyBle.notifyObservers(event);
+            eventDispatcher.post(observerEntry, event);
         }
     }
     
     private void notifyRequestFailed(GenericRequest request, int failType, int status) {
-        MethodInfo info = MethodInfoGenerator.onRequestFailed(request, failType, request.value);
-        MethodInfo info1 = MethodInfoGenerator.onRequestFailed(request, failType, status, request.value);
-        handleCallbacks(request.callback, info);
-        handleCallbacks(request.callback, info1);
+        closeStream(request);
+        abortReliableWrite(request);
+        if (request.batch != null) {
+            //步骤失败，整个批量请求失败
+            GenericRequest batch = request.batch;
+            if (batch == currentBatch) {
+                currentBatch = null;
+                batch.batchResult.failedIndex = batch.batchIndex;
+                notifyBatchFailed(batch, failType, status);
+            }
+            return;
+        }
+        metrics.onRequestFinished(request.type, getOutcome(failType));
+        List<GenericRequest> coalescedReads = takeCoalescedReads(request);
+        if (coalescedReads != null) {
+            for (GenericRequest req : coalescedReads) {
+                notifyRequestFailed(req, failType, status);
+            }
+        }
+        if (request.completionListener != null) {
+            request.completionListener.onRequestFailed(request, failType, status, request.value);
+        }
+        if (isObserved(ObserverEvent.REQUEST_FAILED_DEPRECATED, request.callback)) {
+            handleCallbacks(request.callback, ObserverEvent.onRequestFailed(request, failType, request.value));
+        }
+        if (isObserved(ObserverEvent.REQUEST_FAILED, request.callback)) {
+            handleCallbacks(request.callback, ObserverEvent.onRequestFailed(request, failType, status, request.value));
+        }
         if (status != -1) {
             logE(Logger.TYPE_REQUEST_FAILED, "request failed! [requestType: %s, addr: %s, failType: %d，gatt status：%d",
                     request.type, device.address, failType, status);
@@ -1040,65 +1776,189 @@ class ConnectionImpl implements Connection, ScanListener {
         }
     }
 
+    private void notifyRequestCompleted(GenericRequest request, Object value) {
+        metrics.onRequestFinished(request.type, ConnectionStats.OUTCOME_SUCCEEDED);
+        if (request.completionListener != null) {
+            request.completionListener.onRequestCompleted(request, value);
+        }
+    }
+
     private void notifyCharacteristicRead(GenericRequest request, byte[] value) {
-        MethodInfo info = MethodInfoGenerator.onCharacteristicRead(request, value);
-        handleCallbacks(request.callback, info);
-        logD(Logger.TYPE_CHARACTERISTIC_READ, "characteristic read! [UUID: %s, addr: %s, value: %s]",
-                substringUuid(request.characteristic), device.address, toHex(value));
+        recordLatency(request);
+        if (isLogEnabled(Logger.TYPE_CHARACTERISTIC_READ)) {
+            logD(Logger.TYPE_CHARACTERISTIC_READ, "characteristic read! [UUID: %s, addr: %s, value: %s]",
+                    substringUuid(request.characteristic), device.address, toHex(value));
+        }
+        if (onBatchStepCompleted(request, value)) {
+            return;
+        }
+        notifyRequestCompleted(request, value);
+        ObserverEvent event = ObserverEvent.onCharacteristicRead(request, value);
+        handleCallbacks(request.callback, event);
+        List<GenericRequest> coalescedReads = takeCoalescedReads(request);
+        if (coalescedReads != null) {
+            for (GenericRequest req : coalescedReads) {
+                notifyRequestCompleted(req, value);
+                handleCallbacks(req.callback, ObserverEvent.onCharacteristicRead(req, value));
+            }
+        }
     }
 
-    private void notifyCharacteristicChanged(BluetoothGattCharacteristic characteristic) {
-        MethodInfo info = MethodInfoGenerator.onCharacteristicChanged(device, characteristic.getService().getUuid(),
-                characteristic.getUuid(), characteristic.getValue());
-        observable.notifyObservers(info);
-        if (observer != null) {
-            posterDispatcher.post(observer, info);
+    private void notifyCharacteristicChanged(UUID service, UUID characteristic, byte[] value) {
+        metrics.onNotification(value.length);
+        if (!notificationSubscriptions.isEmpty()) {
+            CharacteristicRegistry.Entry<NotificationSubscription>[] subscriptions = notificationSubscriptions.get(characteristic);
+            if (subscriptions != null) {
+                for (CharacteristicRegistry.Entry<NotificationSubscription> entry : subscriptions) {
+                    if (entry.service.equals(service)) {
+                        entry.item.offer(value);
+                    }
+                }
+            }
+        }
+        if (!characteristicListeners.isEmpty()) {
+            CharacteristicRegistry.Entry<RoutedCharacteristicListener>[] listeners = characteristicListeners.get(characteristic);
+            if (listeners != null) {
+                for (CharacteristicRegistry.Entry<RoutedCharacteristicListener> entry : listeners) {
+                    if (entry.service.equals(service)) {
+                        entry.item.dispatch(posterDispatcher, device, service, characteristic, value);
+                    }
+                }
+            }
+        }
+        if (!notificationSinks.isEmpty() && dispatchToSinks(service, characteristic, value)) {
+            return;
+        }
+        if (isObserved(ObserverEvent.CHARACTERISTIC_CHANGED, null)) {
+            ObserverEvent event = ObserverEvent.onCharacteristicChanged(device, service, characteristic, value);
+            easyBle.notifyObservers(event);
+            eventDispatcher.post(observerEntry, event);
+        }
+        if (isLogEnabled(Logger.TYPE_CHARACTERISTIC_CHANGED)) {
+            logD(Logger.TYPE_CHARACTERISTIC_CHANGED, "characteristic change! [UUID: %s, addr: %s, value: %s]",
+                    substringUuid(characteristic), device.address, toHex(value));
         }
-        logD(Logger.TYPE_CHARACTERISTIC_CHANGED, "characteristic change! [UUID: %s, addr: %s, value: %s]",
-                substringUuid(characteristic.getUuid()), device.address, toHex(characteristic.getValue()));
     }
 
     private void notifyRssiRead(GenericRequest request, int rssi) {
-        MethodInfo info = MethodInfoGenerator.onRssiRead(request, rssi);
-        handleCallbacks(request.callback, info);
+        recordLatency(request);
         logD(Logger.TYPE_READ_REMOTE_RSSI, "rssi read! [addr: %s, rssi: %d]", device.address, rssi);
+        if (onBatchStepCompleted(request, rssi)) {
+            return;
+        }
+        notifyRequestCompleted(request, rssi);
+        ObserverEvent event = ObserverEvent.onRssiRead(request, rssi);
+        handleCallbacks(request.callback, event);
     }
 
     private void notifyMtuChanged(GenericRequest request, int mtu) {
-        MethodInfo info = MethodInfoGenerator.onMtuChanged(request, mtu);
-        handleCallbacks(request.callback, info);
+        recordLatency(request);
         logD(Logger.TYPE_MTU_CHANGED, "mtu change! [addr: %s, mtu: %d]", device.address, mtu);
+        if (onBatchStepCompleted(request, mtu)) {
+            return;
+        }
+        notifyRequestCompleted(request, mtu);
+        ObserverEvent event = ObserverEvent.onMtuChanged(request, mtu);
+        handleCallbacks(request.callback, event);
     }
 
     private void notifyDescriptorRead(GenericRequest request, byte[] value) {
-        MethodInfo info = MethodInfoGenerator.onDescriptorRead(request, value);
-        handleCallbacks(request.callback, info);
-        logD(Logger.TYPE_DESCRIPTOR_READ, "descriptor read! [UUID: %s, addr: %s, value: %s]",
-                substringUuid(request.characteristic), device.address, toHex(value));
+        recordLatency(request);
+        if (isLogEnabled(Logger.TYPE_DESCRIPTOR_READ)) {
+            logD(Logger.TYPE_DESCRIPTOR_READ, "descriptor read! [UUID: %s, addr: %s, value: %s]",
+                    substringUuid(request.characteristic), device.address, toHex(value));
+        }
+        if (onBatchStepCompleted(request, value)) {
+            return;
+        }
+        notifyRequestCompleted(request, value);
+        ObserverEvent event = ObserverEvent.onDescriptorRead(request, value);
+        handleCallbacks(request.callback, event);
     }
 
     private void notifyNotificationOrIndicationChanged(GenericRequest request, boolean isEnabled) {
-        MethodInfo info;
+        recordLatency(request);
         if (request.type == RequestType.SET_NOTIFICATION) {
-            info = MethodInfoGenerator.onNotificationChanged(request, isEnabled);
             logD(Logger.TYPE_NOTIFICATION_CHANGED, "%s [UUID: %s, addr: %s]", isEnabled ? "notification enabled!" :
                     "notification disabled!", substringUuid(request.characteristic), device.address);
         } else {
-            info = MethodInfoGenerator.onIndicationChanged(request, isEnabled);
             logD(Logger.TYPE_INDICATION_CHANGED, "%s [UUID: %s, addr: %s]", isEnabled ? "indication enabled!" :
                     "indication disabled!", substringUuid(request.characteristic), device.address);
         }
-        handleCallbacks(request.callback, info);
+        if (onBatchStepCompleted(request, isEnabled)) {
+            return;
+        }
+        notifyRequestCompleted(request, isEnabled);
+        ObserverEvent event;
+        if (request.type == RequestType.SET_NOTIFICATION) {
+            event = ObserverEvent.onNotificationChanged(request, isEnabled);
+        } else {
+            event = ObserverEvent.onIndicationChanged(request, isEnabled);
+        }
+        handleCallbacks(request.callback, event);
     }
 
     private void notifyCharacteristicWrite(GenericRequest request, byte[] value) {
-        MethodInfo info = MethodInfoGenerator.onCharacteristicWrite(request, value);
-        handleCallbacks(request.callback, info);
+        recordLatency(request);
+        if (onBatchStepCompleted(request, value)) {
+            return;
+        }
+        notifyRequestCompleted(request, value);
+        ObserverEvent event = ObserverEvent.onCharacteristicWrite(request, value);
+        handleCallbacks(request.callback, event);
+    }
+
+    private void notifyStreamWriteProgress(GenericRequest request, long now) {
+        long elapsed = now - request.streamStartTime;
+        long bytesPerSecond = elapsed > 0 ? request.streamSentBytes * 1000 / elapsed : 0;
+        ObserverEvent event = ObserverEvent.onStreamWriteProgress(request, request.streamSentBytes,
+                request.streamTotalLength, bytesPerSecond);
+        handleCallbacks(request.callback, event);
+    }
+
+    private void notifyStreamWriteComplete(GenericRequest request) {
+        closeStream(request);
+        notifyRequestCompleted(request, request.streamSentBytes);
+        ObserverEvent event = ObserverEvent.onStreamWriteComplete(request, request.streamSentBytes);
+        handleCallbacks(request.callback, event);
+        logD(Logger.TYPE_CHARACTERISTIC_WRITE, "stream write complete! [UUID: %s, addr: %s, total: %d]",
+                substringUuid(request.characteristic), device.address, request.streamSentBytes);
+    }
+
+    private void notifyReliableWriteCompleted(GenericRequest request) {
+        recordLatency(request);
+        notifyRequestCompleted(request, null);
+        ObserverEvent event = ObserverEvent.onReliableWriteCompleted(request);
+        handleCallbacks(request.callback, event);
+        logD(Logger.TYPE_CHARACTERISTIC_WRITE, "reliable write completed! [addr: %s, count: %d]",
+                device.address, request.reliableWriteItems.size());
+    }
+
+    private void notifyBatchCompleted(GenericRequest batch) {
+        notifyRequestCompleted(batch, batch.batchResult);
+        ObserverEvent event = ObserverEvent.onBatchCompleted(batch, batch.batchResult);
+        handleCallbacks(batch.callback, event);
+        logD(Logger.TYPE_GENERAL, "batch completed! [addr: %s, steps: %d]", device.address, batch.batchSteps.size());
+    }
+
+    private void notifyBatchFailed(GenericRequest batch, int failType, int status) {
+        metrics.onRequestFinished(batch.type, getOutcome(failType));
+        if (batch.completionListener != null) {
+            batch.completionListener.onRequestFailed(batch, failType, status, batch.batchResult);
+        }
+        if (isObserved(ObserverEvent.REQUEST_FAILED_DEPRECATED, batch.callback)) {
+            handleCallbacks(batch.callback, ObserverEvent.onRequestFailed(batch, failType, batch.batchResult));
+        }
+        if (isObserved(ObserverEvent.REQUEST_FAILED, batch.callback)) {
+            handleCallbacks(batch.callback, ObserverEvent.onRequestFailed(batch, failType, status, batch.batchResult));
+        }
+        logE(Logger.TYPE_REQUEST_FAILED, "batch failed! [addr: %s, step: %d, stepType: %s, failType: %d, gatt status: %d]",
+                device.address, batch.batchIndex, batch.batchSteps.get(batch.batchIndex).type, failType, status);
     }
 
     private void notifyPhyChange(GenericRequest request, int txPhy, int rxPhy) {
-        MethodInfo info = MethodInfoGenerator.onPhyChange(request, txPhy, rxPhy);
-        handleCallbacks(request.callback, info);
+        notifyRequestCompleted(request, new int[]{txPhy, rxPhy});
+        handleCallbacks(request.callback, ObserverEvent.onPhyChange(request, txPhy, rxPhy));
         String event = request.type == RequestType.READ_PHY ? "phy read!" : "phy update!";
         logD(Logger.TYPE_PHY_CHANGE, "%s [addr: %s, tvPhy: %s, rxPhy: %s]", event, device.address, txPhy, rxPhy);
     }
@@ -1108,6 +1968,12 @@ class ConnectionImpl implements Connection, ScanListener {
         return mtu;
     }
 
+    @NonNull
+    @Override
+    public ConnectionStats getStats() {
+        return metrics.snapshot(latencyHistograms);
+    }
+
     @NonNull
     @Override
     public Device getDevice() {
@@ -1118,8 +1984,7 @@ class ConnectionImpl implements Connection, ScanListener {
     public void reconnect() {
         if (!isReleased) {
             isActiveDisconnect = false;
-            tryReconnectCount = 0;
-            reconnectImmediatelyCount = 0;
+            reconnectPolicy.reset();
             Message.obtain(connHandler, MSG_DISCONNECT, MSG_ARG_RECONNECT, 0).sendToTarget();
         }
     }
@@ -1132,17 +1997,6 @@ class ConnectionImpl implements Connection, ScanListener {
         }
     }
 
-    //清理内部缓存并强制刷新蓝牙设备的服务
-    @SuppressWarnings("all")
-    private boolean doRefresh() {
-        try {
-            Method localMethod = bluetoothGatt.getClass().getMethod("refresh");
-            return (boolean) localMethod.invoke(bluetoothGatt);
-        } catch (Throwable ignore) {
-        }
-        return false;
-    }
-
     @Override
     public void refresh() {
         connHandler.sendEmptyMessage(MSG_REFRESH);
@@ -1153,11 +2007,15 @@ class ConnectionImpl implements Connection, ScanListener {
             isReleased = true;
             configuration.setAutoReconnect(false); //停止自动重连
             connHandler.removeCallbacksAndMessages(null);
+            if (dedicatedThread != null) {
+                dedicatedThread.quitSafely();
+            }
             easyBle.removeScanListener(this);
             clearRequestQueueAndNotify();
-            if (bluetoothGatt != null) {
-                closeGatt(bluetoothGatt);
-                bluetoothGatt = null;
+            completeNotificationSubscriptions();
+            if (transport != null) {
+                closeTransport(transport);
+                transport = null;
             }
             device.connectionState = ConnectionState.RELEASED;
             logD(Logger.TYPE_CONNECTION_STATE, "connection released! [name: %s, addr: %s]", device.name, device.address);
@@ -1192,29 +2050,72 @@ class ConnectionImpl implements Connection, ScanListener {
     @Nullable
     @Override
     public BluetoothGatt getGatt() {
-        return bluetoothGatt;
+        GattTransport t = transport;
+        return t instanceof AndroidGattTransport ? ((AndroidGattTransport) t).getGatt() : null;
     }
 
     @Override
     public void clearRequestQueue() {
+        clearRequests(REQUEST_FAIL_TYPE_REQUEST_CANCELLED);
+    }
+
+    /**
+     * 清空请求队列，排队中的、正在执行的以及合并到它们的读请求都以指定原因失败
+     */
+    private void clearRequests(int failType) {
         synchronized (this) {
-            requestQueue.clear();
-            currentRequest = null;
+            connHandler.removeMessages(MSG_WRITE_PACKAGE);
+            connHandler.removeMessages(MSG_REQUEST_TIMEOUT);
+            for (GenericRequest request : requestQueue.drain()) {
+                failClearedRequest(request, failType);
+            }
+            failCurrentRequest(failType);
+            pendingReads.clear();
+        }
+    }
+
+    //正在执行的请求以指定原因失败，批量请求中的步骤失败时整个批量请求失败
+    private void failCurrentRequest(int failType) {
+        GenericRequest current = currentRequest;
+        currentRequest = null;
+        if (current != null) {
+            if (currentBatch != null && failType == REQUEST_FAIL_TYPE_REQUEST_CANCELLED) {
+                currentBatch.cancelled = true;
+            }
+            failClearedRequest(current, failType);
         }
+        currentBatch = null;
+    }
+
+    //被清除的请求走失败流程，同时结束合并到它的读请求
+    private void failClearedRequest(GenericRequest request, int failType) {
+        if (failType == REQUEST_FAIL_TYPE_REQUEST_CANCELLED) {
+            request.cancelled = true;
+        }
+        handleFailedCallback(request, failType, false);
     }
 
     @Override
     public void clearRequestQueueByType(@Nullable RequestType type) {
+        if (type == null) {
+            clearRequestQueue();
+            return;
+        }
         synchronized (this) {
-            Iterator<GenericRequest> it = requestQueue.iterator();
-            while (it.hasNext()) {
-                GenericRequest request = it.next();
-                if (request.type == type) {
-                    it.remove();
-                }
+            for (GenericRequest request : requestQueue.removeByType(type)) {
+                failClearedRequest(request, REQUEST_FAIL_TYPE_REQUEST_CANCELLED);
             }
-            if (currentRequest != null && currentRequest.type == type) {
-                currentRequest = null;
+            if (currentBatch != null) {
+                //批量请求作为一个整体，只按批量请求类型移除
+                if (type == RequestType.BATCH) {
+                    connHandler.removeMessages(MSG_WRITE_PACKAGE);
+                    connHandler.removeMessages(MSG_REQUEST_TIMEOUT);
+                    failCurrentRequest(REQUEST_FAIL_TYPE_REQUEST_CANCELLED);
+                }
+            } else if (currentRequest != null && currentRequest.type == type) {
+                connHandler.removeMessages(MSG_WRITE_PACKAGE);
+                connHandler.removeMessages(MSG_REQUEST_TIMEOUT);
+                failCurrentRequest(REQUEST_FAIL_TYPE_REQUEST_CANCELLED);
             }
         }
     }
@@ -1223,15 +2124,7 @@ class ConnectionImpl implements Connection, ScanListener {
      * 清空请求队列并触发通知事件
      */
     private void clearRequestQueueAndNotify() {
-        synchronized (this) {
-            for (GenericRequest request : requestQueue) {
-                handleFailedCallback(request, REQUEST_FAIL_TYPE_CONNECTION_DISCONNECTED, false);
-            }
-            if (currentRequest != null) {
-                handleFailedCallback(currentRequest, REQUEST_FAIL_TYPE_CONNECTION_DISCONNECTED, false);
-            }
-        }
-        clearRequestQueue();
+        clearRequests(REQUEST_FAIL_TYPE_CONNECTION_DISCONNECTED);
     }
 
     @NonNull
@@ -1243,8 +2136,9 @@ class ConnectionImpl implements Connection, ScanListener {
     @Nullable
     @Override
     public BluetoothGattService getService(UUID service) {
-        if (service != null && bluetoothGatt != null) {
-            return bluetoothGatt.getService(service);
+        GattTransport t = transport;
+        if (service != null && t instanceof AndroidGattTransport) {
+            return ((AndroidGattTransport) t).getService(service);
         }
         return null;
     }
@@ -1252,11 +2146,9 @@ class ConnectionImpl implements Connection, ScanListener {
     @Nullable
     @Override
     public BluetoothGattCharacteristic getCharacteristic(UUID service, UUID characteristic) {
-        if (service != null && characteristic != null && bluetoothGatt != null) {
-            BluetoothGattService gattService = bluetoothGatt.getService(service);
-            if (gattService != null) {
-                return gattService.getCharacteristic(characteristic);
-            }
+        GattTransport t = transport;
+        if (service != null && characteristic != null && t instanceof AndroidGattTransport) {
+            return ((AndroidGattTransport) t).getCharacteristic(service, characteristic);
         }
         return null;
     }
@@ -1264,14 +2156,9 @@ class ConnectionImpl implements Connection, ScanListener {
     @Nullable
     @Override
     public BluetoothGattDescriptor getDescriptor(UUID service, UUID characteristic, UUID descriptor) {
-        if (service != null && characteristic != null && descriptor != null && bluetoothGatt != null) {
-            BluetoothGattService gattService = bluetoothGatt.getService(service);
-            if (gattService != null) {
-                BluetoothGattCharacteristic gattCharacteristic = gattService.getCharacteristic(characteristic);
-                if (gattCharacteristic != null) {
-                    return gattCharacteristic.getDescriptor(descriptor);
-                }
-            }
+        GattTransport t = transport;
+        if (service != null && characteristic != null && descriptor != null && t instanceof AndroidGattTransport) {
+            return ((AndroidGattTransport) t).getDescriptor(service, characteristic, descriptor);
         }
         return null;
     }
@@ -1293,7 +2180,8 @@ class ConnectionImpl implements Connection, ScanListener {
 
     //检查服务是否存在
     private boolean checkServiceExists(GenericRequest request, UUID uuid) {
-        if (getService(uuid) == null) {
+        GattTransport t = transport;
+        if (uuid == null || t == null || !t.hasService(uuid)) {
             handleFailedCallback(request, REQUEST_FAIL_TYPE_SERVICE_NOT_EXIST, false);
             return false;
         }
@@ -1303,7 +2191,8 @@ class ConnectionImpl implements Connection, ScanListener {
     //检查特征是否存在
     private boolean checkCharacteristicExists(GenericRequest request, UUID service, UUID characteristic) {
         if (checkServiceExists(request, service)) {
-            if (getCharacteristic(service, characteristic) == null) {
+            GattTransport t = transport;
+            if (characteristic == null || t == null || !t.hasCharacteristic(service, characteristic)) {
                 handleFailedCallback(request, REQUEST_FAIL_TYPE_CHARACTERISTIC_NOT_EXIST, false);
                 return false;
             }
@@ -1312,10 +2201,50 @@ class ConnectionImpl implements Connection, ScanListener {
         return false;
     }
 
+    //设置批量请求中每一步的设备和写入配置，并检查UUID是否存在，不存在时批量请求失败
+    private boolean prepareBatchSteps(GenericRequest batch) {
+        for (GenericRequest step : batch.batchSteps) {
+            step.device = device;
+            if (step.type == RequestType.WRITE_CHARACTERISTIC && step.writeOptions == null) {
+                step.writeOptions = configuration.getDefaultWriteOptions(step.service, step.characteristic);
+                if (step.writeOptions == null) {
+                    step.writeOptions = new WriteOptions.Builder().build();
+                }
+            }
+            switch (step.type) {
+                case WRITE_CHARACTERISTIC:
+                case READ_CHARACTERISTIC:
+                case SET_NOTIFICATION:
+                case SET_INDICATION:
+                    if (!checkCharacteristicExists(batch, step.service, step.characteristic)) {
+                        return false;
+                    }
+                    break;
+                case READ_DESCRIPTOR:
+                    if (!checkDescriptorExists(batch, step.service, step.characteristic, step.descriptor)) {
+                        return false;
+                    }
+                    break;
+            }
+        }
+        return true;
+    }
+
+    //检查可靠写入的所有特征是否存在
+    private boolean checkReliableWriteItemsExist(GenericRequest request) {
+        for (ReliableWriteItem item : request.reliableWriteItems) {
+            if (!checkCharacteristicExists(request, item.service, item.characteristic)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     //检查Descriptor是否存在
     private boolean checkDescriptorExists(GenericRequest request, UUID service, UUID characteristic, UUID descriptor) {
         if (checkServiceExists(request, service) && checkCharacteristicExists(request, service, characteristic)) {
-            if (getDescriptor(service, characteristic, descriptor) == null) {
+            GattTransport t = transport;
+            if (descriptor == null || t == null || !t.hasDescriptor(service, characteristic, descriptor)) {
                 handleFailedCallback(request, REQUEST_FAIL_TYPE_DESCRIPTOR_NOT_EXIST, false);
                 return false;
             }
@@ -1324,35 +2253,160 @@ class ConnectionImpl implements Connection, ScanListener {
         return false;
     }
 
-
+    @NonNull
     @Override
-    public void execute(@NonNull Request request) {
-        if (request instanceof GenericRequest) {
-            GenericRequest req = (GenericRequest) request;
-            req.device = device;
-            switch (req.type) {
-                case SET_NOTIFICATION:
-                case SET_INDICATION:
-                case READ_CHARACTERISTIC:
-                case WRITE_CHARACTERISTIC:
-                    if (req.type == RequestType.WRITE_CHARACTERISTIC && req.writeOptions == null) {
-                        //从默认配置中取
-                        req.writeOptions = configuration.getDefaultWriteOptions(req.service, req.characteristic);
-                        if (req.writeOptions == null) {
-                            //没有设置默认的，则新建
-                            req.writeOptions = new WriteOptions.Builder().build();
-                        }
+    public RequestHandle execute(@NonNull Request request) {
+        if (!(request instanceof GenericRequest)) {
+            //不是通过RequestBuilder构建的请求，不处理
+            return new RequestHandle() {
+                @NonNull
+                @Override
+                public Request getRequest() {
+                    return request;
+                }
+
+                @Override
+                public boolean cancel() {
+                    return false;
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return false;
+                }
+            };
+        }
+        GenericRequest req = (GenericRequest) request;
+        if (req.batch != null) {
+            //批量请求的步骤由批量请求执行，单独执行时没有超时，回调也会被批量请求拦截
+            throw new IllegalArgumentException("Request in batch can not be executed alone.");
+        }
+        req.device = device;
+        req.connection = this;
+        switch (req.type) {
+            case SET_NOTIFICATION:
+            case SET_INDICATION:
+            case READ_CHARACTERISTIC:
+            case WRITE_CHARACTERISTIC:
+            case WRITE_STREAM:
+                if ((req.type == RequestType.WRITE_CHARACTERISTIC || req.type == RequestType.WRITE_STREAM) &&
+                        req.writeOptions == null) {
+                    //从默认配置中取
+                    req.writeOptions = configuration.getDefaultWriteOptions(req.service, req.characteristic);
+                    if (req.writeOptions == null) {
+                        //没有设置默认的，则新建
+                        req.writeOptions = new WriteOptions.Builder().build();
                     }
-                    checkUuidExistsAndEnqueue(req, 2);
-                    break;
-                case READ_DESCRIPTOR:
-                    checkUuidExistsAndEnqueue(req, 3);
-                    break;
-                default:
+                }
+                checkUuidExistsAndEnqueue(req, 2);
+                break;
+            case READ_DESCRIPTOR:
+                checkUuidExistsAndEnqueue(req, 3);
+                break;
+            case RELIABLE_WRITE:
+                if (checkReliableWriteItemsExist(req)) {
                     enqueue(req);
-                    break;
+                }
+                break;
+            case BATCH:
+                if (prepareBatchSteps(req)) {
+                    enqueue(req);
+                }
+                break;
+            default:
+                enqueue(req);
+                break;
+        }
+        return req;
+    }
+
+    @NonNull
+    @Override
+    public Publisher<byte[]> notifications(@NonNull UUID service, @NonNull UUID characteristic) {
+        return notifications(service, characteristic, OverflowStrategy.BUFFER, NotificationPublisher.DEFAULT_BUFFER_SIZE);
+    }
+
+    @NonNull
+    @Override
+    public Publisher<byte[]> notifications(@NonNull UUID service, @NonNull UUID characteristic,
+                                           @NonNull OverflowStrategy strategy, int bufferSize) {
+        return new NotificationPublisher(this, new CharacteristicKey(service, characteristic), strategy, bufferSize);
+    }
+
+    void addNotificationSubscription(NotificationSubscription subscription) {
+        notificationSubscriptions.add(subscription.key.service, subscription.key.characteristic, subscription);
+        if (isReleased) {
+            subscription.complete();
+        }
+        if (subscription.isCancelled()) {
+            //订阅时就取消了
+            removeNotificationSubscription(subscription);
+        }
+    }
+
+    void removeNotificationSubscription(NotificationSubscription subscription) {
+        notificationSubscriptions.remove(subscription.key.service, subscription.key.characteristic, subscription);
+    }
+
+    private void completeNotificationSubscriptions() {
+        for (NotificationSubscription subscription : notificationSubscriptions.removeAll()) {
+            subscription.complete();
+        }
+    }
+
+    @Override
+    public void addNotificationSink(@NonNull UUID service, @NonNull UUID characteristic, @NonNull NotificationSink sink) {
+        notificationSinks.add(service, characteristic, sink);
+    }
+
+    @Override
+    public void removeNotificationSink(@NonNull UUID service, @NonNull UUID characteristic, @NonNull NotificationSink sink) {
+        notificationSinks.remove(service, characteristic, sink);
+    }
+
+    /**
+     * 发给接收器，不创建对象
+     *
+     * @return 特征是否注册了接收器
+     */
+    private boolean dispatchToSinks(UUID service, UUID characteristic, byte[] value) {
+        CharacteristicRegistry.Entry<NotificationSink>[] sinks = notificationSinks.get(characteristic);
+        if (sinks == null) {
+            return false;
+        }
+        boolean dispatched = false;
+        for (CharacteristicRegistry.Entry<NotificationSink> entry : sinks) {
+            if (entry.service.equals(service)) {
+                entry.item.onNotification(device, service, characteristic, value, 0, value.length);
+                dispatched = true;
             }
         }
+        return dispatched;
+    }
+
+    @RequiresApi(Build.VERSION_CODES.N)
+    @NonNull
+    @Override
+    public CompletableFuture<RequestResult> submit(@NonNull Request request) {
+        return submit(request, null);
+    }
+
+    @RequiresApi(Build.VERSION_CODES.N)
+    @NonNull
+    @Override
+    public CompletableFuture<RequestResult> submit(@NonNull Request request, @Nullable Executor executor) {
+        if (!(request instanceof GenericRequest)) {
+            //不是通过RequestBuilder构建的请求，不会执行
+            CompletableFuture<RequestResult> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalArgumentException("Request is not built by RequestBuilder."));
+            return future;
+        }
+        GenericRequest req = (GenericRequest) request;
+        //不在连接线程结束，后续的阻塞处理不会卡住请求的执行
+        RequestFuture future = new RequestFuture(req, executor == null ? easyBle.getExecutorService() : executor);
+        req.completionListener = future;
+        execute(req);
+        return future;
     }
 
     @Deprecated
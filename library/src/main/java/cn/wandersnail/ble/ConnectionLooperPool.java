@@ -0,0 +1,56 @@
+package cn.wandersnail.ble;
+
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 运行连接状态机的后台线程池。线程在第一次使用时创建，按顺序分配给连接
+ */
+class ConnectionLooperPool {
+    private final HandlerThread[] threads;
+    private int nextIndex;
+
+    ConnectionLooperPool(int size) {
+        threads = new HandlerThread[size];
+    }
+
+    /**
+     * 创建一个运行连接状态机的后台线程并启动
+     */
+    @NonNull
+    static HandlerThread startThread(@NonNull String name) {
+        HandlerThread thread = new HandlerThread(name, Process.THREAD_PRIORITY_DEFAULT);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * 按顺序获取下一个线程的Looper
+     */
+    @NonNull
+    synchronized Looper next() {
+        int index = nextIndex;
+        nextIndex = (nextIndex + 1) % threads.length;
+        HandlerThread thread = threads[index];
+        if (thread == null || !thread.isAlive()) {
+            thread = startThread("EasyBLE-Connection-" + index);
+            threads[index] = thread;
+        }
+        return thread.getLooper();
+    }
+
+    /**
+     * 停止所有线程，待处理的消息执行完后退出
+     */
+    synchronized void release() {
+        for (int i = 0; i < threads.length; i++) {
+            if (threads[i] != null) {
+                threads[i].quitSafely();
+                threads[i] = null;
+            }
+        }
+    }
+}
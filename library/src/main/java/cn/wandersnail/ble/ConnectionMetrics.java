@@ -0,0 +1,145 @@
+package cn.wandersnail.ble;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import cn.wandersnail.ble.core.LatencyHistogram;
+
+/**
+ * 连接的运行统计。计数都是原子变量，更新时不加锁、不创建对象，可在任意线程调用；读取时生成{@link ConnectionStats}快照。
+ * <br>连接状态及其时长一起变化，切换不频繁，加锁保证快照中状态和进入时间一致
+ */
+class ConnectionMetrics {
+    private static final int TYPE_COUNT = RequestType.values().length;
+    private static final int STATE_COUNT = ConnectionState.values().length;
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong packagesWritten = new AtomicLong();
+    private final AtomicLong bytesNotified = new AtomicLong();
+    private final AtomicLong notifications = new AtomicLong();
+    //按请求类型、结果计数，下标为type * OUTCOME_COUNT + outcome
+    private final AtomicLongArray requests = new AtomicLongArray(TYPE_COUNT * ConnectionStats.OUTCOME_COUNT);
+    private final AtomicLongArray gattStatuses = new AtomicLongArray(ConnectionStats.GATT_STATUS_COUNT);
+    //超出数组范围的状态码，如GATT_FAILURE(257)，很少出现，用Map计数
+    private final Map<Integer, AtomicLong> otherGattStatuses = new ConcurrentHashMap<>();
+    private final AtomicInteger queueHighWaterMark = new AtomicInteger();
+    private final AtomicLong reconnectAttempts = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final long[] stateMillis = new long[STATE_COUNT];//以下由stateLock保护
+    private ConnectionState state;
+    private long stateEnterTime;
+    private final Object stateLock = new Object();
+
+    ConnectionMetrics(@NonNull ConnectionState state) {
+        this.state = state;
+        stateEnterTime = SystemClock.elapsedRealtime();
+    }
+
+    void onBytesWritten(int length) {
+        bytesWritten.addAndGet(length);
+        packagesWritten.incrementAndGet();
+    }
+
+    void onNotification(int length) {
+        bytesNotified.addAndGet(length);
+        notifications.incrementAndGet();
+    }
+
+    /**
+     * 请求结束
+     *
+     * @param outcome {@link ConnectionStats#OUTCOME_SUCCEEDED}等
+     */
+    void onRequestFinished(@NonNull RequestType type, int outcome) {
+        requests.incrementAndGet(type.ordinal() * ConnectionStats.OUTCOME_COUNT + outcome);
+    }
+
+    /**
+     * GATT回调的状态码
+     */
+    void onGattStatus(int status) {
+        if (status >= 0 && status < ConnectionStats.GATT_STATUS_COUNT) {
+            gattStatuses.incrementAndGet(status);
+        } else {
+            AtomicLong count = otherGattStatuses.get(status);
+            if (count == null) {
+                AtomicLong prev = otherGattStatuses.putIfAbsent(status, count = new AtomicLong());
+                if (prev != null) {
+                    count = prev;
+                }
+            }
+            count.incrementAndGet();
+        }
+    }
+
+    void onQueueDepth(int depth) {
+        int max;
+        while (depth > (max = queueHighWaterMark.get())) {
+            if (queueHighWaterMark.compareAndSet(max, depth)) {
+                break;
+            }
+        }
+    }
+
+    void onReconnectAttempt() {
+        reconnectAttempts.incrementAndGet();
+    }
+
+    void onReconnected() {
+        reconnects.incrementAndGet();
+    }
+
+    /**
+     * 连接状态改变，累计上个状态的时长
+     */
+    void onStateChanged(@NonNull ConnectionState newState) {
+        synchronized (stateLock) {
+            long now = SystemClock.elapsedRealtime();
+            stateMillis[state.ordinal()] += now - stateEnterTime;
+            stateEnterTime = now;
+            state = newState;
+        }
+    }
+
+    /**
+     * 生成快照
+     *
+     * @param histograms 各请求类型的耗时统计
+     */
+    @NonNull
+    ConnectionStats snapshot(@NonNull LatencyHistogram[] histograms) {
+        ConnectionStats stats = new ConnectionStats();
+        stats.connectionCount = 1;
+        stats.bytesWritten = bytesWritten.get();
+        stats.packagesWritten = packagesWritten.get();
+        stats.bytesNotified = bytesNotified.get();
+        stats.notifications = notifications.get();
+        for (int i = 0; i < stats.requests.length; i++) {
+            stats.requests[i] = requests.get(i);
+        }
+        for (int i = 0; i < stats.gattStatuses.length; i++) {
+            stats.gattStatuses[i] = gattStatuses.get(i);
+        }
+        for (Map.Entry<Integer, AtomicLong> entry : otherGattStatuses.entrySet()) {
+            stats.otherGattStatuses.put(entry.getKey(), entry.getValue().get());
+        }
+        stats.queueHighWaterMark = queueHighWaterMark.get();
+        stats.reconnectAttempts = reconnectAttempts.get();
+        stats.reconnects = reconnects.get();
+        synchronized (stateLock) {
+            System.arraycopy(stateMillis, 0, stats.stateMillis, 0, STATE_COUNT);
+            //当前状态还未累计
+            stats.stateMillis[state.ordinal()] += SystemClock.elapsedRealtime() - stateEnterTime;
+        }
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i].addTo(stats.latencies[i]);
+        }
+        return stats;
+    }
+}
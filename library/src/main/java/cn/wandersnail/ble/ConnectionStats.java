@@ -0,0 +1,217 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import cn.wandersnail.ble.core.LatencyHistogram;
+
+/**
+ * 连接运行统计的快照，通过{@link Connection#getStats()}获取。{@link EasyBLE#getStats()}返回所有连接的合计
+ */
+public final class ConnectionStats {
+    /**
+     * 请求成功
+     */
+    public static final int OUTCOME_SUCCEEDED = 0;
+    /**
+     * 请求失败，不含超时和取消
+     */
+    public static final int OUTCOME_FAILED = 1;
+    /**
+     * 请求超时
+     */
+    public static final int OUTCOME_TIMEOUT = 2;
+    /**
+     * 请求被取消
+     */
+    public static final int OUTCOME_CANCELLED = 3;
+    static final int OUTCOME_COUNT = 4;
+    static final int GATT_STATUS_COUNT = 256;
+    int connectionCount;
+    long bytesWritten;
+    long packagesWritten;
+    long bytesNotified;
+    long notifications;
+    final long[] requests = new long[RequestType.values().length * OUTCOME_COUNT];
+    final long[] gattStatuses = new long[GATT_STATUS_COUNT];
+    final Map<Integer, Long> otherGattStatuses = new TreeMap<>();//超出数组范围的状态码
+    int queueHighWaterMark;
+    long reconnectAttempts;
+    long reconnects;
+    final long[] stateMillis = new long[ConnectionState.values().length];
+    final long[][] latencies = new long[RequestType.values().length][LatencyHistogram.BUCKET_COUNT];
+
+    ConnectionStats() {
+    }
+
+    /**
+     * 合计的连接数
+     */
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * 交给协议栈写入的字节数
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * 交给协议栈写入的包数
+     */
+    public long getPackagesWritten() {
+        return packagesWritten;
+    }
+
+    /**
+     * 收到的通知数据字节数
+     */
+    public long getBytesNotified() {
+        return bytesNotified;
+    }
+
+    /**
+     * 收到的通知次数
+     */
+    public long getNotificationCount() {
+        return notifications;
+    }
+
+    /**
+     * 指定类型、结果的请求数
+     *
+     * @param outcome {@link #OUTCOME_SUCCEEDED}、{@link #OUTCOME_FAILED}、{@link #OUTCOME_TIMEOUT}、{@link #OUTCOME_CANCELLED}
+     */
+    public long getRequestCount(@NonNull RequestType type, int outcome) {
+        if (outcome < 0 || outcome >= OUTCOME_COUNT) {
+            return 0;
+        }
+        return requests[type.ordinal() * OUTCOME_COUNT + outcome];
+    }
+
+    /**
+     * 所有类型指定结果的请求数
+     */
+    public long getRequestCount(int outcome) {
+        long sum = 0;
+        for (RequestType type : RequestType.values()) {
+            sum += getRequestCount(type, outcome);
+        }
+        return sum;
+    }
+
+    /**
+     * 超时的请求数
+     */
+    public long getTimeoutCount() {
+        return getRequestCount(OUTCOME_TIMEOUT);
+    }
+
+    /**
+     * GATT回调中指定状态码出现的次数
+     */
+    public long getGattStatusCount(int status) {
+        if (status >= 0 && status < GATT_STATUS_COUNT) {
+            return gattStatuses[status];
+        }
+        Long count = otherGattStatuses.get(status);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 出现过的GATT状态码及次数，按状态码排序
+     */
+    @NonNull
+    public Map<Integer, Long> getGattStatusCounts() {
+        Map<Integer, Long> map = new TreeMap<>();
+        for (int i = 0; i < GATT_STATUS_COUNT; i++) {
+            if (gattStatuses[i] > 0) {
+                map.put(i, gattStatuses[i]);
+            }
+        }
+        map.putAll(otherGattStatuses);
+        return map;
+    }
+
+    /**
+     * 请求队列的最大长度，不含正在执行的请求。合计时为各连接中的最大值
+     */
+    public int getQueueHighWaterMark() {
+        return queueHighWaterMark;
+    }
+
+    /**
+     * 自动重连的次数
+     */
+    public long getReconnectAttempts() {
+        return reconnectAttempts;
+    }
+
+    /**
+     * 重连成功的次数
+     */
+    public long getReconnectCount() {
+        return reconnects;
+    }
+
+    /**
+     * 处于指定连接状态的累计时长，毫秒
+     */
+    public long getTimeInState(@NonNull ConnectionState state) {
+        return stateMillis[state.ordinal()];
+    }
+
+    /**
+     * 指定类型请求GATT操作耗时的百分位，毫秒，相对误差不超过19%。统计只保留最近的样本，没有样本时返回0
+     *
+     * @param percentile 0~1之间，如0.99
+     */
+    public long getLatencyPercentile(@NonNull RequestType type, double percentile) {
+        return LatencyHistogram.percentile(latencies[type.ordinal()], percentile);
+    }
+
+    /**
+     * 指定类型请求耗时统计中的样本数
+     */
+    public long getLatencySampleCount(@NonNull RequestType type) {
+        long sum = 0;
+        for (long v : latencies[type.ordinal()]) {
+            sum += v;
+        }
+        return sum;
+    }
+
+    /**
+     * 累加其他连接的统计
+     */
+    void add(@NonNull ConnectionStats other) {
+        connectionCount += other.connectionCount;
+        bytesWritten += other.bytesWritten;
+        packagesWritten += other.packagesWritten;
+        bytesNotified += other.bytesNotified;
+        notifications += other.notifications;
+        addAll(requests, other.requests);
+        addAll(gattStatuses, other.gattStatuses);
+        for (Map.Entry<Integer, Long> entry : other.otherGattStatuses.entrySet()) {
+            Long count = otherGattStatuses.get(entry.getKey());
+            otherGattStatuses.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+        }
+        queueHighWaterMark = Math.max(queueHighWaterMark, other.queueHighWaterMark);
+        reconnectAttempts += other.reconnectAttempts;
+        reconnects += other.reconnects;
+        addAll(stateMillis, other.stateMillis);
+        for (int i = 0; i < latencies.length; i++) {
+            addAll(latencies[i], other.latencies[i]);
+        }
+    }
+
+    private static void addAll(long[] dest, long[] src) {
+        for (int i = 0; i < dest.length; i++) {
+            dest[i] += src[i];
+        }
+    }
+}
@@ -14,6 +14,7 @@ import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Looper;
 import android.util.Log;
 
 import java.lang.reflect.Method;
@@ -23,18 +24,22 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import cn.wandersnail.ble.callback.CharacteristicChangedListener;
 import cn.wandersnail.ble.callback.ScanListener;
 import cn.wandersnail.ble.util.DefaultLogger;
 import cn.wandersnail.ble.util.Logger;
 import cn.wandersnail.commons.observer.Observable;
 import cn.wandersnail.commons.poster.MethodInfo;
 import cn.wandersnail.commons.poster.PosterDispatcher;
+import cn.wandersnail.commons.poster.RunOn;
+import cn.wandersnail.commons.poster.ThreadMode;
 
 /**
  * date: 2019/8/3 11:50
@@ -48,6 +53,7 @@ public class EasyBLE {
     private final BondController bondController;
     private final DeviceCreator deviceCreator;
     private final Observable observable;
+    private final EventDispatcher eventDispatcher;
     private final Logger logger;
     public final ScanConfiguration scanConfiguration;
     private Scanner scanner;
@@ -58,7 +64,14 @@ public class EasyBLE {
     private final Map<String, Connection> connectionMap = new ConcurrentHashMap<>();
     //已连接的设备MAC地址集合
     private final List<String> addressList = new CopyOnWriteArrayList<>();
+    //按设备地址、服务、特征登记的通知监听器
+    private final ConcurrentHashMap<String, CharacteristicRegistry<RoutedCharacteristicListener>> characteristicListeners = new ConcurrentHashMap<>();
     private final boolean internalObservable;
+    @Nullable
+    private final ConnectionLooperPool connectionLooperPool;
+    @Nullable
+    private final FlightRecorder flightRecorder;
+    private final GattTransport.Factory gattTransportFactory;
 
     private EasyBLE() {
         this(DEFAULT_BUILDER);
@@ -83,7 +96,11 @@ public class EasyBLE {
             executorService = builder.executorService;
             posterDispatcher = new PosterDispatcher(executorService, builder.methodDefaultThreadMode);
             observable = new Observable(posterDispatcher, builder.isObserveAnnotationRequired);
-        }    
+        }
+        eventDispatcher = new EventDispatcher(posterDispatcher, builder.isObserveAnnotationRequired);
+        connectionLooperPool = builder.connectionLooperPoolSize > 0 ? new ConnectionLooperPool(builder.connectionLooperPoolSize) : null;
+        flightRecorder = builder.flightRecorderCapacity > 0 ? new FlightRecorder(builder.flightRecorderCapacity) : null;
+        gattTransportFactory = builder.gattTransportFactory == null ? new AndroidGattTransport.Factory(this) : builder.gattTransportFactory;
     }
 
     /**
@@ -148,10 +165,36 @@ public class EasyBLE {
         return observable;
     }
 
+    EventDispatcher getEventDispatcher() {
+        return eventDispatcher;
+    }
+
     Logger getLogger() {
         return logger;
     }
 
+    /**
+     * GATT事件记录器，用于导出最近的蓝牙事件分析问题
+     *
+     * @return 配置的记录数为0时返回null
+     */
+    @Nullable
+    public FlightRecorder getFlightRecorder() {
+        return flightRecorder;
+    }
+
+    GattTransport.Factory getGattTransportFactory() {
+        return gattTransportFactory;
+    }
+
+    /**
+     * 获取运行连接状态机的Looper，没有配置后台线程时使用主线程
+     */
+    @NonNull
+    Looper getConnectionLooper() {
+        return connectionLooperPool == null ? Looper.getMainLooper() : connectionLooperPool.next();
+    }
+
     public ScannerType getScannerType() {
         return scanner == null ? null : scanner.getType();
     }
@@ -176,7 +219,7 @@ public class EasyBLE {
                     case BluetoothAdapter.ACTION_STATE_CHANGED: //蓝牙开关状态变化 
                         if (bluetoothAdapter != null) {
                             //通知观察者蓝牙状态
-                            observable.notifyObservers(MethodInfoGenerator.onBluetoothAdapterStateChanged(bluetoothAdapter.getState()));
+                            notifyObservers(ObserverEvent.onBluetoothAdapterStateChanged(bluetoothAdapter.getState()));
                             if (bluetoothAdapter.getState() == BluetoothAdapter.STATE_OFF) { //蓝牙关闭
                                 logger.log(Log.DEBUG, Logger.TYPE_GENERAL, "蓝牙关闭了");
                                 //通知搜索器
@@ -224,7 +267,7 @@ public class EasyBLE {
             if (BluetoothAdapter.ACTION_STATE_CHANGED.equals(intent.getAction())) { //蓝牙开关状态变化 
                 if (bluetoothAdapter != null) {
                     //通知观察者蓝牙状态
-                    observable.notifyObservers(MethodInfoGenerator.onBluetoothAdapterStateChanged(bluetoothAdapter.getState()));
+                    notifyObservers(ObserverEvent.onBluetoothAdapterStateChanged(bluetoothAdapter.getState()));
                     if (bluetoothAdapter.getState() == BluetoothAdapter.STATE_OFF) { //蓝牙关闭
                         logger.log(Log.DEBUG, Logger.TYPE_GENERAL, "蓝牙关闭了");
                         //通知搜索器
@@ -319,7 +362,12 @@ public class EasyBLE {
             scanner.release();
         }
         releaseAllConnections();
+        characteristicListeners.clear();
+        if (connectionLooperPool != null) {
+            connectionLooperPool.release();
+        }
         if (internalObservable) {
+            eventDispatcher.unregisterAll();
             observable.unregisterAll();
             posterDispatcher.clearTasks();
         }
@@ -340,7 +388,11 @@ public class EasyBLE {
      */
     public void registerObserver(@NonNull EventObserver observer) {
         if (checkStatus()) {
-            observable.registerObserver(observer);
+            if (internalObservable) {
+                eventDispatcher.register(observer);
+            } else {
+                observable.registerObserver(observer);
+            }
         }
     }
 
@@ -348,14 +400,18 @@ public class EasyBLE {
      * 查询观察者是否注册
      */
     public boolean isObserverRegistered(@NonNull EventObserver observer) {
-        return observable.isRegistered(observer);
+        return internalObservable ? eventDispatcher.isRegistered(observer) : observable.isRegistered(observer);
     }
 
     /**
      * 取消注册连接状态及数据接收观察者
      */
     public void unregisterObserver(@NonNull EventObserver observer) {
-        observable.unregisterObserver(observer);
+        if (internalObservable) {
+            eventDispatcher.unregister(observer);
+        } else {
+            observable.unregisterObserver(observer);
+        }
     }
 
     /**
@@ -365,8 +421,76 @@ public class EasyBLE {
      */
     public void notifyObservers(@NonNull MethodInfo info) {
         if (checkStatus()) {
-            observable.notifyObservers(info);
+            if (internalObservable) {
+                eventDispatcher.notifyObservers(info);
+            } else {
+                observable.notifyObservers(info);
+            }
+        }
+    }
+
+    /**
+     * 是否有观察者接收此事件，观察者不是由本库管理时无法判断，返回true
+     */
+    boolean isObserved(int eventId) {
+        return !internalObservable || eventDispatcher.isObserved(eventId);
+    }
+
+    /**
+     * 通知所有观察者。观察者由本库管理时直接调用，否则转换成{@link MethodInfo}交给Observable
+     */
+    void notifyObservers(@NonNull ObserverEvent event) {
+        if (internalObservable) {
+            eventDispatcher.notifyObservers(event);
+        } else {
+            observable.notifyObservers(event.toMethodInfo());
+        }
+    }
+    
+    /**
+     * 添加指定设备指定特征的通知监听器，只收到此特征的通知，执行线程见{@link #addCharacteristicListener(String, UUID, UUID, CharacteristicChangedListener, ThreadMode)}
+     */
+    public void addCharacteristicListener(@NonNull String address, @NonNull UUID service, @NonNull UUID characteristic,
+                                          @NonNull CharacteristicChangedListener listener) {
+        addCharacteristicListener(address, service, characteristic, listener, null);
+    }
+
+    /**
+     * 添加指定设备指定特征的通知监听器，只收到此特征的通知。同一监听器可添加到多个特征
+     *
+     * @param threadMode 执行线程，为null时使用方法上{@link RunOn}注解指定的，都没有时使用默认的
+     */
+    public void addCharacteristicListener(@NonNull String address, @NonNull UUID service, @NonNull UUID characteristic,
+                                          @NonNull CharacteristicChangedListener listener, @Nullable ThreadMode threadMode) {
+        ThreadMode mode = RoutedCharacteristicListener.resolveThreadMode(listener, threadMode, posterDispatcher.getDefaultMode());
+        getCharacteristicListeners(address).add(service, characteristic, new RoutedCharacteristicListener(listener, mode));
+    }
+
+    /**
+     * 移除指定设备指定特征的通知监听器
+     */
+    public void removeCharacteristicListener(@NonNull String address, @NonNull UUID service, @NonNull UUID characteristic,
+                                             @NonNull CharacteristicChangedListener listener) {
+        CharacteristicRegistry<RoutedCharacteristicListener> registry = characteristicListeners.get(address);
+        if (registry != null) {
+            registry.remove(service, characteristic, new RoutedCharacteristicListener(listener, ThreadMode.POSTING));
+        }
+    }
+
+    /**
+     * 获取设备的通知监听器路由表，没有则创建。连接持有此表，收到通知时直接查找
+     */
+    @NonNull
+    CharacteristicRegistry<RoutedCharacteristicListener> getCharacteristicListeners(@NonNull String address) {
+        CharacteristicRegistry<RoutedCharacteristicListener> registry = characteristicListeners.get(address);
+        if (registry == null) {
+            registry = new CharacteristicRegistry<>();
+            CharacteristicRegistry<RoutedCharacteristicListener> prev = characteristicListeners.putIfAbsent(address, registry);
+            if (prev != null) {
+                registry = prev;
+            }
         }
+        return registry;
     }
     
     //检查并实例化搜索器
@@ -637,10 +761,11 @@ public class EasyBLE {
         String message = String.format(Locale.US, "connect failed! [type: %s, name: %s, addr: %s]",
                 typeStr, device.getName(), device.getAddress());
         logger.log(Log.ERROR, Logger.TYPE_CONNECTION_STATE, message);
+        ObserverEvent event = ObserverEvent.onConnectFailed(device, type);
         if (observer != null) {
-            posterDispatcher.post(observer, MethodInfoGenerator.onConnectFailed(device, type));
+            eventDispatcher.post(eventDispatcher.resolve(observer, false), event);
         }
-        observable.notifyObservers(MethodInfoGenerator.onConnectFailed(device, type));
+        notifyObservers(event);
     }
 
     /**
@@ -651,6 +776,18 @@ public class EasyBLE {
         return connectionMap.values();
     }
 
+    /**
+     * 获取当前所有连接的运行统计合计，已释放的连接不计入
+     */
+    @NonNull
+    public ConnectionStats getStats() {
+        ConnectionStats stats = new ConnectionStats();
+        for (Connection connection : connectionMap.values()) {
+            stats.add(connection.getStats());
+        }
+        return stats;
+    }
+
     /**
      * 获取所有连接，有序的
      */
@@ -25,6 +25,9 @@ public class EasyBLEBuilder {
     Logger logger;
     boolean isObserveAnnotationRequired = false;
     ScannerType scannerType;
+    int connectionLooperPoolSize = 0;
+    int flightRecorderCapacity = 4096;
+    GattTransport.Factory gattTransportFactory;
 
     EasyBLEBuilder() {
     }
@@ -109,6 +112,41 @@ public class EasyBLEBuilder {
         return this;
     }
 
+    /**
+     * 运行连接状态机（连接、发现服务、超时、请求队列等）的后台线程数量，所有连接共享，按顺序分配。
+     * <br>默认为0，运行在主线程。连接较多或者主线程繁忙时，建议设置，避免蓝牙事件处理被界面绘制延迟。
+     * 单个连接可通过{@link ConnectionConfiguration#setUseDedicatedLooper(boolean)}使用独立的线程
+     *
+     * @param size 线程数量，0表示使用主线程
+     */
+    public EasyBLEBuilder setConnectionLooperPoolSize(int size) {
+        if (size >= 0) {
+            connectionLooperPoolSize = size;
+        }
+        return this;
+    }
+
+    /**
+     * GATT事件记录器保留的记录数，每条{@link FlightRecorder#RECORD_SIZE}字节。默认为4096
+     *
+     * @param capacity 记录数，0表示不记录
+     */
+    public EasyBLEBuilder setFlightRecorderCapacity(int capacity) {
+        if (capacity >= 0) {
+            flightRecorderCapacity = capacity;
+        }
+        return this;
+    }
+
+    /**
+     * 连接使用的GATT传输层，默认使用系统的BluetoothGatt。
+     * <br>使用其他传输层时，{@link Connection#getGatt()}、{@link Connection#getService(java.util.UUID)}等返回系统对象的方法返回null
+     */
+    public EasyBLEBuilder setGattTransportFactory(@NonNull GattTransport.Factory factory) {
+        gattTransportFactory = factory;
+        return this;
+    }
+
     /**
      * 根据当前配置构建EasyBLE实例
      */
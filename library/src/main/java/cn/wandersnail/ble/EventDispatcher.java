@@ -0,0 +1,162 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cn.wandersnail.ble.core.ObserverRegistry;
+import cn.wandersnail.commons.observer.Observe;
+import cn.wandersnail.commons.poster.MethodInfo;
+import cn.wandersnail.commons.poster.PosterDispatcher;
+import cn.wandersnail.commons.poster.RunOn;
+import cn.wandersnail.commons.poster.ThreadMode;
+
+/**
+ * 观察者事件分发。注册时查找每个事件对应方法的执行线程，分发时通过{@link ObserverEvent#dispatch(EventObserver)}
+ * 直接调用，不再按方法名反射查找。
+ * <br>只通知观察者重写了的方法，接口中的空默认方法不通知。过时的重载没有重写时，不会为它再发一次事件。
+ * 观察者的注册和事件过滤由{@link ObserverRegistry}完成，此处只负责查找执行线程和投递
+ */
+class EventDispatcher {
+    private final PosterDispatcher posterDispatcher;
+    private final boolean isObserveAnnotationRequired;
+    //类重写了的事件方法，按事件id的位
+    private static final ConcurrentHashMap<Class<?>, Integer> overriddenEvents = new ConcurrentHashMap<>();
+    private final ObserverRegistry<EventObserver, ThreadMode> registry = new ObserverRegistry<>();
+
+    EventDispatcher(@NonNull PosterDispatcher posterDispatcher, boolean isObserveAnnotationRequired) {
+        this.posterDispatcher = posterDispatcher;
+        this.isObserveAnnotationRequired = isObserveAnnotationRequired;
+    }
+
+    /**
+     * 查找观察者每个事件的执行线程
+     *
+     * @param isObserveAnnotationRequired 是否只通知有{@link Observe}注解的方法
+     */
+    @NonNull
+    ObserverRegistry.Entry<EventObserver, ThreadMode> resolve(@NonNull EventObserver observer, boolean isObserveAnnotationRequired) {
+        ThreadMode defaultMode = posterDispatcher.getDefaultMode();
+        if (defaultMode == null || defaultMode == ThreadMode.UNSPECIFIED) {
+            defaultMode = ThreadMode.MAIN;
+        }
+        ThreadMode[] threadModes = new ThreadMode[ObserverEvent.COUNT];
+        for (int i = 0; i < ObserverEvent.COUNT; i++) {
+            Method method;
+            try {
+                method = observer.getClass().getMethod(ObserverEvent.METHOD_NAMES[i], ObserverEvent.PARAMETER_TYPES[i]);
+            } catch (NoSuchMethodException e) {
+                continue;
+            }
+            if (isLibraryDefault(method) || (isObserveAnnotationRequired && method.getAnnotation(Observe.class) == null)) {
+                continue;
+            }
+            RunOn runOn = method.getAnnotation(RunOn.class);
+            threadModes[i] = runOn == null || runOn.value() == ThreadMode.UNSPECIFIED ? defaultMode : runOn.value();
+        }
+        return new ObserverRegistry.Entry<>(observer, threadModes);
+    }
+
+    /**
+     * 获取类重写了的事件方法，按事件id的位。用于回调，回调中未重写的方法不通知
+     */
+    static int getOverriddenEvents(@NonNull Class<?> type) {
+        Integer events = overriddenEvents.get(type);
+        if (events == null) {
+            int value = 0;
+            for (int i = 0; i < ObserverEvent.COUNT; i++) {
+                try {
+                    Method method = type.getMethod(ObserverEvent.METHOD_NAMES[i], ObserverEvent.PARAMETER_TYPES[i]);
+                    if (!isLibraryDefault(method)) {
+                        value |= 1 << i;
+                    }
+                } catch (NoSuchMethodException ignore) {
+                }
+            }
+            events = value;
+            overriddenEvents.put(type, events);
+        }
+        return events;
+    }
+
+    //本库接口中的默认方法，没有被重写
+    private static boolean isLibraryDefault(Method method) {
+        Class<?> cls = method.getDeclaringClass();
+        return cls.isInterface() && cls.getName().startsWith("cn.wandersnail.ble.");
+    }
+
+    /**
+     * 是否有注册的观察者接收此事件
+     */
+    boolean isObserved(int eventId) {
+        return registry.isObserved(eventId);
+    }
+
+    void register(@NonNull EventObserver observer) {
+        if (!registry.isRegistered(observer)) {
+            registry.register(resolve(observer, isObserveAnnotationRequired));
+        }
+    }
+
+    boolean isRegistered(@NonNull EventObserver observer) {
+        return registry.isRegistered(observer);
+    }
+
+    void unregister(@NonNull EventObserver observer) {
+        registry.unregister(observer);
+    }
+
+    void unregisterAll() {
+        registry.unregisterAll();
+    }
+
+    /**
+     * 通知所有注册的观察者
+     */
+    void notifyObservers(@NonNull ObserverEvent event) {
+        for (ObserverRegistry.Entry<EventObserver, ThreadMode> entry : registry.getEntries()) {
+            EventObserver observer = entry.getObserver();
+            if (observer != null) {
+                post(entry, observer, event);
+            }
+        }
+    }
+
+    /**
+     * 以{@link MethodInfo}通知所有注册的观察者，兼容外部发出的事件
+     */
+    void notifyObservers(@NonNull MethodInfo info) {
+        for (ObserverRegistry.Entry<EventObserver, ThreadMode> entry : registry.getEntries()) {
+            EventObserver observer = entry.getObserver();
+            if (observer != null) {
+                posterDispatcher.post(observer, info);
+            }
+        }
+    }
+
+    /**
+     * 通知指定观察者
+     */
+    void post(@Nullable ObserverRegistry.Entry<EventObserver, ThreadMode> entry, @NonNull ObserverEvent event) {
+        if (entry != null) {
+            EventObserver observer = entry.getObserver();
+            if (observer != null) {
+                post(entry, observer, event);
+            }
+        }
+    }
+
+    private void post(ObserverRegistry.Entry<EventObserver, ThreadMode> entry, EventObserver observer, ObserverEvent event) {
+        ThreadMode mode = entry.getMode(event.id);
+        if (mode == null) {
+            return;
+        }
+        if (mode == ThreadMode.POSTING) {
+            event.dispatch(observer);
+        } else {
+            posterDispatcher.post(mode, () -> event.dispatch(observer));
+        }
+    }
+}
@@ -56,6 +56,43 @@ public interface EventObserver extends Observer {
     default void onCharacteristicWrite(@NonNull Request request, @NonNull byte[] value) {
     }
 
+    /**
+     * 流式写入进度
+     *
+     * @param request        请求
+     * @param sentBytes      已写入的字节数
+     * @param totalBytes     总字节数，未知时为-1
+     * @param bytesPerSecond 从开始写入到现在的平均速率，字节/秒
+     */
+    default void onStreamWriteProgress(@NonNull Request request, long sentBytes, long totalBytes, long bytesPerSecond) {
+    }
+
+    /**
+     * 数据源已全部写入
+     *
+     * @param request    请求
+     * @param totalBytes 写入的总字节数
+     */
+    default void onStreamWriteComplete(@NonNull Request request, long totalBytes) {
+    }
+
+    /**
+     * 可靠写入的所有特征值已提交
+     *
+     * @param request 请求
+     */
+    default void onReliableWriteCompleted(@NonNull Request request) {
+    }
+
+    /**
+     * 批量请求的所有步骤执行成功
+     *
+     * @param request 请求
+     * @param result  每一步的结果
+     */
+    default void onBatchCompleted(@NonNull Request request, @NonNull BatchResult result) {
+    }
+
     /**
      * 读取到设备的信号强度
      *
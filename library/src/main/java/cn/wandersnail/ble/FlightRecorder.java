@@ -0,0 +1,220 @@
+package cn.wandersnail.ble;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GATT事件记录器。以固定长度的二进制记录写入预先分配的环形缓冲区，满了覆盖最早的，记录时不创建对象，可以一直开启。
+ * 出问题时导出到文件分析。
+ * <p>
+ * 每条记录{@link #RECORD_SIZE}字节，大端：
+ * <ul>
+ * <li>0~7：时间戳，{@link SystemClock#elapsedRealtimeNanos()}</li>
+ * <li>8~9：设备地址编号，对应文件头中的地址表，{@link #UNKNOWN_ADDRESS_ID}表示地址表已满未分配编号</li>
+ * <li>10：事件类型，{@link #EVENT_CONNECTION_STATE}等</li>
+ * <li>11：保留</li>
+ * <li>12~15：状态，GATT状态码</li>
+ * <li>16~19：长度，数据的完整长度；没有数据的事件为事件值，如MTU、信号强度、连接状态</li>
+ * <li>20~31：数据的前{@link #DATA_SIZE}字节，不足的补0</li>
+ * </ul>
+ * 导出的文件头：魔数"EBFR"，版本(int)，记录长度(int)，导出时的{@link System#currentTimeMillis()}(long)和
+ * {@link SystemClock#elapsedRealtimeNanos()}(long)，地址数(int)及每个地址(UTF)，记录数(int)，之后按时间顺序是所有记录
+ */
+public final class FlightRecorder {
+    public static final int RECORD_SIZE = 32;
+    public static final int DATA_SIZE = 12;
+    private static final int VERSION = 1;
+    /**
+     * 地址表已满时使用的编号，地址表最多{@link #UNKNOWN_ADDRESS_ID}个地址，不会无限增长
+     */
+    public static final int UNKNOWN_ADDRESS_ID = 0xFFFF;
+
+    public static final int EVENT_CONNECTION_STATE = 1;
+    public static final int EVENT_SERVICES_DISCOVERED = 2;
+    public static final int EVENT_CHARACTERISTIC_READ = 3;
+    public static final int EVENT_CHARACTERISTIC_WRITE = 4;
+    public static final int EVENT_CHARACTERISTIC_CHANGED = 5;
+    public static final int EVENT_DESCRIPTOR_READ = 6;
+    public static final int EVENT_DESCRIPTOR_WRITE = 7;
+    public static final int EVENT_MTU_CHANGED = 8;
+    public static final int EVENT_RSSI_READ = 9;
+    /**
+     * 物理层读取或更新，事件值为txPhy << 16 | rxPhy
+     */
+    public static final int EVENT_PHY_CHANGED = 10;
+    public static final int EVENT_RELIABLE_WRITE_COMPLETED = 11;
+    /**
+     * 请求失败，状态为GATT状态码（没有时为-1），事件值为失败类型，如{@link Connection#REQUEST_FAIL_TYPE_REQUEST_TIMEOUT}
+     */
+    public static final int EVENT_REQUEST_FAILED = 12;
+
+    private final byte[] buffer;
+    private final int capacity;
+    private long count;//写入过的记录总数
+    private final Map<String, Integer> addressIds = new HashMap<>();
+    private final List<String> addresses = new ArrayList<>();
+
+    /**
+     * @param capacity 最多保留的记录数
+     */
+    public FlightRecorder(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        }
+        this.capacity = capacity;
+        buffer = new byte[capacity * RECORD_SIZE];
+    }
+
+    /**
+     * 获取地址的编号，没有则分配。地址表已满时返回{@link #UNKNOWN_ADDRESS_ID}
+     */
+    public synchronized int getAddressId(@NonNull String address) {
+        Integer id = addressIds.get(address);
+        if (id == null) {
+            if (addresses.size() >= UNKNOWN_ADDRESS_ID) {
+                return UNKNOWN_ADDRESS_ID;
+            }
+            id = addresses.size();
+            addresses.add(address);
+            addressIds.put(address, id);
+        }
+        return id;
+    }
+
+    /**
+     * 记录没有数据的事件
+     *
+     * @param value 事件值，如MTU、信号强度、连接状态
+     */
+    public void record(int addressId, int event, int status, int value) {
+        record(addressId, event, status, value, null, 0);
+    }
+
+    /**
+     * 记录事件，数据只保存前{@link #DATA_SIZE}字节
+     */
+    public void record(int addressId, int event, int status, @Nullable byte[] data) {
+        record(addressId, event, status, data == null ? 0 : data.length, data, 0);
+    }
+
+    /**
+     * 记录事件，数据为data中从offset开始的length字节，只保存前{@link #DATA_SIZE}字节
+     */
+    public void record(int addressId, int event, int status, @NonNull byte[] data, int offset, int length) {
+        record(addressId, event, status, length, data, offset);
+    }
+
+    private synchronized void record(int addressId, int event, int status, int value, byte[] data, int offset) {
+        if (addressId < 0 || addressId > UNKNOWN_ADDRESS_ID) {
+            //不是getAddressId分配的编号，不截断成其他地址的编号
+            addressId = UNKNOWN_ADDRESS_ID;
+        }
+        int pos = (int) (count++ % capacity) * RECORD_SIZE;
+        putLong(pos, SystemClock.elapsedRealtimeNanos());
+        buffer[pos + 8] = (byte) (addressId >> 8);
+        buffer[pos + 9] = (byte) addressId;
+        buffer[pos + 10] = (byte) event;
+        buffer[pos + 11] = 0;
+        putInt(pos + 12, status);
+        putInt(pos + 16, value);
+        int len = data == null ? 0 : Math.min(value, DATA_SIZE);
+        if (len > 0) {
+            System.arraycopy(data, offset, buffer, pos + 20, len);
+        }
+        for (int i = len; i < DATA_SIZE; i++) {
+            buffer[pos + 20 + i] = 0;
+        }
+    }
+
+    /**
+     * 当前保留的记录数
+     */
+    public synchronized int size() {
+        return (int) Math.min(count, capacity);
+    }
+
+    public synchronized void clear() {
+        count = 0;
+    }
+
+    /**
+     * 按时间顺序导出所有记录，格式见类说明
+     */
+    public void dump(@NonNull OutputStream out) throws IOException {
+        byte[] records;
+        List<String> addressList;
+        int size;
+        synchronized (this) {
+            size = size();
+            records = new byte[size * RECORD_SIZE];
+            int start = (int) ((count - size) % capacity);
+            int first = Math.min(size, capacity - start);
+            System.arraycopy(buffer, start * RECORD_SIZE, records, 0, first * RECORD_SIZE);
+            System.arraycopy(buffer, 0, records, first * RECORD_SIZE, (size - first) * RECORD_SIZE);
+            addressList = new ArrayList<>(addresses);
+        }
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.writeBytes("EBFR");
+        dos.writeInt(VERSION);
+        dos.writeInt(RECORD_SIZE);
+        dos.writeLong(System.currentTimeMillis());
+        dos.writeLong(SystemClock.elapsedRealtimeNanos());
+        dos.writeInt(addressList.size());
+        for (String address : addressList) {
+            dos.writeUTF(address);
+        }
+        dos.writeInt(size);
+        dos.write(records);
+        dos.flush();
+    }
+
+    /**
+     * 导出到文件，已存在的覆盖
+     */
+    public void dump(@NonNull File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            dump(out);
+        }
+    }
+
+    /**
+     * 应用崩溃时导出到文件，之后交给原来的异常处理器
+     */
+    public void dumpOnCrash(@NonNull File file) {
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> {
+            try {
+                dump(file);
+            } catch (Throwable ignore) {
+            }
+            if (previous != null) {
+                previous.uncaughtException(thread, e);
+            }
+        });
+    }
+
+    private void putLong(int pos, long v) {
+        putInt(pos, (int) (v >>> 32));
+        putInt(pos + 4, (int) v);
+    }
+
+    private void putInt(int pos, int v) {
+        buffer[pos] = (byte) (v >>> 24);
+        buffer[pos + 1] = (byte) (v >>> 16);
+        buffer[pos + 2] = (byte) (v >>> 8);
+        buffer[pos + 3] = (byte) v;
+    }
+}
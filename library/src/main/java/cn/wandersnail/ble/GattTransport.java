@@ -0,0 +1,175 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 连接使用的GATT传输层，连接的请求队列、超时、分包、重连等逻辑只通过此接口操作设备。
+ * 默认使用系统的BluetoothGatt，可通过{@link EasyBLEBuilder#setGattTransportFactory(Factory)}替换，
+ * 例如在JVM上使用内存中的实现运行，或者使用吞吐量更高的传输方式。
+ * <br>方法和系统的BluetoothGatt对应，返回false表示操作未发起，不会回调。
+ * 回调可以在任意线程，但同一传输层的回调需要按顺序
+ */
+public interface GattTransport {
+    /**
+     * 写入已发起
+     */
+    int WRITE_SUCCESS = 0;
+    /**
+     * 协议栈忙，稍后可以重试
+     */
+    int WRITE_BUSY = 1;
+    /**
+     * 写入失败
+     */
+    int WRITE_FAILED = 2;
+    /**
+     * 写入未发起，无法区分是协议栈忙还是其他原因，如Android 13以下的系统
+     */
+    int WRITE_REJECTED = 3;
+
+    /**
+     * 创建传输层，每次发起连接创建一个新的，关闭后不再使用
+     */
+    interface Factory {
+        /**
+         * @param device        要连接的设备
+         * @param configuration 连接配置
+         * @param callback      回调，需要传给{@link Callback}方法的第一个参数
+         */
+        @NonNull
+        GattTransport create(@NonNull Device device, @NonNull ConnectionConfiguration configuration, @NonNull Callback callback);
+    }
+
+    /**
+     * 传输层的事件接收，方法和系统的BluetoothGattCallback对应，值通过参数传递
+     */
+    interface Callback {
+        /**
+         * @param newState {@link android.bluetooth.BluetoothProfile#STATE_CONNECTED}等
+         */
+        void onConnectionStateChange(@NonNull GattTransport transport, int status, int newState);
+
+        void onServicesDiscovered(@NonNull GattTransport transport, int status);
+
+        void onCharacteristicRead(@NonNull GattTransport transport, @NonNull UUID service, @NonNull UUID characteristic,
+                                  @NonNull byte[] value, int status);
+
+        /**
+         * @param value 低版本为特征缓存的值，通常就是写入的值，不是设备回传的；高版本为null
+         */
+        void onCharacteristicWrite(@NonNull GattTransport transport, @NonNull UUID service, @NonNull UUID characteristic,
+                                   @Nullable byte[] value, int status);
+
+        void onCharacteristicChanged(@NonNull GattTransport transport, @NonNull UUID service, @NonNull UUID characteristic,
+                                     @NonNull byte[] value);
+
+        void onDescriptorRead(@NonNull GattTransport transport, @NonNull UUID service, @NonNull UUID characteristic,
+                              @NonNull UUID descriptor, @NonNull byte[] value, int status);
+
+        void onDescriptorWrite(@NonNull GattTransport transport, @NonNull UUID service, @NonNull UUID characteristic,
+                               @NonNull UUID descriptor, int status);
+
+        void onReliableWriteCompleted(@NonNull GattTransport transport, int status);
+
+        void onReadRemoteRssi(@NonNull GattTransport transport, int rssi, int status);
+
+        void onMtuChanged(@NonNull GattTransport transport, int mtu, int status);
+
+        void onPhyRead(@NonNull GattTransport transport, int txPhy, int rxPhy, int status);
+
+        void onPhyUpdate(@NonNull GattTransport transport, int txPhy, int rxPhy, int status);
+    }
+
+    /**
+     * 发起连接
+     *
+     * @param autoConnect 是否在设备可连接时自动连接
+     */
+    boolean connect(boolean autoConnect);
+
+    void disconnect();
+
+    /**
+     * 关闭并释放资源，之后不再回调
+     */
+    void close();
+
+    /**
+     * 清除服务缓存，下次发现服务时重新获取
+     *
+     * @return 不支持时返回false
+     */
+    boolean refresh();
+
+    boolean discoverServices();
+
+    /**
+     * 已发现的服务
+     */
+    @NonNull
+    List<UUID> getServices();
+
+    boolean hasService(@NonNull UUID service);
+
+    boolean hasCharacteristic(@NonNull UUID service, @NonNull UUID characteristic);
+
+    boolean hasDescriptor(@NonNull UUID service, @NonNull UUID characteristic, @NonNull UUID descriptor);
+
+    /**
+     * 特征的属性，特征不存在时返回0
+     */
+    int getProperties(@NonNull UUID service, @NonNull UUID characteristic);
+
+    boolean readCharacteristic(@NonNull UUID service, @NonNull UUID characteristic);
+
+    /**
+     * 写特征
+     *
+     * @param writeType 写入类型，小于0时使用特征默认的写入类型
+     * @return {@link #WRITE_SUCCESS}、{@link #WRITE_BUSY}、{@link #WRITE_FAILED}、{@link #WRITE_REJECTED}
+     */
+    int writeCharacteristic(@NonNull UUID service, @NonNull UUID characteristic, @NonNull byte[] value, int writeType);
+
+    /**
+     * 写特征时是否已复制数据。复制了的，写入调用返回后可以修改传入的数组，分包写入时复用缓冲区；
+     * 没有复制的，每包使用新的数组
+     */
+    boolean isWriteValueCopied();
+
+    /**
+     * 可靠写入事务中写特征，使用有回复的写入类型，写入后特征的写入类型保持不变
+     *
+     * @return {@link #WRITE_SUCCESS}、{@link #WRITE_BUSY}、{@link #WRITE_FAILED}、{@link #WRITE_REJECTED}
+     */
+    int writeReliableCharacteristic(@NonNull UUID service, @NonNull UUID characteristic, @NonNull byte[] value);
+
+    boolean readDescriptor(@NonNull UUID service, @NonNull UUID characteristic, @NonNull UUID descriptor);
+
+    /**
+     * 写描述符，总是使用有回复的写入
+     */
+    boolean writeDescriptor(@NonNull UUID service, @NonNull UUID characteristic, @NonNull UUID descriptor, @NonNull byte[] value);
+
+    /**
+     * 本地开启或关闭特征的通知，需要再写客户端配置描述符
+     */
+    boolean setCharacteristicNotification(@NonNull UUID service, @NonNull UUID characteristic, boolean enable);
+
+    boolean beginReliableWrite();
+
+    boolean executeReliableWrite();
+
+    void abortReliableWrite();
+
+    boolean requestMtu(int mtu);
+
+    boolean readRemoteRssi();
+
+    void readPhy();
+
+    void setPreferredPhy(int txPhy, int rxPhy, int phyOptions);
+}
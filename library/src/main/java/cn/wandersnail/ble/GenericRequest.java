@@ -1,17 +1,19 @@
 package cn.wandersnail.ble;
 
-import java.util.Queue;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import cn.wandersnail.ble.callback.RequestCallback;
+import cn.wandersnail.ble.core.RequestQueue;
 
 /**
  * date: 2019/8/3 13:44
  * author: zengfansheng
  */
-class GenericRequest implements Request, Comparable<GenericRequest> {
+class GenericRequest extends RequestQueue.Entry<RequestType> implements Request, RequestHandle, Comparable<GenericRequest> {
     Device device;
     private final String tag;
     RequestType type;
@@ -19,25 +21,74 @@ class GenericRequest implements Request, Comparable<GenericRequest> {
     UUID characteristic;
     UUID descriptor;
     Object value;
-    int priority;
+    int priority;//调用方设置的优先级
+    int queuePriority;//在队列中排队使用的优先级，合并了更高优先级的读请求时提高
     RequestCallback callback;
     WriteOptions writeOptions;
-    byte[] descriptorTemp;//临时保存描述符的值
+    ConnectionImpl connection;//执行请求的连接
+    volatile boolean cancelled;
+    RequestCompletionListener completionListener;//请求结束的内部监听
+    int timeoutMillis;//请求设置的超时时长，0表示使用连接配置
+    long operationStartTime;//当前GATT操作调用的时间，用于统计耗时
+    int armedTimeoutMillis;//正在计时的超时时长，超时时按此值计入耗时统计
     //---------  分包发送相关  ---------
-    Queue<byte[]> remainQueue;
-    byte[] sendingBytes;
+    int writeOffset;//已交给协议栈的数据位置，包含正在写的包
+    byte[] sendingBytes;//正在写的包，为null表示没有在写。可能是分包复用的缓冲区，内容在取下一包前有效
+    boolean writeBusy;//包因协议栈忙未写入，等待重试
+    int pendingPackages;//流控模式下已写入还未收到回调的包数
+    int creditSentPackages;//流控模式下已交给协议栈的包数
+    long[] creditSendTimes;//流控模式下各包交给协议栈的时间，按包序号循环使用
+    //---------  流式写入相关  ---------
+    StreamSource streamSource;
+    byte[] streamBuffer;//后台读取数据源的缓冲区，写入时协议栈复制数据的，各包复用
+    boolean streamReading;//正在后台读取下一包
+    Throwable streamReadError;//后台读取的异常
+    long streamTotalLength;
+    long streamSentBytes;
+    long streamStartTime;
+    long lastProgressTime;
+    int progressIntervalMillis;
+    //---------  可靠写入相关  ---------
+    List<ReliableWriteItem> reliableWriteItems;
+    int reliableWriteIndex;//正在写入的项
+    boolean reliableWriteBegun;//已开始事务，失败时需要取消
+    //---------  批量请求相关  ---------
+    List<GenericRequest> batchSteps;
+    GenericRequest batch;//所属的批量请求
+    int batchIndex;//正在执行的步骤
+    BatchResult batchResult;
+    //---------  读请求合并相关  ---------
+    List<GenericRequest> coalescedReads;//合并到此请求的相同特征的读请求
     //--------------------------------
 
-    GenericRequest(RequestBuilder builder) {
+    GenericRequest(RequestBuilder<?> builder) {
         tag = builder.tag;
         type = builder.type;
         service = builder.service;
         characteristic = builder.characteristic;
         descriptor = builder.descriptor;
         priority = builder.priority;
+        queuePriority = priority;
         value = builder.value;
         callback = builder.callback;
         writeOptions = builder.writeOptions;
+        streamSource = builder.streamSource;
+        progressIntervalMillis = builder.progressIntervalMillis;
+        if (builder.reliableWriteItems != null) {
+            reliableWriteItems = new ArrayList<>(builder.reliableWriteItems);
+        }
+        if (builder.batchSteps != null) {
+            batchSteps = new ArrayList<>(builder.batchSteps);
+            for (GenericRequest step : batchSteps) {
+                step.batch = this;
+            }
+        }
+        timeoutMillis = builder.timeoutMillis;
+        if (builder.streamTotalLength < 0 && streamSource != null) {
+            streamTotalLength = streamSource.length();
+        } else {
+            streamTotalLength = builder.streamTotalLength;
+        }
     }
 
     @Override
@@ -57,6 +108,7 @@ class GenericRequest implements Request, Comparable<GenericRequest> {
      * 请求类型
      */
     @NonNull
+    @Override
     public RequestType getType() {
         return type;
     }
@@ -65,10 +117,19 @@ class GenericRequest implements Request, Comparable<GenericRequest> {
      * 请求标识
      */
     @Nullable
+    @Override
     public String getTag() {
         return tag;
     }
 
+    /**
+     * 排队使用的优先级，不修改调用方设置的
+     */
+    @Override
+    public int getPriority() {
+        return queuePriority;
+    }
+
     @Nullable
     public UUID getService() {
         return service;
@@ -84,10 +145,29 @@ class GenericRequest implements Request, Comparable<GenericRequest> {
         return descriptor;
     }
 
+    @NonNull
+    @Override
+    public Request getRequest() {
+        return this;
+    }
+
+    @Override
+    public boolean cancel() {
+        ConnectionImpl conn = connection;
+        return conn != null && conn.cancel(this);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @NonNull
     @Override
-    public void execute(Connection connection) {
+    public RequestHandle execute(Connection connection) {
         if (connection != null) {
             connection.execute(this);
         }
+        return this;
     }
 }
@@ -53,6 +53,26 @@ class MethodInfoGenerator {
                 new MethodInfo.Parameter(byte[].class, value));
     }
 
+    static MethodInfo onStreamWriteProgress(Request request, long sentBytes, long totalBytes, long bytesPerSecond) {
+        return new MethodInfo("onStreamWriteProgress", new MethodInfo.Parameter(Request.class, request),
+                new MethodInfo.Parameter(long.class, sentBytes), new MethodInfo.Parameter(long.class, totalBytes),
+                new MethodInfo.Parameter(long.class, bytesPerSecond));
+    }
+
+    static MethodInfo onStreamWriteComplete(Request request, long totalBytes) {
+        return new MethodInfo("onStreamWriteComplete", new MethodInfo.Parameter(Request.class, request),
+                new MethodInfo.Parameter(long.class, totalBytes));
+    }
+
+    static MethodInfo onReliableWriteCompleted(Request request) {
+        return new MethodInfo("onReliableWriteCompleted", new MethodInfo.Parameter(Request.class, request));
+    }
+
+    static MethodInfo onBatchCompleted(Request request, BatchResult result) {
+        return new MethodInfo("onBatchCompleted", new MethodInfo.Parameter(Request.class, request),
+                new MethodInfo.Parameter(BatchResult.class, result));
+    }
+
     static MethodInfo onRssiRead(Request request, int rssi) {
         return new MethodInfo("onRssiRead", new MethodInfo.Parameter(Request.class, request),
                 new MethodInfo.Parameter(int.class, rssi));
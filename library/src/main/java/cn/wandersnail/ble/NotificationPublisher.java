@@ -0,0 +1,37 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+
+/**
+ * 特征通知的发布者，每个订阅者独立缓存，只收到此特征的通知
+ */
+class NotificationPublisher implements Publisher<byte[]> {
+    static final int DEFAULT_BUFFER_SIZE = 128;
+    private final ConnectionImpl connection;
+    private final CharacteristicKey key;
+    private final OverflowStrategy strategy;
+    private final int bufferSize;
+
+    NotificationPublisher(ConnectionImpl connection, CharacteristicKey key, OverflowStrategy strategy, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be greater than 0");
+        }
+        this.connection = connection;
+        this.key = key;
+        this.strategy = strategy;
+        this.bufferSize = strategy == OverflowStrategy.LATEST ? 1 : bufferSize;
+    }
+
+    @Override
+    public void subscribe(@NonNull Subscriber<? super byte[]> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber is null");
+        }
+        NotificationSubscription subscription = new NotificationSubscription(connection, key, subscriber, strategy, bufferSize);
+        subscriber.onSubscribe(subscription);
+        connection.addNotificationSubscription(subscription);
+    }
+}
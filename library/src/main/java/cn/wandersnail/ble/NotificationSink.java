@@ -0,0 +1,21 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+
+import java.util.UUID;
+
+/**
+ * 特征通知的低层接收器，在GATT回调线程直接调用，分发过程不创建对象，适合高频率的通知。
+ * <br>注册了接收器的特征，通知不再发给观察者，也不打印日志
+ */
+public interface NotificationSink {
+    /**
+     * 收到通知。不要在此方法中执行耗时操作
+     *
+     * @param value  数据所在数组，只在此方法执行期间有效，需要保留时复制
+     * @param offset 数据在数组中的起始位置
+     * @param length 数据长度
+     */
+    void onNotification(@NonNull Device device, @NonNull UUID service, @NonNull UUID characteristic,
+                        @NonNull byte[] value, int offset, int length);
+}
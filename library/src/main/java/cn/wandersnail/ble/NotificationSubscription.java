@@ -0,0 +1,169 @@
+package cn.wandersnail.ble;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 特征通知的订阅。收到的通知先进缓存，按订阅者请求的数量发送，发送在收到通知或者请求数据的线程执行，同一时间只有一个线程在发送
+ */
+class NotificationSubscription implements Subscription {
+    private final ConnectionImpl connection;
+    final CharacteristicKey key;
+    private final Subscriber<? super byte[]> subscriber;
+    private final OverflowStrategy strategy;
+    private final int bufferSize;
+    private final ArrayDeque<byte[]> buffer = new ArrayDeque<>();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile boolean done;
+    private volatile Throwable error;
+
+    NotificationSubscription(ConnectionImpl connection, CharacteristicKey key, Subscriber<? super byte[]> subscriber,
+                             OverflowStrategy strategy, int bufferSize) {
+        this.connection = connection;
+        this.key = key;
+        this.subscriber = subscriber;
+        this.strategy = strategy;
+        this.bufferSize = bufferSize;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 收到通知
+     */
+    void offer(byte[] value) {
+        if (done || cancelled) {
+            return;
+        }
+        synchronized (buffer) {
+            if (buffer.size() >= bufferSize) {
+                if (strategy == OverflowStrategy.BUFFER) {
+                    error = new EasyBLEException("Notification buffer overflow, capacity: " + bufferSize);
+                    done = true;
+                } else {
+                    buffer.pollFirst();
+                }
+            }
+            if (!done) {
+                buffer.offerLast(value);
+            }
+        }
+        if (done) {
+            connection.removeNotificationSubscription(this);
+        }
+        drain();
+    }
+
+    /**
+     * 连接释放，缓存发送完后结束
+     */
+    void complete() {
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            error = new IllegalArgumentException("§3.9: request amount must be positive, but was " + n);
+            done = true;
+            connection.removeNotificationSubscription(this);
+        } else {
+            long r;
+            long u;
+            do {
+                r = requested.get();
+                u = r + n;
+                if (u < 0) {
+                    u = Long.MAX_VALUE;
+                }
+            } while (!requested.compareAndSet(r, u));
+        }
+        drain();
+    }
+
+    @Override
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            connection.removeNotificationSubscription(this);
+            if (wip.getAndIncrement() == 0) {
+                clearBuffer();
+            }
+        }
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            long r = requested.get();
+            long e = 0;
+            while (e != r) {
+                if (checkTerminated()) {
+                    return;
+                }
+                byte[] value;
+                synchronized (buffer) {
+                    value = buffer.pollFirst();
+                }
+                if (value == null) {
+                    break;
+                }
+                subscriber.onNext(value);
+                e++;
+            }
+            if (checkTerminated()) {
+                return;
+            }
+            if (e != 0 && r != Long.MAX_VALUE) {
+                requested.addAndGet(-e);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    //已取消或者已结束，返回true
+    private boolean checkTerminated() {
+        if (cancelled) {
+            clearBuffer();
+            return true;
+        }
+        if (done) {
+            Throwable e = error;
+            if (e != null) {
+                //出错不等缓存发送完
+                cancelled = true;
+                clearBuffer();
+                subscriber.onError(e);
+                return true;
+            }
+            boolean empty;
+            synchronized (buffer) {
+                empty = buffer.isEmpty();
+            }
+            if (empty) {
+                cancelled = true;
+                subscriber.onComplete();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void clearBuffer() {
+        synchronized (buffer) {
+            buffer.clear();
+        }
+    }
+}
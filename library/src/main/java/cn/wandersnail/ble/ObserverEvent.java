@@ -0,0 +1,340 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+
+import java.util.UUID;
+
+import cn.wandersnail.commons.poster.MethodInfo;
+
+/**
+ * 发给{@link EventObserver}的事件。通过switch直接调用观察者的方法，不经过反射；
+ * 观察者不是由本库管理时，转换成{@link MethodInfo}交给Observable
+ */
+final class ObserverEvent {
+    static final int BLUETOOTH_ADAPTER_STATE_CHANGED = 0;
+    static final int CONNECTION_STATE_CHANGED = 1;
+    static final int CONNECT_FAILED = 2;
+    static final int CONNECTION_ERROR_DEPRECATED = 3;
+    static final int CONNECTION_ERROR = 4;
+    static final int CONNECT_TIMEOUT = 5;
+    static final int CHARACTERISTIC_CHANGED = 6;
+    static final int CHARACTERISTIC_READ = 7;
+    static final int CHARACTERISTIC_WRITE = 8;
+    static final int STREAM_WRITE_PROGRESS = 9;
+    static final int STREAM_WRITE_COMPLETE = 10;
+    static final int RELIABLE_WRITE_COMPLETED = 11;
+    static final int BATCH_COMPLETED = 12;
+    static final int RSSI_READ = 13;
+    static final int DESCRIPTOR_READ = 14;
+    static final int NOTIFICATION_CHANGED = 15;
+    static final int INDICATION_CHANGED = 16;
+    static final int MTU_CHANGED = 17;
+    static final int PHY_CHANGE = 18;
+    static final int REQUEST_FAILED_DEPRECATED = 19;
+    static final int REQUEST_FAILED = 20;
+    static final int COUNT = 21;
+    //事件对应的观察者方法名和参数类型，注册时用于查找方法上的注解
+    static final String[] METHOD_NAMES = new String[COUNT];
+    static final Class<?>[][] PARAMETER_TYPES = new Class<?>[COUNT][];
+
+    final int id;
+    Device device;
+    Request request;
+    UUID service;
+    UUID characteristic;
+    Object value;
+    int arg1;
+    int arg2;
+    long long1;
+    long long2;
+    long long3;
+    boolean flag;
+
+    static {
+        method(BLUETOOTH_ADAPTER_STATE_CHANGED, "onBluetoothAdapterStateChanged", int.class);
+        method(CONNECTION_STATE_CHANGED, "onConnectionStateChanged", Device.class);
+        method(CONNECT_FAILED, "onConnectFailed", Device.class, int.class);
+        method(CONNECTION_ERROR_DEPRECATED, "onConnectionError", int.class);
+        method(CONNECTION_ERROR, "onConnectionError", Device.class, int.class);
+        method(CONNECT_TIMEOUT, "onConnectTimeout", Device.class, int.class);
+        method(CHARACTERISTIC_CHANGED, "onCharacteristicChanged", Device.class, UUID.class, UUID.class, byte[].class);
+        method(CHARACTERISTIC_READ, "onCharacteristicRead", Request.class, byte[].class);
+        method(CHARACTERISTIC_WRITE, "onCharacteristicWrite", Request.class, byte[].class);
+        method(STREAM_WRITE_PROGRESS, "onStreamWriteProgress", Request.class, long.class, long.class, long.class);
+        method(STREAM_WRITE_COMPLETE, "onStreamWriteComplete", Request.class, long.class);
+        method(RELIABLE_WRITE_COMPLETED, "onReliableWriteCompleted", Request.class);
+        method(BATCH_COMPLETED, "onBatchCompleted", Request.class, BatchResult.class);
+        method(RSSI_READ, "onRssiRead", Request.class, int.class);
+        method(DESCRIPTOR_READ, "onDescriptorRead", Request.class, byte[].class);
+        method(NOTIFICATION_CHANGED, "onNotificationChanged", Request.class, boolean.class);
+        method(INDICATION_CHANGED, "onIndicationChanged", Request.class, boolean.class);
+        method(MTU_CHANGED, "onMtuChanged", Request.class, int.class);
+        method(PHY_CHANGE, "onPhyChange", Request.class, int.class, int.class);
+        method(REQUEST_FAILED_DEPRECATED, "onRequestFailed", Request.class, int.class, Object.class);
+        method(REQUEST_FAILED, "onRequestFailed", Request.class, int.class, int.class, Object.class);
+    }
+
+    private static void method(int id, String name, Class<?>... parameterTypes) {
+        METHOD_NAMES[id] = name;
+        PARAMETER_TYPES[id] = parameterTypes;
+    }
+
+    private ObserverEvent(int id) {
+        this.id = id;
+    }
+
+    static ObserverEvent onBluetoothAdapterStateChanged(int state) {
+        ObserverEvent event = new ObserverEvent(BLUETOOTH_ADAPTER_STATE_CHANGED);
+        event.arg1 = state;
+        return event;
+    }
+
+    static ObserverEvent onConnectionStateChanged(Device device) {
+        ObserverEvent event = new ObserverEvent(CONNECTION_STATE_CHANGED);
+        event.device = device;
+        return event;
+    }
+
+    static ObserverEvent onConnectFailed(Device device, int failType) {
+        return deviceEvent(CONNECT_FAILED, device, failType);
+    }
+
+    static ObserverEvent onConnectionError(int status) {
+        ObserverEvent event = new ObserverEvent(CONNECTION_ERROR_DEPRECATED);
+        event.arg1 = status;
+        return event;
+    }
+
+    static ObserverEvent onConnectionError(Device device, int status) {
+        return deviceEvent(CONNECTION_ERROR, device, status);
+    }
+
+    static ObserverEvent onConnectTimeout(Device device, int type) {
+        return deviceEvent(CONNECT_TIMEOUT, device, type);
+    }
+
+    static ObserverEvent onCharacteristicChanged(Device device, UUID service, UUID characteristic, byte[] value) {
+        ObserverEvent event = new ObserverEvent(CHARACTERISTIC_CHANGED);
+        event.device = device;
+        event.service = service;
+        event.characteristic = characteristic;
+        event.value = value;
+        return event;
+    }
+
+    static ObserverEvent onCharacteristicRead(Request request, byte[] value) {
+        return requestEvent(CHARACTERISTIC_READ, request, value);
+    }
+
+    static ObserverEvent onCharacteristicWrite(Request request, byte[] value) {
+        return requestEvent(CHARACTERISTIC_WRITE, request, value);
+    }
+
+    static ObserverEvent onStreamWriteProgress(Request request, long sentBytes, long totalBytes, long bytesPerSecond) {
+        ObserverEvent event = requestEvent(STREAM_WRITE_PROGRESS, request, null);
+        event.long1 = sentBytes;
+        event.long2 = totalBytes;
+        event.long3 = bytesPerSecond;
+        return event;
+    }
+
+    static ObserverEvent onStreamWriteComplete(Request request, long totalBytes) {
+        ObserverEvent event = requestEvent(STREAM_WRITE_COMPLETE, request, null);
+        event.long1 = totalBytes;
+        return event;
+    }
+
+    static ObserverEvent onReliableWriteCompleted(Request request) {
+        return requestEvent(RELIABLE_WRITE_COMPLETED, request, null);
+    }
+
+    static ObserverEvent onBatchCompleted(Request request, BatchResult result) {
+        return requestEvent(BATCH_COMPLETED, request, result);
+    }
+
+    static ObserverEvent onRssiRead(Request request, int rssi) {
+        ObserverEvent event = requestEvent(RSSI_READ, request, null);
+        event.arg1 = rssi;
+        return event;
+    }
+
+    static ObserverEvent onDescriptorRead(Request request, byte[] value) {
+        return requestEvent(DESCRIPTOR_READ, request, value);
+    }
+
+    static ObserverEvent onNotificationChanged(Request request, boolean isEnabled) {
+        ObserverEvent event = requestEvent(NOTIFICATION_CHANGED, request, null);
+        event.flag = isEnabled;
+        return event;
+    }
+
+    static ObserverEvent onIndicationChanged(Request request, boolean isEnabled) {
+        ObserverEvent event = requestEvent(INDICATION_CHANGED, request, null);
+        event.flag = isEnabled;
+        return event;
+    }
+
+    static ObserverEvent onMtuChanged(Request request, int mtu) {
+        ObserverEvent event = requestEvent(MTU_CHANGED, request, null);
+        event.arg1 = mtu;
+        return event;
+    }
+
+    static ObserverEvent onPhyChange(Request request, int txPhy, int rxPhy) {
+        ObserverEvent event = requestEvent(PHY_CHANGE, request, null);
+        event.arg1 = txPhy;
+        event.arg2 = rxPhy;
+        return event;
+    }
+
+    static ObserverEvent onRequestFailed(Request request, int failType, Object value) {
+        ObserverEvent event = requestEvent(REQUEST_FAILED_DEPRECATED, request, value);
+        event.arg1 = failType;
+        return event;
+    }
+
+    static ObserverEvent onRequestFailed(Request request, int failType, int gattStatus, Object value) {
+        ObserverEvent event = requestEvent(REQUEST_FAILED, request, value);
+        event.arg1 = failType;
+        event.arg2 = gattStatus;
+        return event;
+    }
+
+    private static ObserverEvent deviceEvent(int id, Device device, int arg) {
+        ObserverEvent event = new ObserverEvent(id);
+        event.device = device;
+        event.arg1 = arg;
+        return event;
+    }
+
+    private static ObserverEvent requestEvent(int id, Request request, Object value) {
+        ObserverEvent event = new ObserverEvent(id);
+        event.request = request;
+        event.value = value;
+        return event;
+    }
+
+    /**
+     * 直接调用观察者对应的方法
+     */
+    @SuppressWarnings("deprecation")
+    void dispatch(@NonNull EventObserver observer) {
+        switch (id) {
+            case BLUETOOTH_ADAPTER_STATE_CHANGED:
+                observer.onBluetoothAdapterStateChanged(arg1);
+                break;
+            case CONNECTION_STATE_CHANGED:
+                observer.onConnectionStateChanged(device);
+                break;
+            case CONNECT_FAILED:
+                observer.onConnectFailed(device, arg1);
+                break;
+            case CONNECTION_ERROR_DEPRECATED:
+                observer.onConnectionError(arg1);
+                break;
+            case CONNECTION_ERROR:
+                observer.onConnectionError(device, arg1);
+                break;
+            case CONNECT_TIMEOUT:
+                observer.onConnectTimeout(device, arg1);
+                break;
+            case CHARACTERISTIC_CHANGED:
+                observer.onCharacteristicChanged(device, service, characteristic, (byte[]) value);
+                break;
+            case CHARACTERISTIC_READ:
+                observer.onCharacteristicRead(request, (byte[]) value);
+                break;
+            case CHARACTERISTIC_WRITE:
+                observer.onCharacteristicWrite(request, (byte[]) value);
+                break;
+            case STREAM_WRITE_PROGRESS:
+                observer.onStreamWriteProgress(request, long1, long2, long3);
+                break;
+            case STREAM_WRITE_COMPLETE:
+                observer.onStreamWriteComplete(request, long1);
+                break;
+            case RELIABLE_WRITE_COMPLETED:
+                observer.onReliableWriteCompleted(request);
+                break;
+            case BATCH_COMPLETED:
+                observer.onBatchCompleted(request, (BatchResult) value);
+                break;
+            case RSSI_READ:
+                observer.onRssiRead(request, arg1);
+                break;
+            case DESCRIPTOR_READ:
+                observer.onDescriptorRead(request, (byte[]) value);
+                break;
+            case NOTIFICATION_CHANGED:
+                observer.onNotificationChanged(request, flag);
+                break;
+            case INDICATION_CHANGED:
+                observer.onIndicationChanged(request, flag);
+                break;
+            case MTU_CHANGED:
+                observer.onMtuChanged(request, arg1);
+                break;
+            case PHY_CHANGE:
+                observer.onPhyChange(request, arg1, arg2);
+                break;
+            case REQUEST_FAILED_DEPRECATED:
+                observer.onRequestFailed(request, arg1, value);
+                break;
+            case REQUEST_FAILED:
+                observer.onRequestFailed(request, arg1, arg2, value);
+                break;
+        }
+    }
+
+    /**
+     * 转换成{@link MethodInfo}，用于回调和不是由本库管理的观察者
+     */
+    @SuppressWarnings("deprecation")
+    @NonNull
+    MethodInfo toMethodInfo() {
+        switch (id) {
+            case BLUETOOTH_ADAPTER_STATE_CHANGED:
+                return MethodInfoGenerator.onBluetoothAdapterStateChanged(arg1);
+            case CONNECTION_STATE_CHANGED:
+                return MethodInfoGenerator.onConnectionStateChanged(device);
+            case CONNECT_FAILED:
+                return MethodInfoGenerator.onConnectFailed(device, arg1);
+            case CONNECTION_ERROR_DEPRECATED:
+                return MethodInfoGenerator.onConnectionError(arg1);
+            case CONNECTION_ERROR:
+                return MethodInfoGenerator.onConnectionError(device, arg1);
+            case CONNECT_TIMEOUT:
+                return MethodInfoGenerator.onConnectTimeout(device, arg1);
+            case CHARACTERISTIC_CHANGED:
+                return MethodInfoGenerator.onCharacteristicChanged(device, service, characteristic, (byte[]) value);
+            case CHARACTERISTIC_READ:
+                return MethodInfoGenerator.onCharacteristicRead(request, (byte[]) value);
+            case CHARACTERISTIC_WRITE:
+                return MethodInfoGenerator.onCharacteristicWrite(request, (byte[]) value);
+            case STREAM_WRITE_PROGRESS:
+                return MethodInfoGenerator.onStreamWriteProgress(request, long1, long2, long3);
+            case STREAM_WRITE_COMPLETE:
+                return MethodInfoGenerator.onStreamWriteComplete(request, long1);
+            case RELIABLE_WRITE_COMPLETED:
+                return MethodInfoGenerator.onReliableWriteCompleted(request);
+            case BATCH_COMPLETED:
+                return MethodInfoGenerator.onBatchCompleted(request, (BatchResult) value);
+            case RSSI_READ:
+                return MethodInfoGenerator.onRssiRead(request, arg1);
+            case DESCRIPTOR_READ:
+                return MethodInfoGenerator.onDescriptorRead(request, (byte[]) value);
+            case NOTIFICATION_CHANGED:
+                return MethodInfoGenerator.onNotificationChanged(request, flag);
+            case INDICATION_CHANGED:
+                return MethodInfoGenerator.onIndicationChanged(request, flag);
+            case MTU_CHANGED:
+                return MethodInfoGenerator.onMtuChanged(request, arg1);
+            case PHY_CHANGE:
+                return MethodInfoGenerator.onPhyChange(request, arg1, arg2);
+            case REQUEST_FAILED_DEPRECATED:
+                return MethodInfoGenerator.onRequestFailed(request, arg1, value);
+            default:
+                return MethodInfoGenerator.onRequestFailed(request, arg1, arg2, value);
+        }
+    }
+}
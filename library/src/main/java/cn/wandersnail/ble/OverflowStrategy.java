@@ -0,0 +1,19 @@
+package cn.wandersnail.ble;
+
+/**
+ * 通知订阅者处理不及时，缓存满时的处理方式
+ */
+public enum OverflowStrategy {
+    /**
+     * 缓存到上限，超出时以错误结束订阅
+     */
+    BUFFER,
+    /**
+     * 缓存到上限，超出时丢弃最早的
+     */
+    DROP_OLDEST,
+    /**
+     * 只保留最新的一个
+     */
+    LATEST
+}
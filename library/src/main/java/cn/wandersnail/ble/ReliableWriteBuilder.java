@@ -0,0 +1,74 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+import cn.wandersnail.ble.callback.ReliableWriteCallback;
+
+/**
+ * 可靠写入请求构建器。多个特征写入作为一个请求排队执行，共用一个超时，设备回传的值由协议栈校验，通过后一起提交，
+ * 任何一个写入失败则全部取消
+ */
+public final class ReliableWriteBuilder extends RequestBuilder<ReliableWriteCallback> {
+    //属性值的最大长度
+    private static final int MAX_VALUE_LENGTH = 512;
+
+    ReliableWriteBuilder() {
+        super(RequestType.RELIABLE_WRITE);
+    }
+
+    @Override
+    public ReliableWriteBuilder setTag(String tag) {
+        super.setTag(tag);
+        return this;
+    }
+
+    @Override
+    public ReliableWriteBuilder setPriority(int priority) {
+        super.setPriority(priority);
+        return this;
+    }
+
+    @Override
+    public ReliableWriteBuilder setCallback(ReliableWriteCallback callback) {
+        super.setCallback(callback);
+        return this;
+    }
+
+    @Override
+    public ReliableWriteBuilder setTimeoutMillis(int timeoutMillis) {
+        super.setTimeoutMillis(timeoutMillis);
+        return this;
+    }
+
+    /**
+     * 添加一次特征写入，按添加的顺序写入。每次写入的值不分包，长度不能超过512字节
+     *
+     * @param service        服务UUID
+     * @param characteristic 特征UUID
+     * @param value          要写入特征的值
+     * @throws IllegalArgumentException 值的长度超过512字节
+     */
+    public ReliableWriteBuilder addWrite(@NonNull UUID service, @NonNull UUID characteristic, @NonNull byte[] value) {
+        if (value.length > MAX_VALUE_LENGTH) {
+            throw new IllegalArgumentException("Value length can not be greater than " + MAX_VALUE_LENGTH + ".");
+        }
+        if (reliableWriteItems == null) {
+            reliableWriteItems = new ArrayList<>();
+            this.service = service;
+            this.characteristic = characteristic;
+        }
+        reliableWriteItems.add(new ReliableWriteItem(service, characteristic, value));
+        return this;
+    }
+
+    @Override
+    public Request build() {
+        if (reliableWriteItems == null) {
+            throw new IllegalStateException("No write added.");
+        }
+        return super.build();
+    }
+}
@@ -0,0 +1,18 @@
+package cn.wandersnail.ble;
+
+import java.util.UUID;
+
+/**
+ * 可靠写入事务中的一次特征写入
+ */
+final class ReliableWriteItem {
+    final UUID service;
+    final UUID characteristic;
+    final byte[] value;
+
+    ReliableWriteItem(UUID service, UUID characteristic, byte[] value) {
+        this.service = service;
+        this.characteristic = characteristic;
+        this.value = value;
+    }
+}
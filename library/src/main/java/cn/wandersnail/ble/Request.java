@@ -50,6 +50,8 @@ public interface Request {
      * 执行请求
      *
      * @param connection 请求执行的连接
+     * @return 用于取消请求的句柄
      */
-    void execute(Connection connection);
+    @NonNull
+    RequestHandle execute(Connection connection);
 }
@@ -1,5 +1,6 @@
 package cn.wandersnail.ble;
 
+import java.util.List;
 import java.util.UUID;
 
 import cn.wandersnail.ble.callback.RequestCallback;
@@ -20,6 +21,15 @@ public class RequestBuilder<T extends RequestCallback> {
     int priority;
     RequestCallback callback;
     WriteOptions writeOptions;
+    int timeoutMillis;
+    //---------  流式写入相关  ---------
+    StreamSource streamSource;
+    long streamTotalLength = -1;
+    int progressIntervalMillis = 200;
+    //---------  可靠写入相关  ---------
+    List<ReliableWriteItem> reliableWriteItems;
+    //---------  批量请求相关  ---------
+    List<GenericRequest> batchSteps;
 
     RequestBuilder(RequestType type) {
         this.type = type;
@@ -50,6 +60,16 @@ public class RequestBuilder<T extends RequestCallback> {
         return this;
     }
 
+    /**
+     * 设置此次请求的超时时长，不设置时使用连接配置的值
+     */
+    public RequestBuilder<T> setTimeoutMillis(int timeoutMillis) {
+        if (timeoutMillis > 0) {
+            this.timeoutMillis = timeoutMillis;
+        }
+        return this;
+    }
+
     public Request build() {
         return new GenericRequest(this);
     }
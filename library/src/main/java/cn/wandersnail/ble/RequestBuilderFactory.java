@@ -7,6 +7,9 @@ import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.RequiresApi;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.util.UUID;
 
 import cn.wandersnail.ble.callback.IndicationChangeCallback;
@@ -115,6 +118,67 @@ public class RequestBuilderFactory {
         return builder;
     }
 
+    /**
+     * 获取从输入流写入特征的请求构建器。数据按包在线程池读取，写入完成或失败后关闭输入流
+     *
+     * @param service        服务UUID
+     * @param characteristic 特征UUID
+     * @param source         数据源
+     */
+    public StreamWriteBuilder getStreamWriteBuilder(@NonNull UUID service, @NonNull UUID characteristic,
+                                                    @NonNull InputStream source) {
+        return getStreamWriteBuilder(service, characteristic, StreamSource.of(source));
+    }
+
+    /**
+     * 获取从通道写入特征的请求构建器。数据按包在线程池读取，写入完成或失败后关闭通道。
+     * 通道须为阻塞模式；读取返回0时按已读到的数据发送，一个字节也没读到时视为已到达末尾
+     *
+     * @param service        服务UUID
+     * @param characteristic 特征UUID
+     * @param source         数据源，阻塞模式
+     * @throws IllegalArgumentException 非阻塞模式的通道
+     */
+    public StreamWriteBuilder getStreamWriteBuilder(@NonNull UUID service, @NonNull UUID characteristic,
+                                                    @NonNull ReadableByteChannel source) {
+        return getStreamWriteBuilder(service, characteristic, StreamSource.of(source));
+    }
+
+    /**
+     * 获取从缓冲区写入特征的请求构建器。写入缓冲区position到limit之间的数据，不改变缓冲区的position，
+     * 可用于内存映射的文件
+     *
+     * @param service        服务UUID
+     * @param characteristic 特征UUID
+     * @param source         数据源
+     */
+    public StreamWriteBuilder getStreamWriteBuilder(@NonNull UUID service, @NonNull UUID characteristic,
+                                                    @NonNull ByteBuffer source) {
+        return getStreamWriteBuilder(service, characteristic, StreamSource.of(source));
+    }
+
+    private StreamWriteBuilder getStreamWriteBuilder(UUID service, UUID characteristic, StreamSource source) {
+        StreamWriteBuilder builder = new StreamWriteBuilder();
+        builder.service = service;
+        builder.characteristic = characteristic;
+        builder.streamSource = source;
+        return builder;
+    }
+
+    /**
+     * 获取可靠写入请求构建器，通过{@link ReliableWriteBuilder#addWrite(UUID, UUID, byte[])}添加要写入的特征
+     */
+    public ReliableWriteBuilder getReliableWriteBuilder() {
+        return new ReliableWriteBuilder();
+    }
+
+    /**
+     * 获取批量请求构建器，通过{@link BatchRequestBuilder#addRequest(Request)}添加要连续执行的请求
+     */
+    public BatchRequestBuilder getBatchRequestBuilder() {
+        return new BatchRequestBuilder();
+    }
+
     /**
      * 获取读取已连接的蓝牙设备的信号强度请求构建器
      */
@@ -0,0 +1,21 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 请求结束的内部监听，与回调和观察者的通知互不影响，在GATT回调所在线程直接调用
+ */
+interface RequestCompletionListener {
+    /**
+     * 请求成功
+     *
+     * @param value 结果，类型见{@link RequestResult#getValue()}
+     */
+    void onRequestCompleted(@NonNull GenericRequest request, @Nullable Object value);
+
+    /**
+     * 请求失败
+     */
+    void onRequestFailed(@NonNull GenericRequest request, int failType, int gattStatus, @Nullable Object value);
+}
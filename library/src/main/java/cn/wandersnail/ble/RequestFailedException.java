@@ -0,0 +1,50 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 请求失败，{@link Connection#submit(Request)}返回的Future以此异常结束
+ */
+public class RequestFailedException extends EasyBLEException {
+    private static final long serialVersionUID = 3187296143557026412L;
+    private final transient Request request;
+    private final int failType;
+    private final int gattStatus;
+    private final transient Object value;
+
+    RequestFailedException(@NonNull Request request, int failType, int gattStatus, @Nullable Object value) {
+        super("Request failed: [requestType: " + request.getType() + ", failType: " + failType + ", gatt status: " + gattStatus + "]");
+        this.request = request;
+        this.failType = failType;
+        this.gattStatus = gattStatus;
+        this.value = value;
+    }
+
+    @NonNull
+    public Request getRequest() {
+        return request;
+    }
+
+    /**
+     * 失败类型。{@link Connection#REQUEST_FAIL_TYPE_GATT_IS_NULL}等
+     */
+    public int getFailType() {
+        return failType;
+    }
+
+    /**
+     * GATT状态码，没有时为-1
+     */
+    public int getGattStatus() {
+        return gattStatus;
+    }
+
+    /**
+     * 请求的数据，批量请求为已执行步骤的{@link BatchResult}
+     */
+    @Nullable
+    public Object getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,43 @@
+package cn.wandersnail.ble;
+
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link Connection#submit(Request, Executor)}返回的Future。通过执行器结束，不在连接线程和锁内执行后续处理，
+ * 取消Future时同时取消请求
+ */
+@RequiresApi(Build.VERSION_CODES.N)
+class RequestFuture extends CompletableFuture<RequestResult> implements RequestCompletionListener {
+    private final GenericRequest request;
+    private final Executor executor;
+
+    RequestFuture(@NonNull GenericRequest request, @NonNull Executor executor) {
+        this.request = request;
+        this.executor = executor;
+    }
+
+    @Override
+    public void onRequestCompleted(@NonNull GenericRequest request, @Nullable Object value) {
+        RequestResult result = new RequestResult(request, value);
+        executor.execute(() -> complete(result));
+    }
+
+    @Override
+    public void onRequestFailed(@NonNull GenericRequest request, int failType, int gattStatus, @Nullable Object value) {
+        RequestFailedException e = new RequestFailedException(request, failType, gattStatus, value);
+        executor.execute(() -> completeExceptionally(e));
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        request.cancel();
+        return super.cancel(mayInterruptIfRunning);
+    }
+}
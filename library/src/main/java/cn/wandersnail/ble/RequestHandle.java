@@ -0,0 +1,27 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 已提交执行的请求的句柄，用于取消请求
+ */
+public interface RequestHandle {
+    /**
+     * 对应的请求
+     */
+    @NonNull
+    Request getRequest();
+
+    /**
+     * 取消请求。还在排队的从队列中移除；正在执行的分包写入、流式写入和批量请求在当前包或当前步骤完成后停止，
+     * 数据已全部交给协议栈的写入、已在执行最后一步的批量请求和其他正在执行的请求无法取消。取消成功的请求以{@link Connection#REQUEST_FAIL_TYPE_REQUEST_CANCELLED}回调请求失败
+     *
+     * @return 是否取消成功，请求已结束或无法取消时返回false
+     */
+    boolean cancel();
+
+    /**
+     * 是否已取消
+     */
+    boolean isCancelled();
+}
@@ -0,0 +1,71 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * {@link Connection#submit(Request)}的请求结果
+ */
+public final class RequestResult {
+    private final Request request;
+    private final Object value;
+
+    RequestResult(@NonNull Request request, @Nullable Object value) {
+        this.request = request;
+        this.value = value;
+    }
+
+    @NonNull
+    public Request getRequest() {
+        return request;
+    }
+
+    /**
+     * 请求结果。读特征、读描述符和写特征为byte[]，开关通知和Indication为Boolean，修改MTU和读信号强度为Integer，
+     * 读取和设置PHY为int[]{txPhy, rxPhy}，流式写入为写入的字节数Long，批量请求为{@link BatchResult}，可靠写入为null
+     */
+    @Nullable
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * 读特征、读描述符和写特征的结果，其他类型的请求返回null
+     */
+    @Nullable
+    public byte[] getBytes() {
+        return value instanceof byte[] ? (byte[]) value : null;
+    }
+
+    /**
+     * 修改MTU和读信号强度的结果
+     *
+     * @throws IllegalStateException 结果不是整数
+     */
+    public int getInt() {
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        throw new IllegalStateException("Result of " + request.getType() + " is not a number");
+    }
+
+    /**
+     * 开关通知和Indication的结果
+     *
+     * @throws IllegalStateException 结果不是布尔值
+     */
+    public boolean getBoolean() {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        throw new IllegalStateException("Result of " + request.getType() + " is not a boolean");
+    }
+
+    /**
+     * 批量请求的结果，其他类型的请求返回null
+     */
+    @Nullable
+    public BatchResult getBatchResult() {
+        return value instanceof BatchResult ? (BatchResult) value : null;
+    }
+}
@@ -42,5 +42,17 @@ public enum RequestType {
     /**
      * 设置物理层发送器和接收器偏好
      */
-    SET_PREFERRED_PHY
+    SET_PREFERRED_PHY,
+    /**
+     * 从数据源流式写特征值
+     */
+    WRITE_STREAM,
+    /**
+     * 可靠写入，多个特征值一起提交
+     */
+    RELIABLE_WRITE,
+    /**
+     * 批量请求，多个请求连续执行
+     */
+    BATCH
 }
@@ -0,0 +1,63 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+
+import java.lang.reflect.Method;
+import java.util.UUID;
+
+import cn.wandersnail.ble.callback.CharacteristicChangedListener;
+import cn.wandersnail.commons.poster.PosterDispatcher;
+import cn.wandersnail.commons.poster.RunOn;
+import cn.wandersnail.commons.poster.ThreadMode;
+
+/**
+ * 登记在路由表中的特征通知监听器，执行线程在注册时确定，分发时不再反射
+ */
+final class RoutedCharacteristicListener {
+    final CharacteristicChangedListener listener;
+    private final ThreadMode threadMode;
+
+    RoutedCharacteristicListener(@NonNull CharacteristicChangedListener listener, @NonNull ThreadMode threadMode) {
+        this.listener = listener;
+        this.threadMode = threadMode;
+    }
+
+    /**
+     * 确定执行线程。优先使用指定的，其次是方法上的{@link RunOn}注解，都没有时使用默认的
+     */
+    @NonNull
+    static ThreadMode resolveThreadMode(@NonNull CharacteristicChangedListener listener, ThreadMode threadMode,
+                                        @NonNull ThreadMode defaultMode) {
+        if (threadMode != null && threadMode != ThreadMode.UNSPECIFIED) {
+            return threadMode;
+        }
+        try {
+            Method method = listener.getClass().getMethod("onCharacteristicChanged", Device.class, UUID.class,
+                    UUID.class, byte[].class);
+            RunOn annotation = method.getAnnotation(RunOn.class);
+            if (annotation != null && annotation.value() != ThreadMode.UNSPECIFIED) {
+                return annotation.value();
+            }
+        } catch (Throwable ignore) {
+        }
+        return defaultMode == ThreadMode.UNSPECIFIED ? ThreadMode.MAIN : defaultMode;
+    }
+
+    void dispatch(PosterDispatcher posterDispatcher, Device device, UUID service, UUID characteristic, byte[] value) {
+        if (threadMode == ThreadMode.POSTING) {
+            listener.onCharacteristicChanged(device, service, characteristic, value);
+        } else {
+            posterDispatcher.post(threadMode, () -> listener.onCharacteristicChanged(device, service, characteristic, value));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof RoutedCharacteristicListener && ((RoutedCharacteristicListener) o).listener == listener;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(listener);
+    }
+}
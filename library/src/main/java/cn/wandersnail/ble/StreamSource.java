@@ -0,0 +1,138 @@
+package cn.wandersnail.ble;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+
+/**
+ * 流式写入的数据源，按包大小按需读取，不缓存整个数据
+ */
+abstract class StreamSource implements Closeable {
+    /**
+     * 读取数据填满缓冲区，到达末尾时可能填不满。在线程池调用，可以阻塞
+     *
+     * @return 读取到的字节数，已到达末尾返回-1
+     */
+    abstract int read(@NonNull byte[] buffer) throws IOException;
+
+    /**
+     * 数据总长度，未知返回-1
+     */
+    long length() {
+        return -1;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    static StreamSource of(@NonNull InputStream input) {
+        return new InputStreamSource(input);
+    }
+
+    /**
+     * @throws IllegalArgumentException 非阻塞模式的通道
+     */
+    static StreamSource of(@NonNull ReadableByteChannel channel) {
+        if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+            throw new IllegalArgumentException("Non-blocking channel is not supported.");
+        }
+        return new ChannelSource(channel);
+    }
+
+    static StreamSource of(@NonNull ByteBuffer buffer) {
+        return new ByteBufferSource(buffer);
+    }
+
+    private static class InputStreamSource extends StreamSource {
+        private final InputStream input;
+
+        InputStreamSource(InputStream input) {
+            this.input = input;
+        }
+
+        @Override
+        int read(@NonNull byte[] buffer) throws IOException {
+            int total = 0;
+            while (total < buffer.length) {
+                int len = input.read(buffer, total, buffer.length - total);
+                if (len == -1) {
+                    break;
+                }
+                total += len;
+            }
+            return total == 0 ? -1 : total;
+        }
+
+        @Override
+        public void close() {
+            try {
+                input.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    private static class ChannelSource extends StreamSource {
+        private final ReadableByteChannel channel;
+        private ByteBuffer wrapper;//包装读取缓冲区，缓冲区不变时复用
+
+        ChannelSource(ReadableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        int read(@NonNull byte[] buffer) throws IOException {
+            if (wrapper == null || wrapper.array() != buffer) {
+                wrapper = ByteBuffer.wrap(buffer);
+            }
+            wrapper.clear();
+            while (wrapper.hasRemaining()) {
+                //读到0时不再等待，先发送已读到的，避免空转
+                if (channel.read(wrapper) <= 0) {
+                    break;
+                }
+            }
+            return wrapper.position() == 0 ? -1 : wrapper.position();
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    private static class ByteBufferSource extends StreamSource {
+        private final ByteBuffer buffer;
+        private final long length;
+
+        ByteBufferSource(ByteBuffer buffer) {
+            //不改变调用方缓冲区的位置
+            this.buffer = buffer.duplicate();
+            length = this.buffer.remaining();
+        }
+
+        @Override
+        int read(@NonNull byte[] dst) {
+            int len = Math.min(dst.length, buffer.remaining());
+            if (len == 0) {
+                return -1;
+            }
+            buffer.get(dst, 0, len);
+            return len;
+        }
+
+        @Override
+        long length() {
+            return length;
+        }
+    }
+}
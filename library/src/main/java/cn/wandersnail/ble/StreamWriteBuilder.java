@@ -0,0 +1,64 @@
+package cn.wandersnail.ble;
+
+import cn.wandersnail.ble.callback.StreamWriteCallback;
+
+/**
+ * 流式写入请求构建器。数据按包大小从数据源按需读取，每包写入回调后再读取下一包，内存占用与数据总长度无关
+ */
+public final class StreamWriteBuilder extends RequestBuilder<StreamWriteCallback> {
+    StreamWriteBuilder() {
+        super(RequestType.WRITE_STREAM);
+    }
+
+    @Override
+    public StreamWriteBuilder setTag(String tag) {
+        super.setTag(tag);
+        return this;
+    }
+
+    @Override
+    public StreamWriteBuilder setPriority(int priority) {
+        super.setPriority(priority);
+        return this;
+    }
+
+    @Override
+    public StreamWriteBuilder setCallback(StreamWriteCallback callback) {
+        super.setCallback(callback);
+        return this;
+    }
+
+    @Override
+    public StreamWriteBuilder setTimeoutMillis(int timeoutMillis) {
+        super.setTimeoutMillis(timeoutMillis);
+        return this;
+    }
+
+    /**
+     * 设置此次请求的写入设置。流式写入总是等待每包的写入回调再写下一包，{@link WriteOptions#isWaitWriteResult()}不起作用
+     */
+    public StreamWriteBuilder setWriteOptions(WriteOptions writeOptions) {
+        this.writeOptions = writeOptions;
+        return this;
+    }
+
+    /**
+     * 设置数据总长度，用于进度回调。数据源为ByteBuffer时自动获取
+     */
+    public StreamWriteBuilder setTotalLength(long totalLength) {
+        this.streamTotalLength = totalLength;
+        return this;
+    }
+
+    /**
+     * 设置进度回调的最小间隔
+     *
+     * @param progressIntervalMillis 间隔，单位为毫秒。0表示每包都回调
+     */
+    public StreamWriteBuilder setProgressIntervalMillis(int progressIntervalMillis) {
+        if (progressIntervalMillis >= 0) {
+            this.progressIntervalMillis = progressIntervalMillis;
+        }
+        return this;
+    }
+}
@@ -29,6 +29,12 @@ public final class WriteCharacteristicBuilder extends RequestBuilder<WriteCharac
         return this;
     }
 
+    @Override
+    public WriteCharacteristicBuilder setTimeoutMillis(int timeoutMillis) {
+        super.setTimeoutMillis(timeoutMillis);
+        return this;
+    }
+
     /**
      * 设置此次请求的写入设置
      */
@@ -15,6 +15,8 @@ public class WriteOptions {
     final boolean isWaitWriteResult;
     final int writeType;
     final boolean useMtuAsPackageSize;
+    final int creditWindow;
+    final int busyRetryDelayMillis;
 
     private WriteOptions(Builder builder) {
         packageWriteDelayMillis = builder.packageWriteDelayMillis;
@@ -23,6 +25,8 @@ public class WriteOptions {
         isWaitWriteResult = builder.isWaitWriteResult;
         writeType = builder.writeType;
         useMtuAsPackageSize = builder.useMtuAsPackageSize;
+        creditWindow = builder.creditWindow;
+        busyRetryDelayMillis = builder.busyRetryDelayMillis;
     }
 
     /**
@@ -61,6 +65,20 @@ public class WriteOptions {
         return writeType;
     }
 
+    /**
+     * 不等待写入结果时，最多允许多少包已写入但还未收到写入回调，0表示不限制
+     */
+    public int getCreditWindow() {
+        return creditWindow;
+    }
+
+    /**
+     * 协议栈忙时重试写入的间隔
+     */
+    public int getBusyRetryDelayMillis() {
+        return busyRetryDelayMillis;
+    }
+
     public static class Builder {
         private int packageWriteDelayMillis = 0;
         private int requestWriteDelayMillis = -1;
@@ -68,6 +86,8 @@ public class WriteOptions {
         private boolean isWaitWriteResult = true;
         private int writeType = -1;
         private boolean useMtuAsPackageSize = false;
+        private int creditWindow = 0;
+        private int busyRetryDelayMillis = 10;
 
         /**
          * 两次写数据到特征的时间间隔
@@ -127,6 +147,31 @@ public class WriteOptions {
             useMtuAsPackageSize = true;
             return this;
         }
+
+        /**
+         * 不等待写入结果时的流控窗口，即最多允许多少包已写入但还未收到写入回调。每收到一个写入回调归还一个额度，
+         * 额度用完时暂停写入；协议栈返回忙时不会判定失败，而是在{@link #setBusyRetryDelayMillis(int)}后重试，
+         * 直到请求超时。设置后{@link #setPackageWriteDelayMillis(int)}不再生效。
+         * 仅在{@link #setWaitWriteResult(boolean)}为false时有效
+         *
+         * @param creditWindow 窗口大小，0表示不启用，连续写入
+         */
+        public Builder setCreditWindow(int creditWindow) {
+            if (creditWindow >= 0) {
+                this.creditWindow = creditWindow;
+            }
+            return this;
+        }
+
+        /**
+         * 协议栈忙时重试写入的间隔，默认10毫秒
+         */
+        public Builder setBusyRetryDelayMillis(int busyRetryDelayMillis) {
+            if (busyRetryDelayMillis > 0) {
+                this.busyRetryDelayMillis = busyRetryDelayMillis;
+            }
+            return this;
+        }
         
         public WriteOptions build() {
             return new WriteOptions(this);
@@ -0,0 +1,20 @@
+package cn.wandersnail.ble.callback;
+
+import androidx.annotation.NonNull;
+
+import cn.wandersnail.ble.BatchResult;
+import cn.wandersnail.ble.Request;
+
+/**
+ * 批量请求回调。失败时{@link #onRequestFailed(Request, int, int, Object)}的value为{@link BatchResult}，
+ * 包含已完成步骤的结果和失败的步骤
+ */
+public interface BatchCallback extends RequestFailedCallback {
+    /**
+     * 所有步骤执行成功
+     *
+     * @param request 请求
+     * @param result  每一步的结果
+     */
+    void onBatchCompleted(@NonNull Request request, @NonNull BatchResult result);
+}
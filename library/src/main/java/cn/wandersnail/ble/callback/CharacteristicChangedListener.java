@@ -0,0 +1,19 @@
+package cn.wandersnail.ble.callback;
+
+import androidx.annotation.NonNull;
+
+import java.util.UUID;
+
+import cn.wandersnail.ble.Device;
+
+/**
+ * 指定设备指定特征的通知监听器，只收到注册时指定的特征的通知。
+ * <br>执行线程在注册时确定，可在方法上使用{@link cn.wandersnail.commons.poster.RunOn}注解指定
+ */
+public interface CharacteristicChangedListener {
+    /**
+     * 收到通知
+     */
+    void onCharacteristicChanged(@NonNull Device device, @NonNull UUID service, @NonNull UUID characteristic,
+                                 @NonNull byte[] value);
+}
@@ -0,0 +1,14 @@
+package cn.wandersnail.ble.callback;
+
+import androidx.annotation.NonNull;
+
+import cn.wandersnail.ble.Request;
+
+public interface ReliableWriteCallback extends RequestFailedCallback {
+    /**
+     * 可靠写入的所有特征值已提交
+     *
+     * @param request 请求
+     */
+    void onReliableWriteCompleted(@NonNull Request request);
+}
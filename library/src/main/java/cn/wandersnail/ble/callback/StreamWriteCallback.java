@@ -0,0 +1,25 @@
+package cn.wandersnail.ble.callback;
+
+import androidx.annotation.NonNull;
+
+import cn.wandersnail.ble.Request;
+
+public interface StreamWriteCallback extends RequestFailedCallback {
+    /**
+     * 流式写入进度
+     *
+     * @param request        请求
+     * @param sentBytes      已写入的字节数
+     * @param totalBytes     总字节数，未知时为-1
+     * @param bytesPerSecond 从开始写入到现在的平均速率，字节/秒
+     */
+    void onStreamWriteProgress(@NonNull Request request, long sentBytes, long totalBytes, long bytesPerSecond);
+
+    /**
+     * 数据源已全部写入
+     *
+     * @param request    请求
+     * @param totalBytes 写入的总字节数
+     */
+    void onStreamWriteComplete(@NonNull Request request, long totalBytes);
+}
@@ -11,7 +11,9 @@ import androidx.annotation.Nullable;
  */
 public class DefaultLogger implements Logger {
     private final String tag;
-    private boolean isEnabled;
+    private volatile boolean isEnabled;
+    private volatile int minPriority = Log.VERBOSE;
+    private volatile int disabledTypes;//按类型的位
 
     public DefaultLogger(@NonNull String tag) {
         this.tag = tag;
@@ -27,16 +29,43 @@ public class DefaultLogger implements Logger {
         return isEnabled;
     }
 
+    /**
+     * 设置输出的最低级别
+     *
+     * @param priority {@link Log#DEBUG}等
+     */
+    public void setMinPriority(int priority) {
+        minPriority = priority;
+    }
+
+    /**
+     * 设置指定类型的日志是否输出
+     *
+     * @param type {@link Logger#TYPE_CONNECTION_STATE}等
+     */
+    public synchronized void setTypeEnabled(int type, boolean isEnabled) {
+        if (isEnabled) {
+            disabledTypes &= ~(1 << type);
+        } else {
+            disabledTypes |= 1 << type;
+        }
+    }
+
+    @Override
+    public boolean isEnabled(int priority, int type) {
+        return isEnabled && priority >= minPriority && (disabledTypes & (1 << type)) == 0;
+    }
+
     @Override
     public void log(int priority, int type, @NonNull String msg) {
-        if (isEnabled) {
+        if (isEnabled(priority, type)) {
             Log.println(priority, tag, msg);
         }
     }
 
     @Override
     public void log(int priority, int type, @Nullable String msg, @NonNull Throwable th) {
-        if (isEnabled) {
+        if (isEnabled(priority, type)) {
             if (msg != null) {
                 log(priority, type, msg + "\n" + Log.getStackTraceString(th));
             } else {
@@ -74,4 +74,14 @@ public interface Logger {
      * 日志输出是否使能
      */
     boolean isEnabled();
+
+    /**
+     * 指定级别和类型的日志是否输出。拼接日志内容前先判断，不输出时不做格式化和数据转换。默认与{@link #isEnabled()}相同
+     *
+     * @param priority 日志级别。{@link android.util.Log#DEBUG}等
+     * @param type     日志类型。{@link #TYPE_CONNECTION_STATE}等
+     */
+    default boolean isEnabled(int priority, int type) {
+        return isEnabled();
+    }
 }